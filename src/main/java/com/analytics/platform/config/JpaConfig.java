@@ -0,0 +1,23 @@
+package com.analytics.platform.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.type.format.jackson.JacksonJsonFormatMapper;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JpaConfig {
+    
+    /**
+     * JSON columns are read and written with the application's ObjectMapper. Left
+     * to itself Hibernate registers every Jackson module on the classpath, and the
+     * Scala module pulled in by Kafka turns nested lists into Scala collections.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer jsonFormatMapperCustomizer(ObjectMapper objectMapper) {
+        return properties -> properties.put(AvailableSettings.JSON_FORMAT_MAPPER,
+            new JacksonJsonFormatMapper(objectMapper));
+    }
+}
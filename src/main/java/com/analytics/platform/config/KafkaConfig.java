@@ -0,0 +1,62 @@
+package com.analytics.platform.config;
+
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+@Configuration
+public class KafkaConfig {
+    
+    /**
+     * Container factory for the batch listener: one poll is delivered as a single
+     * List of records and acknowledged once. Batch size and wait time are applied
+     * per listener through the consumer properties on the @KafkaListener.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(true);
+        return factory;
+    }
+    
+    /**
+     * Container factory for the listeners that acknowledge a record later from another
+     * thread: the single listener, from the write-behind flush, and the reactive one,
+     * from the inference pipeline. Async acks let records complete out of order while
+     * offsets are still committed only up to the lowest unfinished record, so a record
+     * whose failure could not be routed is never committed past.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> asyncAckKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.getContainerProperties().setAsyncAcks(true);
+        return factory;
+    }
+    
+    /**
+     * Error handler of every listener container, picked up by the factories above and
+     * set on the retry tier containers. Listeners only throw when a failed record could
+     * not be moved to a retry tier, i.e. while the brokers do not take writes, so the
+     * record (or batch) is sought back and redelivered with a growing pause until it
+     * goes through, instead of being skipped after a fixed number of attempts.
+     */
+    @Bean
+    public CommonErrorHandler kafkaErrorHandler() {
+        ExponentialBackOff backOff = new ExponentialBackOff(500, 2.0);
+        backOff.setMaxInterval(30_000);
+        return new DefaultErrorHandler(backOff);
+    }
+}
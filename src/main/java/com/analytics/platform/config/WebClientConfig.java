@@ -1,14 +1,66 @@
 package com.analytics.platform.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConfig {
     
+    @Value("${ai.http.max-connections:100}")
+    private int maxConnections;
+    
+    @Value("${ai.http.pending-acquire-max:1000}")
+    private int pendingAcquireMax;
+    
+    @Value("${ai.http.pending-acquire-timeout-ms:5000}")
+    private long pendingAcquireTimeoutMs;
+    
+    @Value("${ai.http.max-idle-time-ms:30000}")
+    private long maxIdleTimeMs;
+    
+    @Value("${ai.http.connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+    
+    @Value("${ai.http.response-timeout-ms:10000}")
+    private long responseTimeoutMs;
+    
+    @Value("${ai.http.max-in-memory-size:1048576}")
+    private int maxInMemorySize;
+    
+    /**
+     * Shared builder for outbound inference calls. The connection pool is bounded
+     * and so is the queue of callers waiting for a connection, so a slow model
+     * surfaces as fast errors instead of unbounded memory growth.
+     */
     @Bean
     public WebClient.Builder webClientBuilder() {
-        return WebClient.builder();
+        ConnectionProvider provider = ConnectionProvider.builder("inference")
+            .maxConnections(maxConnections)
+            .pendingAcquireMaxCount(pendingAcquireMax)
+            .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+            .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+            .evictInBackground(Duration.ofMillis(maxIdleTimeMs))
+            .build();
+        
+        HttpClient httpClient = HttpClient.create(provider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+            .responseTimeout(Duration.ofMillis(responseTimeoutMs));
+        
+        ExchangeStrategies strategies = ExchangeStrategies.builder()
+            .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(maxInMemorySize))
+            .build();
+        
+        return WebClient.builder()
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .exchangeStrategies(strategies);
     }
 }
@@ -0,0 +1,31 @@
+package com.analytics.platform.controller;
+
+import com.analytics.platform.kafka.DeadLetterReplayService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminController {
+    
+    private final DeadLetterReplayService deadLetterReplayService;
+    
+    @PostMapping("/dlt/replay")
+    public ResponseEntity<?> replayDeadLetters(@RequestParam(defaultValue = "1000") int maxRecords) {
+        try {
+            int replayed = deadLetterReplayService.replay(maxRecords);
+            return ResponseEntity.ok(Map.of("replayed", replayed));
+        } catch (Exception e) {
+            log.error("Error replaying dead-letter topic", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error replaying dead-letter topic: " + e.getMessage());
+        }
+    }
+}
@@ -1,18 +1,45 @@
 package com.analytics.platform.controller;
 
+import com.analytics.platform.dto.AnalyticsStats;
+import com.analytics.platform.dto.BatchSubmissionResponse;
+import com.analytics.platform.dto.EventWindow;
+import com.analytics.platform.dto.ResultPage;
+import com.analytics.platform.entity.UserEntity;
 import com.analytics.platform.model.AnalyticsEvent;
 import com.analytics.platform.model.AnalyticsResult;
 import com.analytics.platform.kafka.KafkaProducer;
+import com.analytics.platform.repository.ResultFilter;
+import com.analytics.platform.service.EventIngestionService;
+import com.analytics.platform.service.EventWindowEngine;
+import com.analytics.platform.service.ResultCompletionRegistry;
+import com.analytics.platform.service.ResultRollups;
 import com.analytics.platform.service.ResultStorageService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/analytics")
@@ -21,11 +48,32 @@ public class AnalyticsController {
     
     private final KafkaProducer kafkaProducer;
     private final ResultStorageService resultStorageService;
+    private final EventIngestionService eventIngestionService;
+    private final ResultCompletionRegistry completionRegistry;
+    private final ResultRollups rollups;
+    private final EventWindowEngine windowEngine;
+    private final long maxWaitMs;
+    private final long streamTimeoutMs;
+    private final int streamBufferSize;
     
     public AnalyticsController(KafkaProducer kafkaProducer, 
-                              ResultStorageService resultStorageService) {
+                              ResultStorageService resultStorageService,
+                              EventIngestionService eventIngestionService,
+                              ResultCompletionRegistry completionRegistry,
+                              ResultRollups rollups,
+                              EventWindowEngine windowEngine,
+                              @Value("${analytics.results.max-wait-ms:30000}") long maxWaitMs,
+                              @Value("${analytics.results.stream-timeout-ms:1800000}") long streamTimeoutMs,
+                              @Value("${analytics.results.stream-buffer-size:256}") int streamBufferSize) {
         this.kafkaProducer = kafkaProducer;
         this.resultStorageService = resultStorageService;
+        this.eventIngestionService = eventIngestionService;
+        this.completionRegistry = completionRegistry;
+        this.rollups = rollups;
+        this.windowEngine = windowEngine;
+        this.maxWaitMs = maxWaitMs;
+        this.streamTimeoutMs = streamTimeoutMs;
+        this.streamBufferSize = streamBufferSize;
     }
     
     @PostMapping("/events")
@@ -49,6 +97,20 @@ public class AnalyticsController {
         }
     }
     
+    /**
+     * Bulk submission: accepts a JSON array or an application/x-ndjson stream.
+     * The body is parsed incrementally and events are sent to Kafka as they are read.
+     */
+    @PostMapping(value = "/events/batch",
+                 consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BatchSubmissionResponse> submitEvents(InputStream body) throws IOException {
+        BatchSubmissionResponse response = eventIngestionService.ingest(body);
+        HttpStatus status = response.getAccepted() > 0 || response.getRejections().isEmpty()
+            ? HttpStatus.ACCEPTED
+            : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(response);
+    }
+    
     @GetMapping("/results/{eventId}")
     public ResponseEntity<AnalyticsResult> getResult(@PathVariable String eventId) {
         Optional<AnalyticsResult> result = resultStorageService.getResult(eventId);
@@ -56,23 +118,188 @@ public class AnalyticsController {
             .orElse(ResponseEntity.notFound().build());
     }
     
+    /**
+     * Long poll: answers as soon as the result is stored, or 404 once waitMs
+     * (at most analytics.results.max-wait-ms) has passed. No thread is held
+     * while the request waits. Like the stream below, only results whose event
+     * userId is the caller's username are released, except to admins.
+     */
+    @GetMapping(value = "/results/{eventId}", params = "waitMs")
+    public DeferredResult<ResponseEntity<AnalyticsResult>> awaitResult(@PathVariable String eventId,
+                                                                       @RequestParam long waitMs,
+                                                                       Authentication authentication) {
+        long timeout = Math.max(1, Math.min(waitMs, maxWaitMs));
+        DeferredResult<ResponseEntity<AnalyticsResult>> deferred =
+            new DeferredResult<>(timeout, ResponseEntity.notFound().build());
+        Consumer<AnalyticsResult> answer = result -> deferred.setResult(isVisibleTo(result, authentication)
+            ? ResponseEntity.ok(result)
+            : ResponseEntity.notFound().build());
+        ResultCompletionRegistry.Registration registration = completionRegistry.onResult(eventId, answer);
+        deferred.onCompletion(registration::cancel);
+        
+        // Registered first, so a result stored in between is not missed
+        resultStorageService.getResult(eventId).ifPresent(answer);
+        return deferred;
+    }
+    
+    private static boolean isVisibleTo(AnalyticsResult result, Authentication authentication) {
+        return authentication != null
+            && (authentication.getName().equals(result.getUserId()) || isAdmin(authentication));
+    }
+    
+    private static boolean isAdmin(Authentication authentication) {
+        return authentication.getAuthorities().stream()
+            .anyMatch(authority -> UserEntity.Role.ROLE_ADMIN.name().equals(authority.getAuthority()));
+    }
+    
+    /**
+     * Server-sent events with every result stored from now on for the caller's
+     * username as event userId. Admins may pass another userId. Each event is
+     * named "result", carries the eventId as its id and the result as JSON data.
+     * A client that falls more than analytics.results.stream-buffer-size results
+     * behind is disconnected.
+     */
+    @GetMapping(value = "/results/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUserResults(@RequestParam(required = false) String userId,
+                                        Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+        }
+        String subject = authentication.getName();
+        if (userId != null && !userId.equals(subject)) {
+            if (!isAdmin(authentication)) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN,
+                    "Only admins may stream another user's results");
+            }
+            subject = userId;
+        }
+        
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        // Results arrive on the storage write thread; they are queued and sent from
+        // boundedElastic, so a slow client never delays the writes
+        Sinks.Many<AnalyticsResult> pending =
+            Sinks.many().unicast().onBackpressureBuffer(Queues.<AnalyticsResult>get(streamBufferSize).get());
+        Disposable delivery = pending.asFlux()
+            .publishOn(Schedulers.boundedElastic())
+            .subscribe(result -> {
+                try {
+                    emitter.send(SseEmitter.event()
+                        .id(result.getEventId())
+                        .name("result")
+                        .data(result, MediaType.APPLICATION_JSON));
+                } catch (IOException e) {
+                    emitter.completeWithError(e);
+                }
+            }, emitter::completeWithError);
+        ResultCompletionRegistry.Registration registration = completionRegistry.onUserResults(subject,
+            result -> pending.emitNext(result, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100))));
+        
+        Runnable close = () -> {
+            registration.cancel();
+            delivery.dispose();
+        };
+        emitter.onCompletion(close);
+        emitter.onTimeout(close);
+        emitter.onError(e -> close.run());
+        return emitter;
+    }
+    
+    /**
+     * Results newest first, filtered by the prediction, modelVersion, userId, from
+     * and to query parameters. Returns a page of at most limit results with a
+     * cursor for the next one; clients that accept application/x-ndjson get the
+     * streaming variants below instead.
+     */
     @GetMapping("/results")
-    public ResponseEntity<List<AnalyticsResult>> getAllResults() {
-        List<AnalyticsResult> results = resultStorageService.getAllResults();
-        return ResponseEntity.ok(results);
+    public ResponseEntity<?> getResults(ResultFilter filter,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(defaultValue = "100") int limit) {
+        return page(filter, cursor, limit);
     }
     
     @GetMapping("/results/my")
-    public ResponseEntity<List<AnalyticsResult>> getMyResults() {
-        List<AnalyticsResult> results = resultStorageService.getUserResults();
-        return ResponseEntity.ok(results);
+    public ResponseEntity<?> getMyResults(ResultFilter filter,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "100") int limit) {
+        Optional<Long> userId = resultStorageService.currentUserId();
+        if (userId.isEmpty()) {
+            return ResponseEntity.ok(new ResultPage());
+        }
+        return page(filter.withUserId(userId.get()), cursor, limit);
     }
     
     @GetMapping("/results/prediction/{prediction}")
-    public ResponseEntity<List<AnalyticsResult>> getResultsByPrediction(
-            @PathVariable String prediction) {
-        List<AnalyticsResult> results = resultStorageService.getResultsByPrediction(prediction);
-        return ResponseEntity.ok(results);
+    public ResponseEntity<?> getResultsByPrediction(
+            @PathVariable String prediction,
+            ResultFilter filter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        return page(filter.withPrediction(prediction), cursor, limit);
+    }
+    
+    /**
+     * Every matching result as newline-delimited JSON, streamed from a database cursor.
+     */
+    @GetMapping(value = "/results", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamResults(ResultFilter filter) {
+        return ndjson(filter);
+    }
+    
+    @GetMapping(value = "/results/my", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMyResults(ResultFilter filter) {
+        // Resolved here: the security context is not available on the streaming thread
+        Optional<Long> userId = resultStorageService.currentUserId();
+        if (userId.isEmpty()) {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(output -> { });
+        }
+        return ndjson(filter.withUserId(userId.get()));
+    }
+    
+    @GetMapping(value = "/results/prediction/{prediction}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamResultsByPrediction(@PathVariable String prediction,
+                                                                           ResultFilter filter) {
+        return ndjson(filter.withPrediction(prediction));
+    }
+    
+    private ResponseEntity<?> page(ResultFilter filter, String cursor, int limit) {
+        try {
+            return ResponseEntity.ok(resultStorageService.getResults(filter, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    // Declared as ResponseEntity<StreamingResponseBody> so Spring MVC recognizes the streaming body
+    private ResponseEntity<StreamingResponseBody> ndjson(ResultFilter filter) {
+        StreamingResponseBody body = output -> resultStorageService.streamResults(filter, output);
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(body);
+    }
+    
+    /**
+     * Counts and confidence distributions of the results stored by this instance,
+     * served from in-memory rollups without touching the database.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<AnalyticsStats> stats(@RequestParam(defaultValue = "60") int minutes) {
+        return ResponseEntity.ok(rollups.stats(minutes));
+    }
+    
+    /**
+     * Closed windows of one of analytics.windows.definitions, newest first;
+     * from and to bound the window start.
+     */
+    @GetMapping("/windows/{window}")
+    public ResponseEntity<List<EventWindow>> getWindows(
+            @PathVariable String window,
+            @RequestParam(required = false) String key,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "100") int limit) {
+        return windowEngine.findWindows(window, key, from, to, limit)
+            .map(ResponseEntity::ok)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown window " + window));
     }
     
     @GetMapping("/health")
@@ -0,0 +1,48 @@
+package com.analytics.platform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsStats {
+    private long total;
+    // Counts cover results stored since this time, carried across restarts by checkpoints
+    private LocalDateTime countingSince;
+    private Map<String, Long> byPrediction = new LinkedHashMap<>();
+    private Map<String, Long> byEventType = new LinkedHashMap<>();
+    private List<MinuteCount> perMinute = new ArrayList<>();
+    private List<ConfidenceDistribution> confidence = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MinuteCount {
+        private LocalDateTime minute;
+        private long count;
+        private Map<String, Long> byPrediction = new LinkedHashMap<>();
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ConfidenceDistribution {
+        private String prediction;
+        private String modelVersion;
+        private long count;
+        private double mean;
+        private double min;
+        private double p50;
+        private double p90;
+        private double p99;
+        private double max;
+    }
+}
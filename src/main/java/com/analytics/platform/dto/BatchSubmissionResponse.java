@@ -0,0 +1,26 @@
+package com.analytics.platform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchSubmissionResponse {
+    private int accepted;
+    private List<String> eventIds = new ArrayList<>();
+    private List<Rejection> rejections = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Rejection {
+        private int index;
+        private String eventId;
+        private String reason;
+    }
+}
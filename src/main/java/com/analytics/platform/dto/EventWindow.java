@@ -0,0 +1,23 @@
+package com.analytics.platform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventWindow {
+    private String window;
+    private String type;
+    private String keyField;
+    private String key;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private long eventCount;
+    private LocalDateTime firstEventAt;
+    private LocalDateTime lastEventAt;
+    private LocalDateTime closedAt;
+}
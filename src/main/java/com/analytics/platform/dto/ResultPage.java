@@ -0,0 +1,18 @@
+package com.analytics.platform.dto;
+
+import com.analytics.platform.model.AnalyticsResult;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultPage {
+    private List<AnalyticsResult> items = new ArrayList<>();
+    // Pass back as ?cursor= for the next page; null on the last page
+    private String nextCursor;
+}
@@ -4,20 +4,32 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 
 @Entity
-@Table(name = "analytics_results")
+// Listings filter on prediction or user and page newest first by (processed_at, id);
+// event_id lookups use its unique index. On PostgreSQL the table may be range
+// partitioned by processed_at, see ResultPartitionManager.
+@Table(name = "analytics_results", indexes = {
+    @Index(name = "idx_results_prediction_processed_at", columnList = "prediction, processed_at, id"),
+    @Index(name = "idx_results_user_processed_at", columnList = "user_id, processed_at, id"),
+    @Index(name = "idx_results_processed_at", columnList = "processed_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class AnalyticsResultEntity {
     
+    // Sequence IDs let Hibernate batch inserts; the pooled optimizer reserves 50 IDs per
+    // sequence call. Databases created with an identity column: see db/postgres/result-id-sequence.sql
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "analytics_results_seq")
+    @SequenceGenerator(name = "analytics_results_seq", sequenceName = "analytics_results_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true)
@@ -29,11 +41,11 @@ public class AnalyticsResultEntity {
     @Column(nullable = false)
     private Double confidence;
     
-    @ElementCollection
-    @CollectionTable(name = "analytics_insights", joinColumns = @JoinColumn(name = "result_id"))
-    @MapKeyColumn(name = "insight_key")
-    @Column(name = "insight_value")
-    private Map<String, String> insights = new HashMap<>();
+    // One JSON document per result (jsonb on PostgreSQL), read with the row itself.
+    // Rows written before this column existed are moved over by LegacyInsightsMigration.
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "insights")
+    private Map<String, Object> insights = new HashMap<>();
     
     @Column(nullable = false)
     private LocalDateTime processedAt;
@@ -41,6 +53,13 @@ public class AnalyticsResultEntity {
     @Column(nullable = false)
     private String modelVersion;
     
+    // userId of the event, as sent by the client; user below is the account that stored the result
+    @Column(name = "event_user_id")
+    private String eventUserId;
+    
+    @Column(name = "event_type")
+    private String eventType;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private UserEntity user;
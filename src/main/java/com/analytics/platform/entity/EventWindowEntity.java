@@ -0,0 +1,49 @@
+package com.analytics.platform.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+// Closed windows of EventWindowEngine, read by window name and key, newest first
+@Table(name = "analytics_windows", indexes = {
+    @Index(name = "idx_windows_name_key_start", columnList = "window_name, window_key, window_start"),
+    @Index(name = "idx_windows_name_start", columnList = "window_name, window_start")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventWindowEntity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "analytics_windows_seq")
+    @SequenceGenerator(name = "analytics_windows_seq", sequenceName = "analytics_windows_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(name = "window_name", nullable = false)
+    private String windowName;
+    
+    @Column(name = "window_key", nullable = false)
+    private String windowKey;
+    
+    @Column(name = "window_start", nullable = false)
+    private LocalDateTime windowStart;
+    
+    @Column(name = "window_end", nullable = false)
+    private LocalDateTime windowEnd;
+    
+    @Column(nullable = false)
+    private long eventCount;
+    
+    @Column(nullable = false)
+    private LocalDateTime firstEventAt;
+    
+    @Column(nullable = false)
+    private LocalDateTime lastEventAt;
+    
+    @Column(nullable = false)
+    private LocalDateTime closedAt;
+}
@@ -0,0 +1,32 @@
+package com.analytics.platform.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@Entity
+@Table(name = "analytics_rollup_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupCheckpointEntity {
+    
+    // analytics.rollups.checkpoint-key; one row per instance keeping rollups
+    @Id
+    private String id;
+    
+    // Counters and encoded histograms of ResultRollups, replaced on every checkpoint
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "state")
+    private Map<String, Object> state = new HashMap<>();
+    
+    @Column(nullable = false)
+    private LocalDateTime checkpointedAt;
+}
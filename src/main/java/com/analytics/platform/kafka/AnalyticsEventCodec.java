@@ -0,0 +1,319 @@
+package com.analytics.platform.kafka;
+
+import com.analytics.platform.model.AnalyticsEvent;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, schema-versioned binary encoding of {@link AnalyticsEvent}.
+ *
+ * Layout (version 1): one version byte, one presence byte with a bit per optional
+ * field, then the present fields in declaration order. Strings are a varint length
+ * followed by UTF-8 bytes, the timestamp is zigzag epoch seconds plus nanos, and
+ * values in the data map carry a one-byte type tag so JSON-like values round-trip.
+ */
+public final class AnalyticsEventCodec {
+    
+    public static final byte SCHEMA_VERSION = 1;
+    
+    private static final int HAS_EVENT_ID = 1;
+    private static final int HAS_EVENT_TYPE = 1 << 1;
+    private static final int HAS_TIMESTAMP = 1 << 2;
+    private static final int HAS_DATA = 1 << 3;
+    private static final int HAS_USER_ID = 1 << 4;
+    private static final int HAS_SOURCE = 1 << 5;
+    private static final int ALL_FIELDS = HAS_EVENT_ID | HAS_EVENT_TYPE | HAS_TIMESTAMP | HAS_DATA | HAS_USER_ID
+        | HAS_SOURCE;
+    
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_DOUBLE = 4;
+    private static final byte TAG_TRUE = 5;
+    private static final byte TAG_FALSE = 6;
+    private static final byte TAG_MAP = 7;
+    private static final byte TAG_LIST = 8;
+    
+    private static final int MAX_DEPTH = 32;
+    
+    private AnalyticsEventCodec() {
+    }
+    
+    public static byte[] encode(AnalyticsEvent event) {
+        Writer out = new Writer(128);
+        int presence = 0;
+        presence |= event.getEventId() != null ? HAS_EVENT_ID : 0;
+        presence |= event.getEventType() != null ? HAS_EVENT_TYPE : 0;
+        presence |= event.getTimestamp() != null ? HAS_TIMESTAMP : 0;
+        presence |= event.getData() != null ? HAS_DATA : 0;
+        presence |= event.getUserId() != null ? HAS_USER_ID : 0;
+        presence |= event.getSource() != null ? HAS_SOURCE : 0;
+        
+        out.writeByte(SCHEMA_VERSION);
+        out.writeByte(presence);
+        if (event.getEventId() != null) {
+            out.writeString(event.getEventId());
+        }
+        if (event.getEventType() != null) {
+            out.writeString(event.getEventType());
+        }
+        if (event.getTimestamp() != null) {
+            out.writeVarLong(zigzag(event.getTimestamp().toEpochSecond(ZoneOffset.UTC)));
+            out.writeVarLong(event.getTimestamp().getNano());
+        }
+        if (event.getData() != null) {
+            writeMap(out, event.getData(), 0);
+        }
+        if (event.getUserId() != null) {
+            out.writeString(event.getUserId());
+        }
+        if (event.getSource() != null) {
+            out.writeString(event.getSource());
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Decode an event from the remaining bytes of the buffer, which must hold exactly
+     * one event. The buffer position is advanced past the event; no intermediate copy
+     * of the payload is made.
+     *
+     * @throws SerializationException when the payload is truncated, has trailing bytes
+     *                                or is otherwise malformed
+     */
+    public static AnalyticsEvent decode(ByteBuffer in) {
+        try {
+            byte version = in.get();
+            if (version != SCHEMA_VERSION) {
+                throw new SerializationException("Unsupported AnalyticsEvent schema version " + version);
+            }
+            int presence = in.get();
+            if ((presence & ~ALL_FIELDS) != 0) {
+                throw new SerializationException("Unknown AnalyticsEvent fields in presence byte " + presence);
+            }
+            
+            AnalyticsEvent event = new AnalyticsEvent();
+            if ((presence & HAS_EVENT_ID) != 0) {
+                event.setEventId(readString(in));
+            }
+            if ((presence & HAS_EVENT_TYPE) != 0) {
+                event.setEventType(readString(in));
+            }
+            if ((presence & HAS_TIMESTAMP) != 0) {
+                long seconds = unzigzag(readVarLong(in));
+                int nanos = (int) readVarLong(in);
+                event.setTimestamp(LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC));
+            }
+            if ((presence & HAS_DATA) != 0) {
+                event.setData(readMap(in, 0));
+            }
+            if ((presence & HAS_USER_ID) != 0) {
+                event.setUserId(readString(in));
+            }
+            if ((presence & HAS_SOURCE) != 0) {
+                event.setSource(readString(in));
+            }
+            if (in.hasRemaining()) {
+                throw new SerializationException(in.remaining() + " unexpected bytes after AnalyticsEvent");
+            }
+            return event;
+        } catch (RuntimeException e) {
+            if (e instanceof SerializationException) {
+                throw e;
+            }
+            throw new SerializationException("Malformed binary AnalyticsEvent", e);
+        }
+    }
+    
+    private static void writeMap(Writer out, Map<?, ?> map, int depth) {
+        checkDepth(depth);
+        out.writeVarLong(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            out.writeString(String.valueOf(entry.getKey()));
+            writeValue(out, entry.getValue(), depth);
+        }
+    }
+    
+    private static void writeValue(Writer out, Object value, int depth) {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String string) {
+            out.writeByte(TAG_STRING);
+            out.writeString(string);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(TAG_INT);
+            out.writeVarLong(zigzag(((Number) value).longValue()));
+        } else if (value instanceof Long number) {
+            out.writeByte(TAG_LONG);
+            out.writeVarLong(zigzag(number));
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(bool ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Map<?, ?> nested) {
+            out.writeByte(TAG_MAP);
+            writeMap(out, nested, depth + 1);
+        } else if (value instanceof List<?> list) {
+            checkDepth(depth + 1);
+            out.writeByte(TAG_LIST);
+            out.writeVarLong(list.size());
+            for (Object element : list) {
+                writeValue(out, element, depth + 1);
+            }
+        } else {
+            // BigDecimal, BigInteger and anything else keep their textual form, as in JSON
+            out.writeByte(TAG_STRING);
+            out.writeString(value.toString());
+        }
+    }
+    
+    private static Map<String, Object> readMap(ByteBuffer in, int depth) {
+        checkDepth(depth);
+        int size = readLength(in);
+        Map<String, Object> map = new LinkedHashMap<>(Math.max(4, size * 4 / 3 + 1));
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            map.put(key, readValue(in, depth));
+        }
+        return map;
+    }
+    
+    private static Object readValue(ByteBuffer in, int depth) {
+        byte tag = in.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INT:
+                return (int) unzigzag(readVarLong(in));
+            case TAG_LONG:
+                return unzigzag(readVarLong(in));
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(in.getLong());
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_MAP:
+                return readMap(in, depth + 1);
+            case TAG_LIST:
+                checkDepth(depth + 1);
+                int size = readLength(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, depth + 1));
+                }
+                return list;
+            default:
+                throw new SerializationException("Unknown value tag " + tag);
+        }
+    }
+    
+    private static String readString(ByteBuffer in) {
+        int length = readLength(in);
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+    
+    private static int readLength(ByteBuffer in) {
+        long length = readVarLong(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new SerializationException("Invalid length " + length);
+        }
+        return (int) length;
+    }
+    
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Varint is too long");
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    private static void checkDepth(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new SerializationException("Event data is nested deeper than " + MAX_DEPTH + " levels");
+        }
+    }
+    
+    private static final class Writer {
+        private byte[] buffer;
+        private int size;
+        
+        Writer(int initialCapacity) {
+            this.buffer = new byte[initialCapacity];
+        }
+        
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+        
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+        
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+        
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+        
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+}
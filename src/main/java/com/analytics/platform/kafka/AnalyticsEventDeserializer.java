@@ -0,0 +1,83 @@
+package com.analytics.platform.kafka;
+
+import com.analytics.platform.model.AnalyticsEvent;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads events written by {@link AnalyticsEventSerializer} or by older producers that
+ * sent plain JSON without a content-type header. Binary payloads are decoded straight
+ * from the record buffer. A record that cannot be read is returned as null with the
+ * reason in the {@value #ERROR_HEADER} header, so one bad record does not stop the poll.
+ */
+@Slf4j
+public class AnalyticsEventDeserializer implements Deserializer<AnalyticsEvent> {
+    
+    public static final String ERROR_HEADER = "analytics-deserialization-error";
+    
+    private final ObjectMapper objectMapper = createObjectMapper();
+    
+    /**
+     * Kafka instantiates (de)serializers itself, so they use their own mapper configured
+     * like the application one.
+     */
+    static ObjectMapper createObjectMapper() {
+        return JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+    }
+    
+    @Override
+    public AnalyticsEvent deserialize(String topic, byte[] data) {
+        return data == null ? null : deserialize(topic, null, ByteBuffer.wrap(data));
+    }
+    
+    @Override
+    public AnalyticsEvent deserialize(String topic, Headers headers, byte[] data) {
+        return data == null ? null : deserialize(topic, headers, ByteBuffer.wrap(data));
+    }
+    
+    @Override
+    public AnalyticsEvent deserialize(String topic, Headers headers, ByteBuffer data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            if (isBinary(headers)) {
+                return AnalyticsEventCodec.decode(data);
+            }
+            if (data.hasArray()) {
+                return objectMapper.readValue(data.array(), data.arrayOffset() + data.position(),
+                    data.remaining(), AnalyticsEvent.class);
+            }
+            return objectMapper.readValue(new ByteBufferBackedInputStream(data), AnalyticsEvent.class);
+        } catch (Exception e) {
+            log.error("Could not deserialize event from topic [{}]", topic, e);
+            if (headers != null) {
+                headers.add(ERROR_HEADER, String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        }
+    }
+    
+    private boolean isBinary(Headers headers) {
+        if (headers == null) {
+            return false;
+        }
+        Header contentType = headers.lastHeader(AnalyticsEventSerializer.CONTENT_TYPE_HEADER);
+        return contentType != null && AnalyticsEventSerializer.BINARY_CONTENT_TYPE.equals(
+            new String(contentType.value(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,59 @@
+package com.analytics.platform.kafka;
+
+import com.analytics.platform.model.AnalyticsEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Writes events either as JSON or with {@link AnalyticsEventCodec}, selected with the
+ * producer property {@value #FORMAT_CONFIG} (json or binary). Every record carries a
+ * content-type header so consumers can read both formats while producers migrate.
+ */
+public class AnalyticsEventSerializer implements Serializer<AnalyticsEvent> {
+    
+    public static final String FORMAT_CONFIG = "analytics.event.format";
+    public static final String CONTENT_TYPE_HEADER = "content-type";
+    public static final String JSON_CONTENT_TYPE = "application/json";
+    public static final String BINARY_CONTENT_TYPE =
+        "application/vnd.analytics.event.v" + AnalyticsEventCodec.SCHEMA_VERSION + "+binary";
+    
+    private static final byte[] JSON_CONTENT_TYPE_BYTES = JSON_CONTENT_TYPE.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BINARY_CONTENT_TYPE_BYTES = BINARY_CONTENT_TYPE.getBytes(StandardCharsets.UTF_8);
+    
+    private final ObjectMapper objectMapper = AnalyticsEventDeserializer.createObjectMapper();
+    private boolean binary;
+    
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object format = configs.get(FORMAT_CONFIG);
+        binary = format != null && "binary".equalsIgnoreCase(format.toString().trim());
+    }
+    
+    @Override
+    public byte[] serialize(String topic, AnalyticsEvent event) {
+        if (event == null) {
+            return null;
+        }
+        if (binary) {
+            return AnalyticsEventCodec.encode(event);
+        }
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("Error serializing event to JSON", e);
+        }
+    }
+    
+    @Override
+    public byte[] serialize(String topic, Headers headers, AnalyticsEvent event) {
+        headers.remove(CONTENT_TYPE_HEADER);
+        headers.add(CONTENT_TYPE_HEADER, binary ? BINARY_CONTENT_TYPE_BYTES : JSON_CONTENT_TYPE_BYTES);
+        return serialize(topic, event);
+    }
+}
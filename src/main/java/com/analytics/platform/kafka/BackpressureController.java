@@ -0,0 +1,213 @@
+package com.analytics.platform.kafka;
+
+import com.analytics.platform.service.AIService;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pauses Kafka consumption while the pipeline behind it is saturated, instead of
+ * letting work pile up until max.poll.interval.ms forces a rebalance.
+ *
+ * Every check compares in-flight inference calls, the Hikari connection wait and
+ * the average listener latency over the last interval against their limits.
+ * When any limit is exceeded every assigned partition is paused at once; when all
+ * signals are back under the recovery ratio, partitions are resumed a fraction at
+ * a time so the load ramps up instead of arriving as one burst.
+ */
+@Component
+@Slf4j
+public class BackpressureController {
+    
+    public enum State { FLOWING, RAMPING_UP, PAUSED }
+    
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final AIService aiService;
+    private final HikariDataSource hikariDataSource;
+    private final MeterRegistry meterRegistry;
+    private final Counter pauseCounter;
+    
+    private final LongAdder processingCalls = new LongAdder();
+    private final LongAdder processingNanos = new LongAdder();
+    private final List<PausedPartition> pausedPartitions = new ArrayList<>();
+    
+    @Value("${kafka.backpressure.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${kafka.backpressure.max-in-flight:64}")
+    private int maxInFlight;
+    
+    @Value("${kafka.backpressure.max-db-wait-ms:50}")
+    private double maxDbWaitMs;
+    
+    @Value("${kafka.backpressure.max-latency-ms:2000}")
+    private double maxLatencyMs;
+    
+    @Value("${kafka.backpressure.recovery-ratio:0.7}")
+    private double recoveryRatio;
+    
+    @Value("${kafka.backpressure.resume-fraction:0.25}")
+    private double resumeFraction;
+    
+    private volatile State state = State.FLOWING;
+    private volatile double lastDbWaitMs;
+    private volatile double lastLatencyMs;
+    private long lastAcquireCount;
+    private double lastAcquireTotalMs;
+    
+    public BackpressureController(KafkaListenerEndpointRegistry listenerRegistry, AIService aiService,
+                                  DataSource dataSource, MeterRegistry meterRegistry) {
+        this.listenerRegistry = listenerRegistry;
+        this.aiService = aiService;
+        this.hikariDataSource = dataSource instanceof HikariDataSource hikari ? hikari : null;
+        this.meterRegistry = meterRegistry;
+        this.pauseCounter = Counter.builder("analytics.backpressure.pauses")
+            .description("Times consumption was paused because the pipeline was saturated")
+            .register(meterRegistry);
+        
+        Gauge.builder("analytics.backpressure.state", this, c -> c.state.ordinal())
+            .description("0 = flowing, 1 = ramping up, 2 = paused")
+            .register(meterRegistry);
+        Gauge.builder("analytics.backpressure.paused.partitions", this, c -> c.pausedPartitionCount())
+            .register(meterRegistry);
+        Gauge.builder("analytics.backpressure.inflight", aiService, AIService::getInFlightRequests)
+            .description("Inference calls currently in progress")
+            .register(meterRegistry);
+        Gauge.builder("analytics.backpressure.db.wait", this, c -> c.lastDbWaitMs)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+        Gauge.builder("analytics.backpressure.latency", this, c -> c.lastLatencyMs)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Called by the consumer after each listener invocation (one record, or one
+     * poll in the batch modes), which is what counts against max.poll.interval.ms.
+     */
+    public void recordProcessing(long elapsedNanos) {
+        processingCalls.increment();
+        processingNanos.add(elapsedNanos);
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    @Scheduled(fixedDelayString = "${kafka.backpressure.check-interval-ms:500}")
+    public synchronized void check() {
+        if (!enabled) {
+            return;
+        }
+        
+        int inFlight = aiService.getInFlightRequests();
+        lastDbWaitMs = sampleDbWaitMs();
+        lastLatencyMs = sampleLatencyMs();
+        int waitingThreads = threadsAwaitingConnection();
+        
+        boolean saturated = inFlight > maxInFlight
+            || lastDbWaitMs > maxDbWaitMs
+            || lastLatencyMs > maxLatencyMs
+            || (hikariDataSource != null && waitingThreads >= hikariDataSource.getMaximumPoolSize());
+        boolean recovered = inFlight <= maxInFlight * recoveryRatio
+            && lastDbWaitMs <= maxDbWaitMs * recoveryRatio
+            && lastLatencyMs <= maxLatencyMs * recoveryRatio
+            && waitingThreads == 0;
+        
+        if (saturated) {
+            pauseAll(inFlight);
+        } else if (recovered && !pausedPartitions.isEmpty()) {
+            resumeSome();
+        }
+    }
+    
+    private void pauseAll(int inFlight) {
+        int newlyPaused = 0;
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            Collection<TopicPartition> assigned = container.isRunning() ? container.getAssignedPartitions() : null;
+            if (assigned == null) {
+                continue;
+            }
+            for (TopicPartition partition : assigned) {
+                if (!container.isPartitionPauseRequested(partition)) {
+                    container.pausePartition(partition);
+                    pausedPartitions.add(new PausedPartition(container, partition));
+                    newlyPaused++;
+                }
+            }
+        }
+        if (newlyPaused > 0) {
+            pauseCounter.increment();
+            log.warn("Pipeline saturated (in-flight={}, db-wait={}ms, latency={}ms), paused {} partition(s)",
+                inFlight, String.format("%.1f", lastDbWaitMs), String.format("%.1f", lastLatencyMs), newlyPaused);
+        }
+        state = pausedPartitions.isEmpty() ? State.FLOWING : State.PAUSED;
+    }
+    
+    private void resumeSome() {
+        int toResume = Math.max(1, (int) Math.ceil(pausedPartitions.size() * resumeFraction));
+        for (int i = 0; i < toResume && !pausedPartitions.isEmpty(); i++) {
+            PausedPartition paused = pausedPartitions.remove(pausedPartitions.size() - 1);
+            paused.container.resumePartition(paused.partition);
+        }
+        state = pausedPartitions.isEmpty() ? State.FLOWING : State.RAMPING_UP;
+        if (state == State.FLOWING) {
+            log.info("Pipeline recovered, all partitions resumed");
+        }
+    }
+    
+    private int pausedPartitionCount() {
+        synchronized (this) {
+            return pausedPartitions.size();
+        }
+    }
+    
+    private int threadsAwaitingConnection() {
+        HikariPoolMXBean pool = hikariDataSource != null ? hikariDataSource.getHikariPoolMXBean() : null;
+        return pool != null ? pool.getThreadsAwaitingConnection() : 0;
+    }
+    
+    /**
+     * Average time to acquire a connection since the previous check, from the
+     * Hikari metrics that Spring Boot registers.
+     */
+    private double sampleDbWaitMs() {
+        Timer acquire = meterRegistry.find("hikaricp.connections.acquire").timer();
+        if (acquire == null) {
+            return 0;
+        }
+        long count = acquire.count();
+        double totalMs = acquire.totalTime(TimeUnit.MILLISECONDS);
+        long deltaCount = count - lastAcquireCount;
+        double deltaMs = totalMs - lastAcquireTotalMs;
+        lastAcquireCount = count;
+        lastAcquireTotalMs = totalMs;
+        return deltaCount > 0 ? deltaMs / deltaCount : 0;
+    }
+    
+    private double sampleLatencyMs() {
+        long calls = processingCalls.sumThenReset();
+        long nanos = processingNanos.sumThenReset();
+        return calls > 0 ? nanos / 1_000_000.0 / calls : 0;
+    }
+    
+    private record PausedPartition(MessageListenerContainer container, TopicPartition partition) {
+    }
+}
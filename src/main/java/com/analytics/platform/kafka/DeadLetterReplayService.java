@@ -0,0 +1,151 @@
+package com.analytics.platform.kafka;
+
+import com.analytics.platform.model.AnalyticsEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the dead-letter topic into the main events topic in bulk. Progress is
+ * tracked with a dedicated consumer group, so each dead letter is replayed once.
+ */
+@Service
+@Slf4j
+public class DeadLetterReplayService {
+    
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+    private static final Set<String> RETRY_HEADERS = Set.of(
+        FailedEventRouter.RETRY_COUNT_HEADER, FailedEventRouter.NOT_BEFORE_HEADER,
+        FailedEventRouter.EXCEPTION_HEADER, AnalyticsEventSerializer.CONTENT_TYPE_HEADER);
+    
+    private final ConsumerFactory<String, AnalyticsEvent> consumerFactory;
+    private final KafkaTemplate<String, AnalyticsEvent> kafkaTemplate;
+    private final FailedEventRouter router;
+    
+    @Value("${kafka.topic.events:analytics-events}")
+    private String eventsTopic;
+    
+    @Value("${kafka.consumer.group-id:analytics-group}")
+    private String groupId;
+    
+    @Value("${kafka.retry.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+    
+    public DeadLetterReplayService(ConsumerFactory<String, AnalyticsEvent> consumerFactory,
+                                   KafkaTemplate<String, AnalyticsEvent> kafkaTemplate,
+                                   FailedEventRouter router) {
+        this.consumerFactory = consumerFactory;
+        this.kafkaTemplate = kafkaTemplate;
+        this.router = router;
+    }
+    
+    /**
+     * Republish up to maxRecords dead letters to the main topic with their retry
+     * state cleared. Offsets are committed only after every send was acknowledged.
+     * Dead letters that cannot be deserialized are counted as unreadable and passed over.
+     *
+     * @return the number of records replayed, not counting unreadable ones
+     */
+    public synchronized int replay(int maxRecords) throws Exception {
+        String deadLetterTopic = router.deadLetterTopic();
+        try (Consumer<String, AnalyticsEvent> consumer =
+                 consumerFactory.createConsumer(groupId + "-dlt-replay", "replay")) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (PartitionInfo info : consumer.partitionsFor(deadLetterTopic)) {
+                partitions.add(new TopicPartition(info.topic(), info.partition()));
+            }
+            if (partitions.isEmpty()) {
+                return 0;
+            }
+            consumer.assign(partitions);
+            
+            Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(Set.copyOf(partitions));
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+            for (TopicPartition partition : partitions) {
+                OffsetAndMetadata offset = committed.get(partition);
+                if (offset != null) {
+                    consumer.seek(partition, offset.offset());
+                } else {
+                    consumer.seekToBeginning(List.of(partition));
+                }
+            }
+            
+            Map<TopicPartition, OffsetAndMetadata> replayed = new HashMap<>();
+            List<CompletableFuture<SendResult<String, AnalyticsEvent>>> sends = new ArrayList<>();
+            int count = 0;
+            int unreadable = 0;
+            while (count < maxRecords && !caughtUp(consumer, partitions, endOffsets)) {
+                ConsumerRecords<String, AnalyticsEvent> records = consumer.poll(POLL_TIMEOUT);
+                if (records.isEmpty()) {
+                    break;
+                }
+                for (ConsumerRecord<String, AnalyticsEvent> record : records) {
+                    if (count >= maxRecords) {
+                        break;
+                    }
+                    if (record.value() != null) {
+                        sends.add(kafkaTemplate.send(new ProducerRecord<>(
+                            eventsTopic, null, record.key(), record.value(), replayHeaders(record.headers()))));
+                    } else {
+                        router.skipUnreadable(record);
+                        unreadable++;
+                    }
+                    replayed.put(new TopicPartition(record.topic(), record.partition()),
+                        new OffsetAndMetadata(record.offset() + 1));
+                    count++;
+                }
+            }
+            
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture[0]))
+                .get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+            if (!replayed.isEmpty()) {
+                consumer.commitSync(replayed);
+            }
+            log.info("Replayed {} record(s) from [{}] to [{}], skipped {} unreadable",
+                count - unreadable, deadLetterTopic, eventsTopic, unreadable);
+            return count - unreadable;
+        }
+    }
+    
+    private boolean caughtUp(Consumer<String, AnalyticsEvent> consumer, List<TopicPartition> partitions,
+                             Map<TopicPartition, Long> endOffsets) {
+        for (TopicPartition partition : partitions) {
+            if (consumer.position(partition) < endOffsets.getOrDefault(partition, 0L)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private Headers replayHeaders(Headers original) {
+        Headers headers = new RecordHeaders();
+        for (Header header : original) {
+            if (!RETRY_HEADERS.contains(header.key())) {
+                headers.add(header);
+            }
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,162 @@
+package com.analytics.platform.kafka;
+
+import com.analytics.platform.model.AnalyticsEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Moves records that failed processing off the main partition: first through the
+ * retry tiers (one topic per delay), then to the dead-letter topic. The retry count
+ * and the original topic, partition and offset travel with the record as headers.
+ */
+@Component
+@Slf4j
+public class FailedEventRouter {
+    
+    public static final String RETRY_COUNT_HEADER = "x-retry-count";
+    public static final String ORIGINAL_TOPIC_HEADER = "x-original-topic";
+    public static final String ORIGINAL_PARTITION_HEADER = "x-original-partition";
+    public static final String ORIGINAL_OFFSET_HEADER = "x-original-offset";
+    public static final String NOT_BEFORE_HEADER = "x-retry-not-before";
+    public static final String EXCEPTION_HEADER = "x-exception";
+    
+    /** Headers rewritten on every hop; everything else is carried over as-is. */
+    private static final Set<String> ROUTING_HEADERS = Set.of(
+        RETRY_COUNT_HEADER, NOT_BEFORE_HEADER, EXCEPTION_HEADER,
+        AnalyticsEventSerializer.CONTENT_TYPE_HEADER, AnalyticsEventDeserializer.ERROR_HEADER);
+    
+    private static final int MAX_EXCEPTION_LENGTH = 1000;
+    
+    private final KafkaTemplate<String, AnalyticsEvent> kafkaTemplate;
+    private final String eventsTopic;
+    private final long[] delaysMs;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${kafka.retry.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+    
+    public FailedEventRouter(KafkaTemplate<String, AnalyticsEvent> kafkaTemplate,
+                             @Value("${kafka.topic.events:analytics-events}") String eventsTopic,
+                             @Value("${kafka.retry.delays-ms:5000,30000,300000}") long[] delaysMs,
+                             MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.eventsTopic = eventsTopic;
+        this.delaysMs = delaysMs;
+        this.meterRegistry = meterRegistry;
+    }
+    
+    public int getTierCount() {
+        return delaysMs.length;
+    }
+    
+    public String retryTopic(int tier) {
+        return eventsTopic + "-retry-" + tier;
+    }
+    
+    public String deadLetterTopic() {
+        return eventsTopic + "-dlt";
+    }
+    
+    /**
+     * Publish the failed record to its next tier and wait for the broker to accept it,
+     * so the caller can safely acknowledge the original. Throws if the record could
+     * not be moved, in which case the original must not be acknowledged.
+     */
+    public void route(ConsumerRecord<String, AnalyticsEvent> record, Exception cause) {
+        int attempts = intHeader(record.headers(), RETRY_COUNT_HEADER, 0);
+        boolean exhausted = attempts >= delaysMs.length;
+        String target = exhausted ? deadLetterTopic() : retryTopic(attempts);
+        
+        Headers headers = new RecordHeaders();
+        for (Header header : record.headers()) {
+            if (!ROUTING_HEADERS.contains(header.key())) {
+                headers.add(header);
+            }
+        }
+        if (headers.lastHeader(ORIGINAL_TOPIC_HEADER) == null) {
+            headers.add(ORIGINAL_TOPIC_HEADER, bytes(record.topic()));
+            headers.add(ORIGINAL_PARTITION_HEADER, bytes(String.valueOf(record.partition())));
+            headers.add(ORIGINAL_OFFSET_HEADER, bytes(String.valueOf(record.offset())));
+        }
+        headers.add(RETRY_COUNT_HEADER, bytes(String.valueOf(attempts + 1)));
+        if (!exhausted) {
+            headers.add(NOT_BEFORE_HEADER, bytes(String.valueOf(System.currentTimeMillis() + delaysMs[attempts])));
+        }
+        headers.add(EXCEPTION_HEADER, bytes(describe(cause)));
+        
+        try {
+            kafkaTemplate.send(new ProducerRecord<>(target, null, record.key(), record.value(), headers))
+                .get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while routing failed record to " + target, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Could not route failed record to " + target, e);
+        }
+        
+        if (exhausted) {
+            log.error("Event [{}] failed {} times, moved to dead-letter topic [{}]",
+                keyOf(record), attempts + 1, target);
+        } else {
+            log.warn("Event [{}] failed (attempt {}), scheduled on [{}] in {} ms",
+                keyOf(record), attempts + 1, target, delaysMs[attempts]);
+        }
+    }
+    
+    /**
+     * Account for a record whose value could not be deserialized before the caller
+     * moves past it. There is no event left to retry or replay, so it is logged with
+     * the deserializer's reason and counted in analytics.events.unreadable per topic.
+     */
+    public void skipUnreadable(ConsumerRecord<String, AnalyticsEvent> record) {
+        Header error = record.headers().lastHeader(AnalyticsEventDeserializer.ERROR_HEADER);
+        log.error("Skipping unreadable message on [{}] at partition [{}], offset [{}]: {}",
+            record.topic(), record.partition(), record.offset(),
+            error != null ? new String(error.value(), StandardCharsets.UTF_8) : "no value");
+        Counter.builder("analytics.events.unreadable")
+            .description("Records skipped because their value could not be deserialized")
+            .tag("topic", record.topic())
+            .register(meterRegistry)
+            .increment();
+    }
+    
+    static int intHeader(Headers headers, String name, int defaultValue) {
+        Header header = headers.lastHeader(name);
+        return header == null ? defaultValue : Integer.parseInt(new String(header.value(), StandardCharsets.UTF_8));
+    }
+    
+    static long longHeader(Headers headers, String name, long defaultValue) {
+        Header header = headers.lastHeader(name);
+        return header == null ? defaultValue : Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+    }
+    
+    private static String keyOf(ConsumerRecord<String, AnalyticsEvent> record) {
+        return record.value() != null ? record.value().getEventId() : record.key();
+    }
+    
+    private static String describe(Exception cause) {
+        String description = cause.getClass().getName() + ": " + cause.getMessage();
+        return description.length() > MAX_EXCEPTION_LENGTH
+            ? description.substring(0, MAX_EXCEPTION_LENGTH)
+            : description;
+    }
+    
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -3,62 +3,369 @@ package com.analytics.platform.kafka;
 import com.analytics.platform.model.AnalyticsEvent;
 import com.analytics.platform.model.AnalyticsResult;
 import com.analytics.platform.service.AIService;
+import com.analytics.platform.service.EventDeduplicator;
+import com.analytics.platform.service.EventWindowEngine;
 import com.analytics.platform.service.ResultStorageService;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
-import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 @Component
 @Slf4j
 public class KafkaConsumer {
     
-    private final ObjectMapper objectMapper;
     private final AIService aiService;
     private final ResultStorageService resultStorageService;
+    private final KeyOrderedRecordProcessor recordProcessor;
+    private final FailedEventRouter failedEventRouter;
+    private final BackpressureController backpressureController;
+    private final EventDeduplicator eventDeduplicator;
+    private final EventWindowEngine windowEngine;
+    private final Deque<UnroutedRecord> unroutedRecords = new ConcurrentLinkedDeque<>();
     
-    public KafkaConsumer(ObjectMapper objectMapper, AIService aiService, 
-                        ResultStorageService resultStorageService) {
-        this.objectMapper = objectMapper;
+    public KafkaConsumer(AIService aiService, 
+                        ResultStorageService resultStorageService,
+                        KeyOrderedRecordProcessor recordProcessor,
+                        FailedEventRouter failedEventRouter,
+                        BackpressureController backpressureController,
+                        EventDeduplicator eventDeduplicator,
+                        EventWindowEngine windowEngine) {
         this.aiService = aiService;
         this.resultStorageService = resultStorageService;
+        this.recordProcessor = recordProcessor;
+        this.failedEventRouter = failedEventRouter;
+        this.backpressureController = backpressureController;
+        this.eventDeduplicator = eventDeduplicator;
+        this.windowEngine = windowEngine;
     }
     
-    @KafkaListener(topics = "${kafka.topic.events:analytics-events}", 
-                   groupId = "${kafka.consumer.group-id:analytics-group}")
-    public void consumeEvent(@Payload String message,
-                           @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
-                           @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
-                           @Header(KafkaHeaders.OFFSET) long offset,
+    @KafkaListener(id = "analytics-events-single",
+                   topics = "${kafka.topic.events:analytics-events}", 
+                   groupId = "${kafka.consumer.group-id:analytics-group}",
+                   containerFactory = "asyncAckKafkaListenerContainerFactory",
+                   autoStartup = "#{'${kafka.consumer.mode:single}' == 'single'}")
+    public void consumeEvent(ConsumerRecord<String, AnalyticsEvent> record,
                            Acknowledgment acknowledgment) {
+        routeUnroutedRecords();
+        AnalyticsEvent event = record.value();
+        long start = System.nanoTime();
         try {
             log.info("Received message from topic [{}], partition [{}], offset [{}]: {}",
-                topic, partition, offset, message);
+                record.topic(), record.partition(), record.offset(), event);
+            
+            if (event == null) {
+                failedEventRouter.skipUnreadable(record);
+                if (acknowledgment != null) {
+                    acknowledgment.acknowledge();
+                }
+                return;
+            }
             
-            AnalyticsEvent event = objectMapper.readValue(message, AnalyticsEvent.class);
+            if (eventDeduplicator.isDuplicate(event.getEventId())) {
+                log.info("Skipping already processed event [{}]", event.getEventId());
+                if (acknowledgment != null) {
+                    acknowledgment.acknowledge();
+                }
+                return;
+            }
             
             // Process with AI
             AnalyticsResult result = aiService.processEvent(event);
             
-            // Store result
-            resultStorageService.saveResult(result);
+            // Store result; the message is acknowledged from the write-behind flush
+            // once the result is committed (or journaled), so the next record need not wait for it
+            resultStorageService.saveResultAsync(result).subscribe(
+                null,
+                e -> {
+                    log.error("Could not store result of event [{}]", event.getEventId(), e);
+                    routeFailureLater(record, e, acknowledgment);
+                },
+                () -> {
+                    eventDeduplicator.markProcessed(event.getEventId());
+                    // Only once stored, as in batch mode: a record that fails is counted when it is retried
+                    windowEngine.accept(event);
+                    log.info("Processed event [{}] with prediction [{}]",
+                        event.getEventId(), result.getPrediction());
+                    if (acknowledgment != null) {
+                        acknowledgment.acknowledge();
+                    }
+                });
+            
+        } catch (Exception e) {
+            log.error("Error processing message from Kafka", e);
+            routeFailure(record, e, acknowledgment);
+        } finally {
+            backpressureController.recordProcessing(System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Batch mode: the whole poll is deserialized, scored through a single
+     * batch inference call, persisted in one transaction and acknowledged once.
+     * Records that cannot be parsed are skipped so they do not block the batch.
+     * If the batch fails as a whole, records are retried one by one and only
+     * the ones that still fail are sent to the retry tiers; if one of those cannot
+     * be sent, the batch is left unacknowledged and redelivered.
+     */
+    @KafkaListener(id = "analytics-events-batch",
+                   topics = "${kafka.topic.events:analytics-events}",
+                   groupId = "${kafka.consumer.group-id:analytics-group}",
+                   containerFactory = "batchKafkaListenerContainerFactory",
+                   autoStartup = "#{'${kafka.consumer.mode:single}' == 'batch'}",
+                   properties = {
+                       "max.poll.records=${kafka.consumer.batch.size:500}",
+                       "fetch.max.wait.ms=${kafka.consumer.batch.max-wait-ms:100}",
+                       "fetch.min.bytes=${kafka.consumer.batch.min-bytes:16384}"
+                   })
+    public void consumeBatch(List<ConsumerRecord<String, AnalyticsEvent>> records,
+                             Acknowledgment acknowledgment) {
+        if (records.isEmpty()) {
+            return;
+        }
+        
+        long start = System.nanoTime();
+        try {
+            List<AnalyticsEvent> events = new ArrayList<>(records.size());
+            Set<String> batchEventIds = new HashSet<>();
+            for (ConsumerRecord<String, AnalyticsEvent> record : records) {
+                AnalyticsEvent event = record.value();
+                if (event == null) {
+                    failedEventRouter.skipUnreadable(record);
+                } else if (!batchEventIds.add(event.getEventId())
+                        || eventDeduplicator.isDuplicate(event.getEventId())) {
+                    log.info("Skipping already processed event [{}]", event.getEventId());
+                } else {
+                    events.add(event);
+                }
+            }
+            
+            if (!events.isEmpty()) {
+                List<AnalyticsResult> results = aiService.processBatch(events);
+                resultStorageService.saveResults(results);
+                events.forEach(event -> eventDeduplicator.markProcessed(event.getEventId()));
+                // Only once the batch succeeded: otherwise its records are fed one by one below
+                events.forEach(windowEngine::accept);
+            }
             
-            log.info("Processed event [{}] with prediction [{}]", 
-                event.getEventId(), result.getPrediction());
+            log.info("Processed batch of [{}] records ([{}] events)", records.size(), events.size());
             
-            // Acknowledge message
             if (acknowledgment != null) {
                 acknowledgment.acknowledge();
             }
             
         } catch (Exception e) {
-            log.error("Error processing message from Kafka", e);
-            // In production, implement retry logic or dead letter queue
+            log.error("Error processing batch of [{}] messages from Kafka, retrying records individually",
+                records.size(), e);
+            // A record that cannot be routed throws out of the listener: the error handler seeks
+            // back and redelivers the batch, and the records already handled are skipped as duplicates
+            for (ConsumerRecord<String, AnalyticsEvent> record : records) {
+                if (record.value() != null) {
+                    processOrRoute(record);
+                }
+            }
+            if (acknowledgment != null) {
+                acknowledgment.acknowledge();
+            }
+        } finally {
+            backpressureController.recordProcessing(System.nanoTime() - start);
         }
     }
+    
+    /**
+     * Parallel mode: records of one poll run concurrently on the worker pool,
+     * records with the same userId (or eventId) stay in order. Records that fail
+     * are moved to the retry tiers; each partition is committed up to its highest
+     * contiguous completed record and rewound to the first record that could not
+     * be moved, so nothing is skipped and nothing is committed early.
+     */
+    @KafkaListener(id = "analytics-events-parallel",
+                   topics = "${kafka.topic.events:analytics-events}",
+                   groupId = "${kafka.consumer.group-id:analytics-group}",
+                   containerFactory = "batchKafkaListenerContainerFactory",
+                   autoStartup = "#{'${kafka.consumer.mode:single}' == 'parallel'}",
+                   properties = "max.poll.records=${kafka.consumer.batch.size:500}")
+    public void consumeParallel(List<ConsumerRecord<String, AnalyticsEvent>> records, Consumer<?, ?> consumer) {
+        long start = System.nanoTime();
+        Map<TopicPartition, KeyOrderedRecordProcessor.PartitionProgress> progress = recordProcessor.process(
+            records,
+            record -> orderingKey(record, record.value()),
+            this::processOrRoute);
+        
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        progress.forEach((partition, state) -> {
+            if (state.getNextOffset() >= 0) {
+                offsets.put(partition, new OffsetAndMetadata(state.getNextOffset()));
+            }
+            if (state.hasFailure()) {
+                consumer.seek(partition, state.getFirstFailedOffset());
+            }
+        });
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+        backpressureController.recordProcessing(System.nanoTime() - start);
+        
+        log.info("Processed parallel batch of [{}] records, committed [{}] partition(s)",
+            records.size(), offsets.size());
+    }
+    
+    /**
+     * Reactive mode: the listener thread only starts the pipeline and returns.
+     * Inference runs on the WebClient event loop; the blocking steps (dedup lookup,
+     * queueing the database write and failure routing) run on boundedElastic. The
+     * record is acknowledged once its result is committed or it has been moved to a retry tier.
+     * Records may finish out of order, so per-key ordering is not preserved here.
+     */
+    @KafkaListener(id = "analytics-events-reactive",
+                   topics = "${kafka.topic.events:analytics-events}",
+                   groupId = "${kafka.consumer.group-id:analytics-group}",
+                   containerFactory = "asyncAckKafkaListenerContainerFactory",
+                   autoStartup = "#{'${kafka.consumer.mode:single}' == 'reactive'}")
+    public void consumeEventReactive(ConsumerRecord<String, AnalyticsEvent> record,
+                                     Acknowledgment acknowledgment) {
+        routeUnroutedRecords();
+        AnalyticsEvent event = record.value();
+        if (event == null) {
+            failedEventRouter.skipUnreadable(record);
+            acknowledgment.acknowledge();
+            return;
+        }
+        
+        long start = System.nanoTime();
+        Mono.fromCallable(() -> eventDeduplicator.isDuplicate(event.getEventId()))
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMap(duplicate -> {
+                if (duplicate) {
+                    log.info("Skipping already processed event [{}]", event.getEventId());
+                    return Mono.<Void>empty();
+                }
+                return aiService.processEventReactive(event)
+                    .publishOn(Schedulers.boundedElastic())
+                    .flatMap(result -> resultStorageService.saveResultAsync(result)
+                        .doOnSuccess(stored -> {
+                            eventDeduplicator.markProcessed(event.getEventId());
+                            windowEngine.accept(event);
+                            log.info("Processed event [{}] with prediction [{}]",
+                                event.getEventId(), result.getPrediction());
+                        }));
+            })
+            .then(Mono.fromRunnable(acknowledgment::acknowledge))
+            .onErrorResume(e -> Mono.fromRunnable(() -> {
+                    log.error("Error processing message from Kafka", e);
+                    routeFailureLater(record, e, acknowledgment);
+                })
+                .subscribeOn(Schedulers.boundedElastic()))
+            .doFinally(signal -> backpressureController.recordProcessing(System.nanoTime() - start))
+            .subscribe(null, e -> log.error("Reactive pipeline failed for event [{}]", event.getEventId(), e));
+    }
+    
+    private void processOrRoute(ConsumerRecord<String, AnalyticsEvent> record) {
+        AnalyticsEvent event = record.value();
+        if (event == null) {
+            failedEventRouter.skipUnreadable(record);
+            return;
+        }
+        if (eventDeduplicator.isDuplicate(event.getEventId())) {
+            log.info("Skipping already processed event [{}]", event.getEventId());
+            return;
+        }
+        try {
+            AnalyticsResult result = aiService.processEvent(event);
+            resultStorageService.saveResult(result);
+            eventDeduplicator.markProcessed(event.getEventId());
+            windowEngine.accept(event);
+        } catch (Exception e) {
+            log.error("Error processing event [{}] at partition [{}], offset [{}]",
+                event.getEventId(), record.partition(), record.offset(), e);
+            failedEventRouter.route(record, e);
+        }
+    }
+    
+    /**
+     * Move a failed record off the main partition and acknowledge it. If it cannot
+     * be moved the exception is rethrown, so the container's error handler seeks
+     * back to the record and redelivers it instead of a later ack committing past it.
+     */
+    private void routeFailure(ConsumerRecord<String, AnalyticsEvent> record, Exception cause,
+                              Acknowledgment acknowledgment) {
+        try {
+            failedEventRouter.route(record, cause);
+        } catch (RuntimeException e) {
+            log.error("Could not route failed record at partition [{}], offset [{}], it will be redelivered",
+                record.partition(), record.offset(), e);
+            throw e;
+        }
+        if (acknowledgment != null) {
+            acknowledgment.acknowledge();
+        }
+    }
+    
+    /**
+     * Route a record that failed off the listener thread, where nothing can be thrown
+     * back to the container. If it cannot be moved it stays unacknowledged, which with
+     * async acks holds the partition's committed offset below it, and is handed to the
+     * next listener call to be routed again there.
+     */
+    private void routeFailureLater(ConsumerRecord<String, AnalyticsEvent> record, Throwable cause,
+                                   Acknowledgment acknowledgment) {
+        Exception exception = cause instanceof Exception ex ? ex : new IllegalStateException(cause);
+        try {
+            failedEventRouter.route(record, exception);
+        } catch (RuntimeException e) {
+            log.error("Could not route failed record at partition [{}], offset [{}], retrying from the listener",
+                record.partition(), record.offset(), e);
+            unroutedRecords.add(new UnroutedRecord(record, exception, acknowledgment));
+            return;
+        }
+        if (acknowledgment != null) {
+            acknowledgment.acknowledge();
+        }
+    }
+    
+    /**
+     * Called on the listener thread before each record. A record that still cannot
+     * be routed is put back and the exception is thrown, so the error handler backs
+     * off and redelivers the current record.
+     */
+    private void routeUnroutedRecords() {
+        UnroutedRecord unrouted;
+        while ((unrouted = unroutedRecords.poll()) != null) {
+            try {
+                routeFailure(unrouted.record(), unrouted.cause(), unrouted.acknowledgment());
+            } catch (RuntimeException e) {
+                unroutedRecords.addFirst(unrouted);
+                throw e;
+            }
+        }
+    }
+    
+    private record UnroutedRecord(ConsumerRecord<String, AnalyticsEvent> record, Exception cause,
+                                  Acknowledgment acknowledgment) {
+    }
+    
+    private String orderingKey(ConsumerRecord<String, AnalyticsEvent> record, AnalyticsEvent event) {
+        if (event != null && event.getUserId() != null && !event.getUserId().isEmpty()) {
+            return event.getUserId();
+        }
+        if (event != null && event.getEventId() != null) {
+            return event.getEventId();
+        }
+        return record.key();
+    }
 }
-
@@ -1,9 +1,8 @@
 package com.analytics.platform.kafka;
 
 import com.analytics.platform.model.AnalyticsEvent;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.SerializationException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
@@ -15,34 +14,42 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class KafkaProducer {
     
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final KafkaTemplate<String, AnalyticsEvent> kafkaTemplate;
     
     @Value("${kafka.topic.events:analytics-events}")
     private String eventsTopic;
     
-    public KafkaProducer(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper) {
+    /**
+     * Events are written by {@link AnalyticsEventSerializer}, as JSON or in the
+     * binary format depending on the analytics.event.format producer property.
+     */
+    public KafkaProducer(KafkaTemplate<String, AnalyticsEvent> kafkaTemplate) {
         this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
     }
     
     public void sendEvent(AnalyticsEvent event) {
+        sendEventAsync(event).whenComplete((result, exception) -> {
+            if (exception == null) {
+                log.info("Sent event [{}] to topic [{}] with offset [{}]",
+                    event.getEventId(), eventsTopic, result.getRecordMetadata().offset());
+            } else if (exception instanceof SerializationException) {
+                log.error("Error serializing event", exception);
+            } else {
+                log.error("Failed to send event [{}] to topic [{}]",
+                    event.getEventId(), eventsTopic, exception);
+            }
+        });
+    }
+    
+    /**
+     * Hand the event to the producer without waiting for the broker, so several
+     * sends can be pipelined. The future fails if serialization or the send fails.
+     */
+    public CompletableFuture<SendResult<String, AnalyticsEvent>> sendEventAsync(AnalyticsEvent event) {
         try {
-            String eventJson = objectMapper.writeValueAsString(event);
-            CompletableFuture<SendResult<String, String>> future = 
-                kafkaTemplate.send(eventsTopic, event.getEventId(), eventJson);
-            
-            future.whenComplete((result, exception) -> {
-                if (exception == null) {
-                    log.info("Sent event [{}] to topic [{}] with offset [{}]",
-                        event.getEventId(), eventsTopic, result.getRecordMetadata().offset());
-                } else {
-                    log.error("Failed to send event [{}] to topic [{}]",
-                        event.getEventId(), eventsTopic, exception);
-                }
-            });
-        } catch (JsonProcessingException e) {
-            log.error("Error serializing event to JSON", e);
+            return kafkaTemplate.send(eventsTopic, event.getEventId(), event);
+        } catch (SerializationException e) {
+            return CompletableFuture.failedFuture(e);
         }
     }
 }
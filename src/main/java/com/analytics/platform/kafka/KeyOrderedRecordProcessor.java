@@ -0,0 +1,172 @@
+package com.analytics.platform.kafka;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Fans the records of one poll out to a bounded pool of workers while keeping
+ * records that share a key in their original order. Once every task has finished,
+ * it works out for each partition the highest contiguous run of completed records,
+ * which is the only safe point to commit.
+ */
+@Component
+@Slf4j
+public class KeyOrderedRecordProcessor {
+    
+    private final int concurrency;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    
+    public KeyOrderedRecordProcessor(
+            @Value("${kafka.consumer.parallel.concurrency:16}") int concurrency,
+            @Value("${kafka.consumer.parallel.virtual-threads:false}") boolean virtualThreads) {
+        this.concurrency = concurrency;
+        ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtualExecutor != null) {
+            // Virtual threads are unbounded, so concurrency is capped with permits instead
+            this.executor = virtualExecutor;
+            this.permits = new Semaphore(concurrency);
+        } else {
+            this.executor = Executors.newFixedThreadPool(concurrency, workerThreadFactory());
+            this.permits = null;
+        }
+    }
+    
+    /**
+     * Process the records and block until all of them have completed or failed.
+     * A record only starts after the previous record with the same key succeeded;
+     * if that one failed, the record is skipped so it is redelivered in order.
+     *
+     * @return the outcome per partition, in the order partitions first appear
+     */
+    public <K, V> Map<TopicPartition, PartitionProgress> process(List<ConsumerRecord<K, V>> records,
+                                                                 Function<ConsumerRecord<K, V>, String> keyExtractor,
+                                                                 Consumer<ConsumerRecord<K, V>> handler) {
+        Map<String, CompletableFuture<Void>> tails = new HashMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(records.size());
+        
+        for (ConsumerRecord<K, V> record : records) {
+            Runnable task = () -> runBounded(() -> handler.accept(record));
+            String key = keyExtractor.apply(record);
+            CompletableFuture<Void> previous = key != null ? tails.get(key) : null;
+            CompletableFuture<Void> future = previous == null
+                ? CompletableFuture.runAsync(task, executor)
+                : previous.thenRunAsync(task, executor);
+            if (key != null) {
+                tails.put(key, future);
+            }
+            futures.add(future);
+        }
+        
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (Exception e) {
+            // Individual failures are inspected below
+        }
+        
+        Map<TopicPartition, PartitionProgress> progress = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<K, V> record = records.get(i);
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            PartitionProgress state = progress.computeIfAbsent(partition, p -> new PartitionProgress());
+            if (state.firstFailedOffset >= 0) {
+                continue;
+            }
+            if (futures.get(i).isCompletedExceptionally()) {
+                state.firstFailedOffset = record.offset();
+            } else {
+                state.nextOffset = record.offset() + 1;
+            }
+        }
+        return progress;
+    }
+    
+    private void runBounded(Runnable task) {
+        if (permits == null) {
+            task.run();
+            return;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a worker permit", e);
+        }
+        try {
+            task.run();
+        } finally {
+            permits.release();
+        }
+    }
+    
+    private ExecutorService newVirtualThreadExecutor() {
+        try {
+            // Looked up reflectively so the build still targets Java 17
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not available on this JVM, using {} platform worker threads",
+                concurrency);
+            return null;
+        }
+    }
+    
+    private ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "kafka-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Commit position of one partition after a poll.
+     * nextOffset is the offset to commit (-1 when nothing completed);
+     * firstFailedOffset is where consumption must resume (-1 when all completed).
+     */
+    public static class PartitionProgress {
+        private long nextOffset = -1;
+        private long firstFailedOffset = -1;
+        
+        public long getNextOffset() {
+            return nextOffset;
+        }
+        
+        public long getFirstFailedOffset() {
+            return firstFailedOffset;
+        }
+        
+        public boolean hasFailure() {
+            return firstFailedOffset >= 0;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.analytics.platform.kafka;
+
+import com.analytics.platform.model.AnalyticsEvent;
+import com.analytics.platform.model.AnalyticsResult;
+import com.analytics.platform.service.AIService;
+import com.analytics.platform.service.EventDeduplicator;
+import com.analytics.platform.service.EventWindowEngine;
+import com.analytics.platform.service.ResultStorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One listener container per retry tier, separate from the main listener so retries
+ * never hold up fresh traffic. A record that is not yet due pauses its container
+ * (nack with the remaining delay) instead of blocking the consumer thread; since each
+ * tier has a single delay, the head of a tier partition is always the next one due.
+ * A record that fails again and cannot be routed onwards is thrown back to the
+ * container's error handler, which seeks back to it and redelivers it.
+ */
+@Component
+@Slf4j
+public class RetryTopicListeners implements SmartLifecycle {
+    
+    private final ConsumerFactory<String, AnalyticsEvent> consumerFactory;
+    private final FailedEventRouter router;
+    private final AIService aiService;
+    private final ResultStorageService resultStorageService;
+    private final EventDeduplicator eventDeduplicator;
+    private final EventWindowEngine windowEngine;
+    private final CommonErrorHandler errorHandler;
+    private final List<ConcurrentMessageListenerContainer<String, AnalyticsEvent>> containers = new ArrayList<>();
+    
+    @Value("${kafka.retry.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${kafka.consumer.group-id:analytics-group}")
+    private String groupId;
+    
+    @Value("${kafka.retry.concurrency:1}")
+    private int concurrency;
+    
+    private volatile boolean running;
+    
+    public RetryTopicListeners(ConsumerFactory<String, AnalyticsEvent> consumerFactory,
+                               FailedEventRouter router, AIService aiService,
+                               ResultStorageService resultStorageService,
+                               EventDeduplicator eventDeduplicator,
+                               EventWindowEngine windowEngine,
+                               CommonErrorHandler errorHandler) {
+        this.consumerFactory = consumerFactory;
+        this.router = router;
+        this.aiService = aiService;
+        this.resultStorageService = resultStorageService;
+        this.eventDeduplicator = eventDeduplicator;
+        this.windowEngine = windowEngine;
+        this.errorHandler = errorHandler;
+    }
+    
+    @Override
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        for (int tier = 0; tier < router.getTierCount(); tier++) {
+            ContainerProperties properties = new ContainerProperties(router.retryTopic(tier));
+            properties.setGroupId(groupId + "-retry");
+            properties.setAckMode(ContainerProperties.AckMode.MANUAL);
+            properties.setMessageListener((AcknowledgingMessageListener<String, AnalyticsEvent>) this::onRecord);
+            
+            ConcurrentMessageListenerContainer<String, AnalyticsEvent> container =
+                new ConcurrentMessageListenerContainer<>(consumerFactory, properties);
+            container.setConcurrency(concurrency);
+            // A record that could not be routed onwards is redelivered rather than skipped
+            container.setCommonErrorHandler(errorHandler);
+            container.setBeanName("analytics-events-retry-" + tier);
+            container.start();
+            containers.add(container);
+        }
+        running = true;
+        log.info("Started {} retry tier listener(s), dead letters go to [{}]",
+            containers.size(), router.deadLetterTopic());
+    }
+    
+    @Override
+    public synchronized void stop() {
+        containers.forEach(ConcurrentMessageListenerContainer::stop);
+        containers.clear();
+        running = false;
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    private void onRecord(ConsumerRecord<String, AnalyticsEvent> record, Acknowledgment acknowledgment) {
+        long notBefore = FailedEventRouter.longHeader(record.headers(), FailedEventRouter.NOT_BEFORE_HEADER, 0);
+        long waitMs = notBefore - System.currentTimeMillis();
+        if (waitMs > 0) {
+            acknowledgment.nack(Duration.ofMillis(waitMs));
+            return;
+        }
+        
+        AnalyticsEvent event = record.value();
+        if (event == null) {
+            router.skipUnreadable(record);
+        } else if (!eventDeduplicator.isDuplicate(event.getEventId())) {
+            try {
+                AnalyticsResult result = aiService.processEvent(event);
+                resultStorageService.saveResult(result);
+                eventDeduplicator.markProcessed(event.getEventId());
+                // The main listener only counts stored events, so a retried event is counted here
+                windowEngine.accept(event);
+                log.info("Retried event [{}] from [{}] with prediction [{}]",
+                    event.getEventId(), record.topic(), result.getPrediction());
+            } catch (Exception e) {
+                router.route(record, e);
+            }
+        }
+        acknowledgment.acknowledge();
+    }
+}
@@ -1,5 +1,6 @@
 package com.analytics.platform.model;
 
+import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -12,7 +13,10 @@ import java.util.Map;
 @AllArgsConstructor
 public class AnalyticsEvent {
     private String eventId;
+    
+    @NotBlank(message = "Event type is required")
     private String eventType;
+    
     private LocalDateTime timestamp;
     private Map<String, Object> data;
     private String userId;
@@ -17,5 +17,8 @@ public class AnalyticsResult {
     private Map<String, Object> insights;
     private LocalDateTime processedAt;
     private String modelVersion;
+    // userId of the event the result is for
+    private String userId;
+    private String eventType;
 }
 
@@ -1,16 +1,23 @@
 package com.analytics.platform.repository;
 
 import com.analytics.platform.entity.AnalyticsResultEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface AnalyticsResultRepository extends JpaRepository<AnalyticsResultEntity, Long> {
+public interface AnalyticsResultRepository extends JpaRepository<AnalyticsResultEntity, Long>,
+        AnalyticsResultRepositoryCustom {
     Optional<AnalyticsResultEntity> findByEventId(String eventId);
-    List<AnalyticsResultEntity> findByPrediction(String prediction);
-    List<AnalyticsResultEntity> findByUserId(Long userId);
+    boolean existsByEventId(String eventId);
+    
+    @Query("select r.eventId from AnalyticsResultEntity r where r.processedAt >= :since order by r.processedAt desc")
+    List<String> findEventIdsProcessedSince(@Param("since") LocalDateTime since, Pageable pageable);
 }
 
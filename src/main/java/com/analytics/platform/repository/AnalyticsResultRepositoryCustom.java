@@ -0,0 +1,25 @@
+package com.analytics.platform.repository;
+
+import com.analytics.platform.entity.AnalyticsResultEntity;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Result queries in (processedAt, id) descending order, newest first.
+ */
+public interface AnalyticsResultRepositoryCustom {
+    
+    /**
+     * Keyset page: up to limit results matching the filter that come after the cursor.
+     *
+     * @param after null for the first page
+     */
+    List<AnalyticsResultEntity> findPage(ResultFilter filter, ResultCursor after, int limit);
+    
+    /**
+     * All results matching the filter, fetched from the database fetchSize rows at
+     * a time. Must be consumed and closed inside a transaction.
+     */
+    Stream<AnalyticsResultEntity> streamAll(ResultFilter filter, int fetchSize);
+}
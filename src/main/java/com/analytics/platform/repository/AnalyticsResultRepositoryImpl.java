@@ -0,0 +1,81 @@
+package com.analytics.platform.repository;
+
+import com.analytics.platform.entity.AnalyticsResultEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.AvailableHints;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Criteria queries behind {@link AnalyticsResultRepositoryCustom}. Paging uses
+ * a keyset condition on (processedAt, id) instead of an offset, so every page
+ * costs the same however deep it is. Streamed rows are detached as soon as they
+ * are read, which keeps the persistence context, and so the heap, from growing
+ * with the table.
+ */
+public class AnalyticsResultRepositoryImpl implements AnalyticsResultRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public List<AnalyticsResultEntity> findPage(ResultFilter filter, ResultCursor after, int limit) {
+        return entityManager.createQuery(query(filter, after))
+            .setMaxResults(limit)
+            .getResultList();
+    }
+    
+    @Override
+    public Stream<AnalyticsResultEntity> streamAll(ResultFilter filter, int fetchSize) {
+        return entityManager.createQuery(query(filter, null))
+            .setHint(AvailableHints.HINT_FETCH_SIZE, fetchSize)
+            .setHint(AvailableHints.HINT_READ_ONLY, true)
+            .getResultStream()
+            .map(entity -> {
+                entityManager.detach(entity);
+                return entity;
+            });
+    }
+    
+    private CriteriaQuery<AnalyticsResultEntity> query(ResultFilter filter, ResultCursor after) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AnalyticsResultEntity> query = cb.createQuery(AnalyticsResultEntity.class);
+        Root<AnalyticsResultEntity> result = query.from(AnalyticsResultEntity.class);
+        
+        List<Predicate> conditions = new ArrayList<>();
+        if (filter.prediction() != null) {
+            conditions.add(cb.equal(result.get("prediction"), filter.prediction()));
+        }
+        if (filter.modelVersion() != null) {
+            conditions.add(cb.equal(result.get("modelVersion"), filter.modelVersion()));
+        }
+        if (filter.userId() != null) {
+            conditions.add(cb.equal(result.get("user").get("id"), filter.userId()));
+        }
+        if (filter.from() != null) {
+            conditions.add(cb.greaterThanOrEqualTo(result.<LocalDateTime>get("processedAt"), filter.from()));
+        }
+        if (filter.to() != null) {
+            conditions.add(cb.lessThan(result.<LocalDateTime>get("processedAt"), filter.to()));
+        }
+        if (after != null) {
+            conditions.add(cb.or(
+                cb.lessThan(result.<LocalDateTime>get("processedAt"), after.processedAt()),
+                cb.and(
+                    cb.equal(result.get("processedAt"), after.processedAt()),
+                    cb.lessThan(result.<Long>get("id"), after.id()))));
+        }
+        
+        return query.select(result)
+            .where(conditions.toArray(new Predicate[0]))
+            .orderBy(cb.desc(result.get("processedAt")), cb.desc(result.get("id")));
+    }
+}
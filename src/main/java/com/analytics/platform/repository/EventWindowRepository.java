@@ -0,0 +1,26 @@
+package com.analytics.platform.repository;
+
+import com.analytics.platform.entity.EventWindowEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EventWindowRepository extends JpaRepository<EventWindowEntity, Long> {
+    
+    @Query("select w from EventWindowEntity w where w.windowName = :name "
+        + "and w.windowStart >= :from and w.windowStart < :to order by w.windowStart desc, w.id desc")
+    List<EventWindowEntity> findWindows(@Param("name") String name, @Param("from") LocalDateTime from,
+                                        @Param("to") LocalDateTime to, Pageable pageable);
+    
+    @Query("select w from EventWindowEntity w where w.windowName = :name and w.windowKey = :key "
+        + "and w.windowStart >= :from and w.windowStart < :to order by w.windowStart desc, w.id desc")
+    List<EventWindowEntity> findWindows(@Param("name") String name, @Param("key") String key,
+                                        @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                        Pageable pageable);
+}
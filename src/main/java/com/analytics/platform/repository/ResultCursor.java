@@ -0,0 +1,32 @@
+package com.analytics.platform.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in the (processedAt, id) order of results: the next page starts
+ * right after this row. Sent to clients as an opaque base64url token.
+ */
+public record ResultCursor(LocalDateTime processedAt, long id) {
+    
+    public String encode() {
+        String position = processedAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * @throws IllegalArgumentException when the token was not produced by {@link #encode}
+     */
+    public static ResultCursor decode(String token) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf('|');
+            return new ResultCursor(LocalDateTime.parse(position.substring(0, separator)),
+                Long.parseLong(position.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.analytics.platform.repository;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional conditions for listing results; null fields do not filter. Bound
+ * from the query parameters of the results endpoints.
+ */
+public record ResultFilter(String prediction,
+                           String modelVersion,
+                           Long userId,
+                           @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                           @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+    
+    public static ResultFilter none() {
+        return new ResultFilter(null, null, null, null, null);
+    }
+    
+    public ResultFilter withPrediction(String prediction) {
+        return new ResultFilter(prediction, modelVersion, userId, from, to);
+    }
+    
+    public ResultFilter withUserId(Long userId) {
+        return new ResultFilter(prediction, modelVersion, userId, from, to);
+    }
+}
@@ -0,0 +1,9 @@
+package com.analytics.platform.repository;
+
+import com.analytics.platform.entity.RollupCheckpointEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RollupCheckpointRepository extends JpaRepository<RollupCheckpointEntity, String> {
+}
@@ -1,5 +1,6 @@
 package com.analytics.platform.security;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -56,10 +57,13 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // Async dispatches (long polls, SSE and NDJSON streams) resume a request that was already
+                // authorized; the stateless JWT filter does not run again for them
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/actuator/health").permitAll()
                 .requestMatchers("/api/analytics/health").permitAll()
-                .requestMatchers("/api/analytics/events").hasAnyRole("USER", "ADMIN", "MODERATOR")
+                .requestMatchers("/api/analytics/events", "/api/analytics/events/**").hasAnyRole("USER", "ADMIN", "MODERATOR")
                 .requestMatchers("/api/analytics/results/**").hasAnyRole("USER", "ADMIN", "MODERATOR")
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
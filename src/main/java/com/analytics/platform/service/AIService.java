@@ -2,26 +2,44 @@ package com.analytics.platform.service;
 
 import com.analytics.platform.model.AnalyticsEvent;
 import com.analytics.platform.model.AnalyticsResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class AIService {
     
+    private static final String MODERATION_MODEL_PATH = "/facebook/roberta-hate-speech-dynabench-r4-target";
+    private static final String MODERATION_MODEL = "moderation";
+    // Label of the moderation model whose probability is the hate score; the other is "nothate"
+    private static final String MODERATION_RISK_LABEL = "hate";
+    
     private final WebClient webClient;
-    private final Random random = new Random();
-    private final String modelVersion = "v1.0.0";
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final Sinks.Many<Mono<Void>> pendingCalls =
+        Sinks.many().unicast().onBackpressureBuffer(Queues.<Mono<Void>>unboundedMultiproducer().get());
     
     @Value("${ai.huggingface.api.url:https://api-inference.huggingface.co/models}")
     private String huggingFaceApiUrl;
@@ -32,8 +50,93 @@ public class AIService {
     @Value("${ai.model.enabled:true}")
     private boolean aiModelEnabled;
     
-    public AIService(WebClient.Builder webClientBuilder) {
+    // remote: Hugging Face Inference API; local: in-process DJL model; fallback: heuristics only
+    @Value("${ai.model.backend:remote}")
+    private String backend;
+    
+    @Value("${ai.model.version:v1.1.0}")
+    private String modelVersion;
+    
+    @Value("${ai.model.max-concurrency:32}")
+    private int maxConcurrency;
+    
+    @Value("${ai.model.batching.enabled:true}")
+    private boolean batchingEnabled;
+    
+    @Value("${ai.model.batching.max-size:16}")
+    private int batchingMaxSize;
+    
+    @Value("${ai.model.batching.max-wait-ms:10}")
+    private long batchingMaxWaitMs;
+    
+    // Additional Hugging Face classifiers as name=/model/path@riskLabel, comma separated
+    @Value("${ai.router.remote-models:}")
+    private String remoteModels;
+    
+    private final MeterRegistry meterRegistry;
+    private final InferenceResultCache inferenceResultCache;
+    private final LocalInferenceEngine localInferenceEngine;
+    private final ModelCallGuard modelCallGuard;
+    private final ModelRouter modelRouter;
+    private final FallbackRuleEngine fallbackRuleEngine;
+    private final ChunkedScorer chunkedScorer;
+    private final InferenceScheduler inferenceScheduler;
+    private InferenceBatcher<List<Map<String, Object>>> remoteBatcher;
+    private InferenceBatcher<double[]> localBatcher;
+    
+    public AIService(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry,
+                     InferenceResultCache inferenceResultCache,
+                     ObjectProvider<LocalInferenceEngine> localInferenceEngine,
+                     ModelCallGuard modelCallGuard,
+                     ModelRouter modelRouter,
+                     FallbackRuleEngine fallbackRuleEngine,
+                     ChunkedScorer chunkedScorer,
+                     InferenceScheduler inferenceScheduler) {
         this.webClient = webClientBuilder.build();
+        this.meterRegistry = meterRegistry;
+        this.inferenceResultCache = inferenceResultCache;
+        this.localInferenceEngine = localInferenceEngine.getIfAvailable();
+        this.modelCallGuard = modelCallGuard;
+        this.modelRouter = modelRouter;
+        this.fallbackRuleEngine = fallbackRuleEngine;
+        this.chunkedScorer = chunkedScorer;
+        this.inferenceScheduler = inferenceScheduler;
+    }
+    
+    @PostConstruct
+    void startDispatcher() {
+        // Drains queued remote calls with at most maxConcurrency in flight
+        pendingCalls.asFlux()
+            .flatMap(call -> call, maxConcurrency)
+            .subscribe();
+        remoteBatcher = InferenceBatcher.forEndpoint(webClient, huggingFaceApiUrl + MODERATION_MODEL_PATH,
+            huggingFaceApiKey, batchingMaxSize, Duration.ofMillis(batchingMaxWaitMs), maxConcurrency,
+            meterRegistry);
+        if (localInferenceEngine != null) {
+            localBatcher = new InferenceBatcher<>("local", localInferenceEngine::score, batchingMaxSize,
+                Duration.ofMillis(batchingMaxWaitMs), maxConcurrency, meterRegistry);
+        }
+        
+        modelRouter.register(ScoringModel.of(MODERATION_MODEL, this::scoreModeration));
+        for (String definition : remoteModels.split(",")) {
+            String[] parts = definition.trim().split("[=@]");
+            if (parts.length == 3) {
+                String path = parts[1].trim();
+                String riskLabel = parts[2].trim();
+                modelRouter.register(ScoringModel.of(parts[0].trim(),
+                    content -> scoreWithClassifier(path, riskLabel, content)));
+            } else if (!definition.isBlank()) {
+                log.warn("Ignoring remote model definition [{}], expected name=/model/path@riskLabel", definition);
+            }
+        }
+    }
+    
+    @PreDestroy
+    void stopDispatcher() {
+        remoteBatcher.shutdown();
+        if (localBatcher != null) {
+            localBatcher.shutdown();
+        }
     }
     
     /**
@@ -44,12 +147,7 @@ public class AIService {
         log.info("Processing event {} with AI model", event.getEventId());
         
         try {
-            if (aiModelEnabled && huggingFaceApiKey != null && !huggingFaceApiKey.isEmpty()) {
-                return processWithHuggingFace(event);
-            } else {
-                log.warn("Hugging Face API not configured, using fallback processing");
-                return processWithFallback(event);
-            }
+            return processEventReactive(event).block();
         } catch (Exception e) {
             log.error("Error processing with AI model, using fallback", e);
             return processWithFallback(event);
@@ -57,44 +155,271 @@ public class AIService {
     }
     
     /**
-     * Process using Hugging Face free API for content moderation
-     * Model: facebook/roberta-hate-speech-dynabench-r4-target
+     * Non-blocking variant of {@link #processEvent}. The remote call runs on the
+     * WebClient event loop (local inference on its own threads) and at most
+     * ai.model.max-concurrency calls are in flight; callers beyond that wait in a
+     * queue without holding a thread.
      */
-    private AnalyticsResult processWithHuggingFace(AnalyticsEvent event) {
-        String content = extractContentFromEvent(event);
+    public Mono<AnalyticsResult> processEventReactive(AnalyticsEvent event) {
+        return Mono.defer(() -> {
+                if (!isModelConfigured()) {
+                    log.warn("Model backend [{}] not available, using fallback processing", backend);
+                    return Mono.fromSupplier(() -> processWithFallback(event));
+                }
+                return processWithModel(event);
+            })
+            .doOnSubscribe(subscription -> inFlightRequests.incrementAndGet())
+            .doFinally(signal -> inFlightRequests.decrementAndGet());
+    }
+    
+    /**
+     * Process a batch of events with a single model call.
+     * Events without text content are scored by the fallback; events routed to the
+     * moderation model alone are sent to the model backend as one multi-input call
+     * and events with other routes or with content too long for one chunk are
+     * scored through the router concurrently.
+     * Results keep the input order.
+     */
+    public List<AnalyticsResult> processBatch(List<AnalyticsEvent> events) {
+        log.info("Processing batch of {} events with AI model", events.size());
         
-        if (content == null || content.isEmpty()) {
-            return processWithFallback(event);
+        if (!isModelConfigured()) {
+            log.warn("Model backend [{}] not available, using fallback processing", backend);
+            return events.stream()
+                .map(this::processWithFallback)
+                .collect(Collectors.toList());
+        }
+        
+        List<AnalyticsResult> results = new ArrayList<>(events.size());
+        List<Integer> contentIndexes = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        List<Mono<Void>> routedCalls = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            String content = extractContentFromEvent(events.get(i));
+            List<ScoringModel> models = modelRouter.route(events.get(i).getEventType());
+            results.add(null);
+            if (content == null || content.isEmpty() || models.isEmpty()) {
+                results.set(i, processWithFallback(events.get(i)));
+                continue;
+            }
+            if (models.size() > 1 || !MODERATION_MODEL.equals(models.get(0).getName())
+                    || chunkedScorer.needsChunking(content)) {
+                int index = i;
+                routedCalls.add(processWithModel(events.get(i)).doOnNext(result -> results.set(index, result)).then());
+                continue;
+            }
+            double[] cachedScores = inferenceResultCache.get(content, modelVersion);
+            if (cachedScores != null) {
+                results.set(i, buildResultFromHuggingFace(events.get(i), HuggingFaceResponse.ofScores(cachedScores)));
+            } else {
+                contentIndexes.add(i);
+                contents.add(content);
+            }
         }
         
+        if (routedCalls.isEmpty() && contents.isEmpty()) {
+            return results;
+        }
+        
+        // The batch counts as one call against kafka.backpressure.max-in-flight, however many
+        // events it holds: its routed calls and its multi-input call run one after the other
+        List<HuggingFaceResponse> responses = null;
+        long batchLatencyMs;
+        inFlightRequests.incrementAndGet();
         try {
-            // Use Hugging Face Inference API for hate speech detection
-            String modelEndpoint = huggingFaceApiUrl + "/facebook/roberta-hate-speech-dynabench-r4-target";
-            
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("inputs", content);
-            
-            // Hugging Face API returns array of responses
-            List<Map<String, Object>> responseList = webClient.post()
-                .uri(modelEndpoint)
-                .header("Authorization", "Bearer " + huggingFaceApiKey)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToFlux(Map.class)
-                .collectList()
-                .block();
-            
-            HuggingFaceResponse response = parseHuggingFaceResponse(responseList);
-            
+            if (!routedCalls.isEmpty()) {
+                Mono.when(routedCalls).block();
+            }
+            if (contents.isEmpty()) {
+                return results;
+            }
+            long start = System.nanoTime();
+            try {
+                responses = scoreBatch(contents);
+            } catch (Exception e) {
+                log.error("Error scoring batch of {} inputs with [{}] backend", contents.size(), backend, e);
+            }
+            batchLatencyMs = (System.nanoTime() - start) / 1_000_000;
+        } finally {
+            inFlightRequests.decrementAndGet();
+        }
+        
+        for (int i = 0; i < contentIndexes.size(); i++) {
+            int index = contentIndexes.get(i);
+            AnalyticsEvent event = events.get(index);
+            HuggingFaceResponse response = responses != null && i < responses.size()
+                ? responses.get(i)
+                : null;
             if (response != null && response.getScores() != null) {
-                return buildResultFromHuggingFace(event, response);
+                inferenceResultCache.put(contents.get(i), modelVersion, response.getScores());
+                AnalyticsResult result = buildResultFromHuggingFace(event, response);
+                result.getInsights().put("models", List.of(Map.of(
+                    "name", MODERATION_MODEL, "status", "ok", "latency_ms", batchLatencyMs)));
+                results.set(index, result);
+            } else {
+                results.set(index, processWithFallback(event));
             }
-        } catch (Exception e) {
-            log.error("Error calling Hugging Face API", e);
         }
         
-        return processWithFallback(event);
+        return results;
+    }
+    
+    private List<HuggingFaceResponse> scoreBatch(List<String> contents) throws Exception {
+        List<HuggingFaceResponse> responses = new ArrayList<>(contents.size());
+        if (localInferenceEngine != null && "local".equals(backend)) {
+            for (double[] scores : localInferenceEngine.predict(contents)) {
+                responses.add(HuggingFaceResponse.ofScores(scores));
+            }
+            return responses;
+        }
+        
+        // Multi-input requests return one list of label scores per input
+        List<List<Map<String, Object>>> raw = modelCallGuard.withinDeadline(inferenceScheduler
+                .schedule(() -> modelCallGuard.execute(() -> remoteBatcher.sendBatch(contents), false)))
+            .block();
+        if (raw != null) {
+            raw.forEach(scores -> responses.add(parseHuggingFaceResponse(scores)));
+        }
+        return responses;
+    }
+    
+    /**
+     * Score the event with the models its type is routed to; when several models
+     * apply, their scores are combined by the router's ensemble rule. Long text is
+     * scored in chunks (see {@link ChunkedScorer}). Events without text, without a
+     * route, or that no model answered in time use the fallback.
+     */
+    private Mono<AnalyticsResult> processWithModel(AnalyticsEvent event) {
+        String content = extractContentFromEvent(event);
+        List<ScoringModel> models = modelRouter.route(event.getEventType());
+        
+        if (content == null || content.isEmpty() || models.isEmpty()) {
+            return Mono.fromSupplier(() -> processWithFallback(event));
+        }
+        
+        // The event type sets the priority of the remote calls made for this event, and all
+        // of them, whatever the number of chunks and models, share one deadline
+        return chunkedScorer.score(models, content)
+            .contextWrite(InferenceScheduler.forEventType(event.getEventType()))
+            .contextWrite(modelCallGuard.startDeadline())
+            .map(scored -> {
+                AnalyticsResult result = buildResultFromHuggingFace(event,
+                    HuggingFaceResponse.ofScores(scored.scores()));
+                result.getInsights().putAll(scored.toInsights());
+                return result;
+            })
+            .switchIfEmpty(Mono.fromSupplier(() -> processWithFallback(event)));
+    }
+    
+    /**
+     * Score using the moderation model, by default through the Hugging Face free
+     * API (or the same model exported for local inference)
+     * Model: facebook/roberta-hate-speech-dynabench-r4-target
+     */
+    private Mono<double[]> scoreModeration(String content) {
+        // Repeated texts are answered from the content cache without a model call
+        double[] cachedScores = inferenceResultCache.get(content, modelVersion);
+        if (cachedScores != null) {
+            return Mono.just(cachedScores);
+        }
+        
+        // Concurrent calls are coalesced into multi-input requests when batching is on;
+        // the batcher then bounds the number of requests in flight itself
+        Mono<HuggingFaceResponse> call;
+        if ("local".equals(backend)) {
+            call = modelCallGuard.withinDeadline(localBatcher.submit(content).map(HuggingFaceResponse::ofScores));
+        } else if (batchingEnabled) {
+            call = modelCallGuard.withinDeadline(inferenceScheduler.schedule(() -> modelCallGuard.execute(
+                () -> remoteBatcher.submit(content).mapNotNull(this::parseHuggingFaceResponse), true)));
+        } else {
+            call = modelCallGuard.withinDeadline(inferenceScheduler.schedule(
+                () -> modelCallGuard.execute(() -> limitConcurrency(callHuggingFace(content)), true)));
+        }
+        
+        return call
+            .mapNotNull(HuggingFaceResponse::getScores)
+            .doOnNext(scores -> inferenceResultCache.put(content, modelVersion, scores))
+            .onErrorResume(e -> logModelError(MODERATION_MODEL, e));
+    }
+    
+    /**
+     * Score with an additional Hugging Face text classifier. The probability of
+     * riskLabel becomes the risk score.
+     */
+    private Mono<double[]> scoreWithClassifier(String modelPath, String riskLabel, String content) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("inputs", content);
+        
+        Mono<double[]> call = webClient.post()
+            .uri(huggingFaceApiUrl + modelPath)
+            .header("Authorization", "Bearer " + huggingFaceApiKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(requestBody)
+            .retrieve()
+            .bodyToMono(new ParameterizedTypeReference<List<Object>>() {})
+            .mapNotNull(response -> riskScores(response, riskLabel));
+        
+        return modelCallGuard.withinDeadline(
+                inferenceScheduler.schedule(() -> modelCallGuard.execute(() -> limitConcurrency(call), true)))
+            .onErrorResume(e -> logModelError(modelPath, e));
+    }
+    
+    private Mono<double[]> logModelError(String model, Throwable e) {
+        if (e instanceof ModelCallGuard.ModelUnavailableException || e instanceof TimeoutException) {
+            log.warn("Model [{}] on [{}] backend unavailable: {}", model, backend, e.getMessage());
+        } else {
+            log.error("Error calling model [{}] on [{}] backend", model, backend, e);
+        }
+        return Mono.error(e);
+    }
+    
+    private Mono<HuggingFaceResponse> callHuggingFace(String content) {
+        // Use Hugging Face Inference API for hate speech detection
+        String modelEndpoint = huggingFaceApiUrl + MODERATION_MODEL_PATH;
+        
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("inputs", content);
+        
+        // Hugging Face API returns array of responses
+        return webClient.post()
+            .uri(modelEndpoint)
+            .header("Authorization", "Bearer " + huggingFaceApiKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(requestBody)
+            .retrieve()
+            .bodyToMono(new ParameterizedTypeReference<List<Object>>() {})
+            .mapNotNull(this::parseHuggingFaceResponse);
+    }
+    
+    /**
+     * Queue the call behind the dispatcher so that no more than maxConcurrency
+     * remote calls run at once. The returned Mono completes with the call's outcome.
+     */
+    private <T> Mono<T> limitConcurrency(Mono<T> call) {
+        return Mono.create(sink -> {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            sink.onCancel(() -> cancelled.set(true));
+            Mono<Void> task = Mono.defer(() -> cancelled.get() ? Mono.<T>empty() : call)
+                .doOnSuccess(sink::success)
+                .doOnError(sink::error)
+                .onErrorResume(e -> Mono.empty())
+                .then();
+            pendingCalls.emitNext(task, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+        });
+    }
+    
+    private boolean isModelConfigured() {
+        if (!aiModelEnabled) {
+            return false;
+        }
+        switch (backend) {
+            case "local":
+                return localInferenceEngine != null;
+            case "remote":
+                return huggingFaceApiKey != null && !huggingFaceApiKey.isEmpty();
+            default:
+                return false;
+        }
     }
     
     private AnalyticsResult buildResultFromHuggingFace(AnalyticsEvent event, HuggingFaceResponse response) {
@@ -133,7 +458,9 @@ public class AIService {
             confidence,
             insights,
             LocalDateTime.now(),
-            modelVersion
+            modelVersion,
+            event.getUserId(),
+            event.getEventType()
         );
     }
     
@@ -156,87 +483,78 @@ public class AIService {
     }
     
     private AnalyticsResult processWithFallback(AnalyticsEvent event) {
-        String prediction = generatePrediction(event);
-        Double confidence = 0.7 + random.nextDouble() * 0.3;
+        long matched = fallbackRuleEngine.evaluate(event.getEventType(), event.getData());
+        FallbackRuleEngine.Rule rule = fallbackRuleEngine.strongest(matched);
+        FallbackRuleEngine.Outcome outcome = rule == null ? fallbackRuleEngine.defaultFor(event.getEventType()) : null;
         
-        Map<String, Object> insights = generateInsights(event);
+        Map<String, Object> insights = new HashMap<>();
+        insights.put("matched_rules", fallbackRuleEngine.ruleNames(matched));
+        insights.put("anomaly_score", fallbackRuleEngine.anomalyScore(matched));
+        insights.put("recommendation", rule != null ? rule.recommendation() : outcome.recommendation());
+        insights.put("risk_level", rule != null ? rule.riskLevel() : outcome.riskLevel());
+        insights.put("model", "fallback-rules");
         
         return new AnalyticsResult(
             event.getEventId(),
-            prediction,
-            confidence,
+            rule != null ? rule.prediction() : outcome.prediction(),
+            rule != null ? rule.score() : outcome.confidence(),
             insights,
             LocalDateTime.now(),
-            modelVersion
+            modelVersion,
+            event.getUserId(),
+            event.getEventType()
         );
     }
     
-    private String generatePrediction(AnalyticsEvent event) {
-        switch (event.getEventType().toLowerCase()) {
-            case "content":
-            case "comment":
-            case "post":
-                return random.nextBoolean() ? "SAFE_CONTENT" : "REVIEW_NEEDED";
-            case "purchase":
-                return random.nextBoolean() ? "HIGH_VALUE_CUSTOMER" : "STANDARD_CUSTOMER";
-            case "click":
-                return random.nextBoolean() ? "HIGH_INTEREST" : "LOW_INTEREST";
-            default:
-                return "NEUTRAL";
-        }
+    public boolean isHealthy() {
+        return true;
     }
     
-    private Map<String, Object> generateInsights(AnalyticsEvent event) {
-        Map<String, Object> insights = new HashMap<>();
-        insights.put("sentiment", random.nextBoolean() ? "positive" : "neutral");
-        insights.put("anomaly_score", random.nextDouble());
-        insights.put("recommendation", "Continue monitoring");
-        insights.put("risk_level", random.nextBoolean() ? "low" : "medium");
-        insights.put("model", "fallback");
-        return insights;
+    /**
+     * Number of model calls currently in progress, used to detect a saturated model
+     * endpoint: one per event scored on its own and one per batch, whatever its size.
+     */
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
     }
     
-    public boolean isHealthy() {
-        return true;
+    private HuggingFaceResponse parseHuggingFaceResponse(List<?> labels) {
+        double[] scores = riskScores(labels, MODERATION_RISK_LABEL);
+        return scores == null ? null : HuggingFaceResponse.ofScores(scores);
     }
     
-    private HuggingFaceResponse parseHuggingFaceResponse(List<Map<String, Object>> responseList) {
-        if (responseList == null || responseList.isEmpty()) {
+    /**
+     * Scores of one input as [risk, 1 - risk], where risk is the probability of
+     * riskLabel. Labels come sorted by score, so the label is looked up by name
+     * rather than taken from the first entry.
+     *
+     * @return null when the response has no score for riskLabel
+     */
+    static double[] riskScores(List<?> response, String riskLabel) {
+        if (response == null || response.isEmpty()) {
             return null;
         }
-        
-        Map<String, Object> firstResponse = responseList.get(0);
-        HuggingFaceResponse response = new HuggingFaceResponse();
-        
-        if (firstResponse.containsKey("label")) {
-            response.setLabel(firstResponse.get("label").toString());
-        }
-        
-        if (firstResponse.containsKey("score")) {
-            double score = ((Number) firstResponse.get("score")).doubleValue();
-            response.setScores(new double[]{score});
-        } else if (firstResponse.containsKey("scores")) {
-            @SuppressWarnings("unchecked")
-            List<Number> scoresList = (List<Number>) firstResponse.get("scores");
-            response.setScores(scoresList.stream()
-                .mapToDouble(Number::doubleValue)
-                .toArray());
+        // Single inputs may come back wrapped in an outer list
+        List<?> labels = response.get(0) instanceof List<?> inner ? inner : response;
+        for (Object entry : labels) {
+            if (entry instanceof Map<?, ?> label
+                    && riskLabel.equalsIgnoreCase(String.valueOf(label.get("label")))
+                    && label.get("score") instanceof Number score) {
+                double risk = score.doubleValue();
+                return new double[]{risk, 1.0 - risk};
+            }
         }
-        
-        return response;
+        return null;
     }
     
     // Inner class for Hugging Face API response
     private static class HuggingFaceResponse {
-        private String label;
         private double[] scores;
         
-        public String getLabel() {
-            return label;
-        }
-        
-        public void setLabel(String label) {
-            this.label = label;
+        static HuggingFaceResponse ofScores(double[] scores) {
+            HuggingFaceResponse response = new HuggingFaceResponse();
+            response.setScores(scores);
+            return response;
         }
         
         public double[] getScores() {
@@ -0,0 +1,219 @@
+package com.analytics.platform.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Scores text of any length with models that only see a bounded context window.
+ *
+ * The text is normalized (NFKC, control and zero-width characters dropped,
+ * whitespace collapsed) and, when longer than ai.chunking.max-chars, split into
+ * overlapping chunks that end on word boundaries so a phrase cut by one chunk
+ * is whole in the next. Chunks are scored through the {@link ModelRouter} in
+ * parallel and folded into one risk score as they arrive, either the maximum or
+ * the mean weighted by chunk length. As soon as one chunk's risk reaches the
+ * early-exit threshold the remaining chunks are cancelled and that chunk decides.
+ */
+@Component
+public class ChunkedScorer {
+    
+    public enum Aggregation {
+        /** Riskiest chunk decides */
+        MAX,
+        /** Mean risk weighted by chunk length */
+        WEIGHTED_MEAN
+    }
+    
+    private final ModelRouter modelRouter;
+    private final boolean enabled;
+    private final int maxChars;
+    private final int overlapChars;
+    private final int maxChunks;
+    private final int parallelism;
+    private final double earlyExitThreshold;
+    private final Aggregation aggregation;
+    
+    private final DistributionSummary chunksPerEvent;
+    private final Counter chunkedEvents;
+    private final Counter earlyExits;
+    
+    public ChunkedScorer(ModelRouter modelRouter, MeterRegistry meterRegistry,
+                         @Value("${ai.chunking.enabled:true}") boolean enabled,
+                         @Value("${ai.chunking.max-chars:1800}") int maxChars,
+                         @Value("${ai.chunking.overlap-chars:200}") int overlapChars,
+                         @Value("${ai.chunking.max-chunks:32}") int maxChunks,
+                         @Value("${ai.chunking.parallelism:4}") int parallelism,
+                         @Value("${ai.chunking.early-exit-threshold:0.5}") double earlyExitThreshold,
+                         @Value("${ai.chunking.aggregation:MAX}") Aggregation aggregation) {
+        this.modelRouter = modelRouter;
+        this.enabled = enabled;
+        this.maxChars = Math.max(16, maxChars);
+        // A chunk always ends past its midpoint, so this overlap still moves forward
+        this.overlapChars = Math.max(0, Math.min(overlapChars, this.maxChars / 4));
+        this.maxChunks = Math.max(1, maxChunks);
+        this.parallelism = Math.max(1, parallelism);
+        this.earlyExitThreshold = earlyExitThreshold;
+        this.aggregation = aggregation;
+        
+        this.chunksPerEvent = DistributionSummary.builder("analytics.inference.chunks.per.event")
+            .description("Chunks the content of a scored event was split into")
+            .register(meterRegistry);
+        this.chunkedEvents = Counter.builder("analytics.inference.chunks.events")
+            .description("Events whose content was split into more than one chunk")
+            .register(meterRegistry);
+        this.earlyExits = Counter.builder("analytics.inference.chunks.early.exit")
+            .description("Chunked events decided before all chunks were scored")
+            .register(meterRegistry);
+        Gauge.builder("analytics.inference.chunks.early.exit.ratio", this,
+                s -> s.chunkedEvents.count() == 0 ? 0.0 : s.earlyExits.count() / s.chunkedEvents.count())
+            .register(meterRegistry);
+    }
+    
+    /**
+     * @return whether this text would be scored in more than one chunk
+     */
+    public boolean needsChunking(String content) {
+        return enabled && content.length() > maxChars;
+    }
+    
+    /**
+     * Score the text with the models, chunk by chunk when it is long. Completes
+     * empty when nothing is left after normalizing or no chunk got an answer.
+     */
+    public Mono<ChunkedScore> score(List<ScoringModel> models, String content) {
+        if (!enabled) {
+            return modelRouter.score(models, content)
+                .map(ensemble -> new ChunkedScore(ensemble.scores(), ensemble, 1, 1, false, aggregation));
+        }
+        return Mono.defer(() -> {
+            String normalized = normalize(content);
+            if (normalized.isEmpty()) {
+                return Mono.empty();
+            }
+            List<String> chunks = split(normalized);
+            chunksPerEvent.record(chunks.size());
+            if (chunks.size() == 1) {
+                return modelRouter.score(models, chunks.get(0))
+                    .map(ensemble -> new ChunkedScore(ensemble.scores(), ensemble, 1, 1, false, aggregation));
+            }
+            
+            chunkedEvents.increment();
+            return Flux.fromIterable(chunks)
+                .flatMap(chunk -> modelRouter.score(models, chunk)
+                    .map(ensemble -> new ChunkOutcome(chunk.length(), ensemble)), parallelism)
+                .takeUntil(outcome -> outcome.risk() >= earlyExitThreshold)
+                .reduceWith(Accumulator::new, Accumulator::add)
+                .filter(accumulator -> accumulator.scored > 0)
+                .map(accumulator -> {
+                    boolean earlyExit = accumulator.maxRisk >= earlyExitThreshold && accumulator.scored < chunks.size();
+                    if (earlyExit) {
+                        earlyExits.increment();
+                    }
+                    double risk = earlyExit || aggregation == Aggregation.MAX
+                        ? accumulator.maxRisk
+                        : accumulator.weightedRisk / accumulator.weight;
+                    return new ChunkedScore(new double[]{risk, 1.0 - risk}, accumulator.strongest,
+                        chunks.size(), accumulator.scored, earlyExit, aggregation);
+                });
+        });
+    }
+    
+    static String normalize(String text) {
+        String composed = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        StringBuilder normalized = new StringBuilder(composed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < composed.length(); i++) {
+            char c = composed.charAt(i);
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                pendingSpace = normalized.length() > 0;
+            } else if (!Character.isISOControl(c) && Character.getType(c) != Character.FORMAT) {
+                if (pendingSpace) {
+                    normalized.append(' ');
+                    pendingSpace = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+    
+    List<String> split(String text) {
+        if (text.length() <= maxChars) {
+            return List.of(text);
+        }
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (chunks.size() < maxChunks) {
+            int end = Math.min(start + maxChars, text.length());
+            if (end < text.length()) {
+                int wordEnd = text.lastIndexOf(' ', end);
+                if (wordEnd > start + maxChars / 2) {
+                    end = wordEnd;
+                }
+            }
+            chunks.add(text.substring(start, end));
+            if (end >= text.length()) {
+                break;
+            }
+            // Step back by the overlap, then forward to the start of the next word
+            int next = end - overlapChars;
+            int wordStart = text.indexOf(' ', next);
+            start = wordStart >= 0 && wordStart < end ? wordStart + 1 : next;
+        }
+        return chunks;
+    }
+    
+    private record ChunkOutcome(int length, ModelRouter.EnsembleResult ensemble) {
+        double risk() {
+            return ensemble.scores()[0];
+        }
+    }
+    
+    private static class Accumulator {
+        private int scored;
+        private double maxRisk = -1.0;
+        private double weightedRisk;
+        private double weight;
+        private ModelRouter.EnsembleResult strongest;
+        
+        Accumulator add(ChunkOutcome outcome) {
+            scored++;
+            weightedRisk += outcome.risk() * outcome.length();
+            weight += outcome.length();
+            if (outcome.risk() > maxRisk) {
+                maxRisk = outcome.risk();
+                strongest = outcome.ensemble();
+            }
+            return this;
+        }
+    }
+    
+    /**
+     * Combined score of all chunks; strongest is the ensemble answer for the
+     * riskiest chunk and supplies the per-model insights.
+     */
+    public record ChunkedScore(double[] scores, ModelRouter.EnsembleResult strongest, int chunkCount,
+                               int chunksScored, boolean earlyExit, Aggregation aggregation) {
+        
+        public Map<String, Object> toInsights() {
+            Map<String, Object> insights = strongest.toInsights();
+            insights.put("chunk_count", chunkCount);
+            insights.put("chunks_scored", chunksScored);
+            insights.put("chunk_early_exit", earlyExit);
+            insights.put("chunk_aggregation", aggregation.name().toLowerCase(Locale.ROOT));
+            return insights;
+        }
+    }
+}
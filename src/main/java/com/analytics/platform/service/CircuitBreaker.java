@@ -0,0 +1,154 @@
+package com.analytics.platform.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+
+/**
+ * Count-based sliding-window circuit breaker.
+ *
+ * The outcome of the last windowSize calls is kept in a ring buffer; a call counts
+ * as slow when it took longer than slowCallDuration, whether it succeeded or not.
+ * Once at least minimumCalls are recorded and either the failure rate or the slow
+ * call rate reaches its threshold, the breaker opens and rejects calls for
+ * openDuration. It then lets halfOpenProbes calls through: if all of them succeed
+ * in time it closes with an empty window, otherwise it opens again.
+ */
+@Slf4j
+public class CircuitBreaker {
+    
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+    
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int recorded;
+    private int next;
+    private int failures;
+    private int slowCalls;
+    
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+    
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          double slowCallRateThreshold, Duration slowCallDuration, Duration openDuration,
+                          int halfOpenProbes) {
+        this.name = name;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+    }
+    
+    /**
+     * @return true if the call may proceed; the caller must then report its outcome
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenProbes) {
+                return false;
+            }
+            probesStarted++;
+        }
+        return true;
+    }
+    
+    public synchronized void onSuccess(long durationNanos) {
+        record(false, durationNanos >= slowCallNanos);
+    }
+    
+    public synchronized void onError(long durationNanos) {
+        record(true, durationNanos >= slowCallNanos);
+    }
+    
+    /**
+     * Report a call that was abandoned by its caller before it had an outcome. Nothing
+     * is recorded; a half-open probe is handed back so another call can take it.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && probesStarted > probesSucceeded) {
+            probesStarted--;
+        }
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    private void record(boolean failure, boolean slowCall) {
+        if (state == State.HALF_OPEN) {
+            if (failure || slowCall) {
+                open();
+            } else if (++probesSucceeded >= halfOpenProbes) {
+                resetWindow();
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // Late outcome of a call that started before the breaker opened
+            return;
+        }
+        
+        if (recorded == failed.length) {
+            failures -= failed[next] ? 1 : 0;
+            slowCalls -= slow[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[next] = failure;
+        slow[next] = slowCall;
+        failures += failure ? 1 : 0;
+        slowCalls += slowCall ? 1 : 0;
+        next = (next + 1) % failed.length;
+        
+        if (recorded >= minimumCalls
+                && ((double) failures / recorded >= failureRateThreshold
+                    || (double) slowCalls / recorded >= slowCallRateThreshold)) {
+            log.warn("Circuit breaker [{}] opening: {} failed and {} slow of the last {} calls",
+                name, failures, slowCalls, recorded);
+            open();
+        }
+    }
+    
+    private void open() {
+        openedAt = System.nanoTime();
+        resetWindow();
+        transitionTo(State.OPEN);
+    }
+    
+    private void resetWindow() {
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+    
+    private void transitionTo(State newState) {
+        if (state != newState) {
+            log.info("Circuit breaker [{}] {} -> {}", name, state, newState);
+            state = newState;
+        }
+    }
+}
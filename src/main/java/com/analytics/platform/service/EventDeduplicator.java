@@ -0,0 +1,246 @@
+package com.analytics.platform.service;
+
+import com.analytics.platform.repository.AnalyticsResultRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Rejects already-processed events before they reach the model.
+ *
+ * A time-bounded Bloom filter answers "definitely new" for almost every fresh event
+ * without touching the database. It keeps two generations that rotate every window,
+ * so an ID is remembered for at least one and at most two windows. A Bloom hit is
+ * confirmed against an exact cache of recent IDs, and only when that misses too
+ * (an old ID or a false positive) is the database asked.
+ *
+ * The filter is warmed up with recently processed IDs once the beans are created
+ * and before the Kafka listener containers start, so redeliveries right after a
+ * restart are caught rather than scored again.
+ */
+@Service
+@Slf4j
+public class EventDeduplicator implements SmartInitializingSingleton {
+    
+    private final AnalyticsResultRepository repository;
+    private final Duration window;
+    private final int expectedPerWindow;
+    private final double falsePositiveRate;
+    private final int exactCacheSize;
+    private final Map<String, Boolean> recentIds;
+    
+    private final Counter checks;
+    private final Counter duplicates;
+    private final Counter falsePositives;
+    
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private volatile long rotatedAt;
+    
+    @Value("${analytics.dedup.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${analytics.dedup.warmup-max-ids:100000}")
+    private int warmupMaxIds;
+    
+    public EventDeduplicator(AnalyticsResultRepository repository,
+                             MeterRegistry meterRegistry,
+                             @Value("${analytics.dedup.window:PT1H}") Duration window,
+                             @Value("${analytics.dedup.expected-per-window:1000000}") int expectedPerWindow,
+                             @Value("${analytics.dedup.false-positive-rate:0.01}") double falsePositiveRate,
+                             @Value("${analytics.dedup.exact-cache-size:100000}") int exactCacheSize) {
+        this.repository = repository;
+        this.window = window;
+        this.expectedPerWindow = expectedPerWindow;
+        this.falsePositiveRate = falsePositiveRate;
+        this.exactCacheSize = exactCacheSize;
+        this.recentIds = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > EventDeduplicator.this.exactCacheSize;
+            }
+        };
+        this.current = new BloomFilter(expectedPerWindow, falsePositiveRate);
+        this.previous = new BloomFilter(expectedPerWindow, falsePositiveRate);
+        this.rotatedAt = System.currentTimeMillis();
+        
+        this.checks = Counter.builder("analytics.dedup.checks").register(meterRegistry);
+        this.duplicates = Counter.builder("analytics.dedup.duplicates")
+            .description("Events skipped because they were already processed")
+            .register(meterRegistry);
+        this.falsePositives = Counter.builder("analytics.dedup.false.positives")
+            .description("Bloom filter hits that turned out to be new events")
+            .register(meterRegistry);
+        Gauge.builder("analytics.dedup.hit.ratio", this, d -> ratio(d.duplicates, d.checks))
+            .register(meterRegistry);
+        Gauge.builder("analytics.dedup.false.positive.ratio", this, d -> ratio(d.falsePositives, d.checks))
+            .register(meterRegistry);
+        Gauge.builder("analytics.dedup.exact.cache.size", this, d -> d.exactCacheEntries())
+            .register(meterRegistry);
+    }
+    
+    /**
+     * @return true if the event was already processed and should be skipped
+     */
+    public boolean isDuplicate(String eventId) {
+        if (!enabled || eventId == null) {
+            return false;
+        }
+        rotateIfDue();
+        checks.increment();
+        
+        long hash = hash(eventId);
+        if (!current.mightContain(hash) && !previous.mightContain(hash)) {
+            return false;
+        }
+        
+        synchronized (recentIds) {
+            if (recentIds.containsKey(eventId)) {
+                duplicates.increment();
+                return true;
+            }
+        }
+        
+        if (repository.existsByEventId(eventId)) {
+            duplicates.increment();
+            remember(eventId);
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+    
+    /**
+     * Record that the event's result is durably stored.
+     */
+    public void markProcessed(String eventId) {
+        if (!enabled || eventId == null) {
+            return;
+        }
+        rotateIfDue();
+        current.put(hash(eventId));
+        remember(eventId);
+    }
+    
+    @Override
+    public void afterSingletonsInstantiated() {
+        warmUp();
+    }
+    
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            LocalDateTime since = LocalDateTime.now().minus(window);
+            List<String> eventIds = repository.findEventIdsProcessedSince(since, PageRequest.of(0, warmupMaxIds));
+            eventIds.forEach(this::markProcessed);
+            log.info("Deduplication filter warmed up with {} event IDs processed since {}", eventIds.size(), since);
+        } catch (Exception e) {
+            log.warn("Could not warm up deduplication filter", e);
+        }
+    }
+    
+    private void remember(String eventId) {
+        synchronized (recentIds) {
+            recentIds.put(eventId, Boolean.TRUE);
+        }
+    }
+    
+    private int exactCacheEntries() {
+        synchronized (recentIds) {
+            return recentIds.size();
+        }
+    }
+    
+    private void rotateIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - rotatedAt < window.toMillis()) {
+            return;
+        }
+        synchronized (this) {
+            if (now - rotatedAt >= window.toMillis()) {
+                previous = current;
+                current = new BloomFilter(expectedPerWindow, falsePositiveRate);
+                rotatedAt = now;
+            }
+        }
+    }
+    
+    private static double ratio(Counter part, Counter total) {
+        return total.count() == 0 ? 0 : part.count() / total.count();
+    }
+    
+    /** 64-bit FNV-1a over the UTF-16 chars, finished with a murmur3 mix. */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    /**
+     * Lock-free Bloom filter over a pre-hashed key, using double hashing
+     * to derive the probe positions.
+     */
+    static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+        
+        BloomFilter(int expectedInsertions, double falsePositiveRate) {
+            long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bitCount = Math.max(64, (m + 63) / 64 * 64);
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+            this.bits = new AtomicLongArray((int) (bitCount / 64));
+        }
+        
+        void put(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word;
+                do {
+                    word = bits.get(index);
+                    if ((word & mask) != 0) {
+                        break;
+                    }
+                } while (!bits.compareAndSet(index, word, word | mask));
+            }
+        }
+        
+        boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
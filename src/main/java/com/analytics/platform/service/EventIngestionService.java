@@ -0,0 +1,140 @@
+package com.analytics.platform.service;
+
+import com.analytics.platform.dto.BatchSubmissionResponse;
+import com.analytics.platform.kafka.KafkaProducer;
+import com.analytics.platform.model.AnalyticsEvent;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk ingestion of events. The body is read incrementally, either as a JSON array
+ * or as newline-delimited JSON, and every valid event is handed to Kafka as soon as
+ * it is parsed, so sends are pipelined while the rest of the body is still arriving.
+ */
+@Service
+@Slf4j
+public class EventIngestionService {
+    
+    private final KafkaProducer kafkaProducer;
+    private final Validator validator;
+    private final ObjectReader eventReader;
+    
+    @Value("${analytics.ingest.max-batch-size:10000}")
+    private int maxBatchSize;
+    
+    @Value("${analytics.ingest.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+    
+    public EventIngestionService(KafkaProducer kafkaProducer, Validator validator,
+                                 ObjectMapper objectMapper) {
+        this.kafkaProducer = kafkaProducer;
+        this.validator = validator;
+        this.eventReader = objectMapper.readerFor(AnalyticsEvent.class);
+    }
+    
+    public BatchSubmissionResponse ingest(InputStream body) throws IOException {
+        BatchSubmissionResponse response = new BatchSubmissionResponse();
+        List<PendingSend> pending = new ArrayList<>();
+        
+        // A root-level array and a sequence of root-level values are both read one element at a time
+        try (MappingIterator<AnalyticsEvent> events = eventReader.readValues(body)) {
+            int index = 0;
+            while (true) {
+                AnalyticsEvent event;
+                try {
+                    if (!events.hasNextValue()) {
+                        break;
+                    }
+                    event = events.nextValue();
+                } catch (JsonParseException e) {
+                    response.getRejections().add(new BatchSubmissionResponse.Rejection(
+                        index, null, "Malformed JSON: " + e.getOriginalMessage()));
+                    break;
+                } catch (JsonMappingException e) {
+                    response.getRejections().add(new BatchSubmissionResponse.Rejection(
+                        index++, null, "Invalid event: " + e.getOriginalMessage()));
+                    continue;
+                }
+                
+                if (index >= maxBatchSize) {
+                    response.getRejections().add(new BatchSubmissionResponse.Rejection(
+                        index, null, "Batch size limit of " + maxBatchSize + " exceeded"));
+                    break;
+                }
+                
+                String violations = validate(event);
+                if (violations != null) {
+                    response.getRejections().add(new BatchSubmissionResponse.Rejection(
+                        index++, event.getEventId(), violations));
+                    continue;
+                }
+                
+                if (event.getEventId() == null || event.getEventId().isEmpty()) {
+                    event.setEventId(UUID.randomUUID().toString());
+                }
+                pending.add(new PendingSend(index++, event.getEventId(), kafkaProducer.sendEventAsync(event)));
+            }
+        }
+        
+        awaitSends(pending, response);
+        log.info("Batch submitted: {} accepted, {} rejected",
+            response.getAccepted(), response.getRejections().size());
+        return response;
+    }
+    
+    private String validate(AnalyticsEvent event) {
+        Set<ConstraintViolation<AnalyticsEvent>> violations = validator.validate(event);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+            .map(ConstraintViolation::getMessage)
+            .sorted()
+            .collect(Collectors.joining(", "));
+    }
+    
+    private void awaitSends(List<PendingSend> pending, BatchSubmissionResponse response) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (PendingSend send : pending) {
+            try {
+                send.future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                response.getEventIds().add(send.eventId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response.getRejections().add(new BatchSubmissionResponse.Rejection(
+                    send.index, send.eventId, "Interrupted while sending to Kafka"));
+            } catch (ExecutionException e) {
+                log.error("Failed to send event [{}] to Kafka", send.eventId, e.getCause());
+                response.getRejections().add(new BatchSubmissionResponse.Rejection(
+                    send.index, send.eventId, "Kafka send failed: " + e.getCause().getMessage()));
+            } catch (TimeoutException e) {
+                response.getRejections().add(new BatchSubmissionResponse.Rejection(
+                    send.index, send.eventId, "Timed out waiting for Kafka acknowledgement"));
+            }
+        }
+        response.setAccepted(response.getEventIds().size());
+    }
+    
+    private record PendingSend(int index, String eventId, CompletableFuture<?> future) {
+    }
+}
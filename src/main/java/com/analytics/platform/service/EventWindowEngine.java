@@ -0,0 +1,397 @@
+package com.analytics.platform.service;
+
+import com.analytics.platform.dto.EventWindow;
+import com.analytics.platform.entity.EventWindowEntity;
+import com.analytics.platform.model.AnalyticsEvent;
+import com.analytics.platform.repository.EventWindowRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Aggregates events into time windows by event time, per userId, source or
+ * eventType, once {@link com.analytics.platform.kafka.KafkaConsumer} or a retry
+ * tier has stored their results, so a redelivered event is counted once.
+ *
+ * Windows are defined in analytics.windows.definitions as
+ * "name=type:key:size[:advance]": TUMBLING windows of a fixed size, HOPPING
+ * windows of a fixed size starting every advance, and SESSION windows that
+ * stay open while events of the key are less than size (the gap) apart. Each
+ * window counts its events and keeps the first and last event time.
+ *
+ * The watermark trails the highest event time seen by allowed-lateness; event
+ * times ahead of the wall clock do not move it, so one client with a wrong clock
+ * cannot close everyone's windows. Every close-interval-ms the windows ending at
+ * or before the watermark are closed and stored in analytics_windows; an event
+ * for a window already closed is dropped and counted as late. When no event has
+ * arrived for idle-timeout, the watermark follows the wall clock instead, so the
+ * last windows close even if the stream stops.
+ *
+ * Open windows live in {@link EventWindowTable}s, striped by key hash, each
+ * behind its own lock. They are held in memory only: windows still open when
+ * the instance stops are lost, and each instance aggregates the events of the
+ * partitions it consumes, so keep a key on one partition (the producer keys
+ * records by userId) for per-user windows to be complete.
+ */
+@Component
+@Slf4j
+public class EventWindowEngine {
+    
+    public enum WindowType { TUMBLING, HOPPING, SESSION }
+    
+    private static final int MAX_QUERY_LIMIT = 1000;
+    
+    public enum KeyField {
+        USER_ID("userId"),
+        SOURCE("source"),
+        EVENT_TYPE("eventType");
+        
+        private final String fieldName;
+        
+        KeyField(String fieldName) {
+            this.fieldName = fieldName;
+        }
+        
+        public String fieldName() {
+            return fieldName;
+        }
+        
+        String of(AnalyticsEvent event) {
+            switch (this) {
+                case USER_ID:
+                    return event.getUserId();
+                case SOURCE:
+                    return event.getSource();
+                case EVENT_TYPE:
+                default:
+                    return event.getEventType();
+            }
+        }
+        
+        static KeyField parse(String value) {
+            for (KeyField field : values()) {
+                if (field.fieldName.equalsIgnoreCase(value) || field.name().equalsIgnoreCase(value)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unknown window key '" + value
+                + "', expected userId, source or eventType");
+        }
+    }
+    
+    private final EventWindowRepository repository;
+    private final TransactionTemplate writeTransaction;
+    private final boolean enabled;
+    private final Map<String, Window> windows;
+    private final long allowedLatenessMs;
+    private final long idleTimeoutMs;
+    private final int maxUnsaved;
+    private final Counter droppedWindows;
+    
+    // Highest event time seen, capped at the wall clock; read only when windows are closed
+    private final LongAccumulator maxEventTime = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    private final Deque<EventWindowEntity> unsaved = new ArrayDeque<>();
+    private volatile long lastEventAt = System.currentTimeMillis();
+    private volatile long watermark = Long.MIN_VALUE;
+    
+    public EventWindowEngine(EventWindowRepository repository, PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${analytics.windows.enabled:true}") boolean enabled,
+                             @Value("${analytics.windows.definitions:}") String definitions,
+                             @Value("${analytics.windows.allowed-lateness:PT30S}") Duration allowedLateness,
+                             @Value("${analytics.windows.idle-timeout:PT30S}") Duration idleTimeout,
+                             @Value("${analytics.windows.stripes:16}") int stripes,
+                             @Value("${analytics.windows.max-unsaved:10000}") int maxUnsaved) {
+        this.repository = repository;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.allowedLatenessMs = allowedLateness.toMillis();
+        this.idleTimeoutMs = idleTimeout.toMillis();
+        this.maxUnsaved = Math.max(1, maxUnsaved);
+        this.windows = parseDefinitions(definitions, Integer.highestOneBit(Math.max(1, stripes)), meterRegistry);
+        this.enabled = enabled && !windows.isEmpty();
+        
+        this.droppedWindows = Counter.builder("analytics.windows.dropped")
+            .description("Closed windows dropped because they could not be stored")
+            .register(meterRegistry);
+        Gauge.builder("analytics.windows.watermark.lag", this, engine -> engine.watermark == Long.MIN_VALUE
+                ? 0 : System.currentTimeMillis() - engine.watermark)
+            .description("Milliseconds the watermark trails the wall clock")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+        if (this.enabled) {
+            log.info("Windowing events into {}", windows.keySet());
+        }
+    }
+    
+    /**
+     * Count the event in every window it belongs to. Events without a timestamp
+     * are counted at the time they are read.
+     */
+    public void accept(AnalyticsEvent event) {
+        if (!enabled || event == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long eventTime = event.getTimestamp() != null ? toMillis(event.getTimestamp()) : now;
+        maxEventTime.accumulate(Math.min(eventTime, now));
+        lastEventAt = now;
+        for (Window window : windows.values()) {
+            window.add(event, eventTime);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${analytics.windows.close-interval-ms:1000}")
+    public void closeWindows() {
+        if (!enabled) {
+            return;
+        }
+        long seen = maxEventTime.get();
+        if (seen != Long.MIN_VALUE) {
+            long idle = System.currentTimeMillis() - lastEventAt;
+            long eventClock = idle >= idleTimeoutMs ? seen + idle : seen;
+            long next = eventClock - allowedLatenessMs;
+            if (next > watermark) {
+                // Published before the stripes are swept; an add that sees it drops events for closed windows
+                watermark = next;
+                LocalDateTime closedAt = LocalDateTime.now();
+                List<EventWindowEntity> closed = new ArrayList<>();
+                for (Window window : windows.values()) {
+                    window.closeUpTo(next, closedAt, closed);
+                }
+                store(closed);
+                return;
+            }
+        }
+        store(List.of());
+    }
+    
+    /**
+     * Closed windows of one definition starting in [from, to), newest first,
+     * optionally for one key; by default those of the last day. Empty for a
+     * window that is not defined.
+     */
+    public Optional<List<EventWindow>> findWindows(String name, String key, LocalDateTime from, LocalDateTime to,
+                                                   int limit) {
+        Window window = windows.get(name);
+        if (window == null) {
+            return Optional.empty();
+        }
+        LocalDateTime until = to != null ? to : LocalDateTime.now();
+        LocalDateTime since = from != null ? from : until.minusDays(1);
+        PageRequest page = PageRequest.of(0, Math.min(Math.max(1, limit), MAX_QUERY_LIMIT));
+        List<EventWindowEntity> found = key == null || key.isBlank()
+            ? repository.findWindows(name, since, until, page)
+            : repository.findWindows(name, key, since, until, page);
+        return Optional.of(found.stream().map(entity -> toDto(window, entity)).toList());
+    }
+    
+    /**
+     * Stores the windows just closed together with those a previous attempt
+     * could not store, oldest first. At most max-unsaved wait for the database;
+     * beyond that the oldest are dropped.
+     */
+    private synchronized void store(List<EventWindowEntity> closed) {
+        unsaved.addAll(closed);
+        while (unsaved.size() > maxUnsaved) {
+            unsaved.pollFirst();
+            droppedWindows.increment();
+        }
+        if (unsaved.isEmpty()) {
+            return;
+        }
+        List<EventWindowEntity> batch = new ArrayList<>(unsaved);
+        try {
+            writeTransaction.executeWithoutResult(status -> repository.saveAll(batch));
+            unsaved.clear();
+            log.debug("Stored {} closed windows", batch.size());
+        } catch (DataAccessException e) {
+            // saveAll assigned IDs to the entities; clear them so the retry inserts afresh
+            batch.forEach(entity -> entity.setId(null));
+            log.warn("Could not store {} closed windows, retrying: {}", batch.size(),
+                e.getMostSpecificCause().toString());
+        }
+    }
+    
+    private static EventWindow toDto(Window window, EventWindowEntity entity) {
+        return new EventWindow(entity.getWindowName(), window.type.name(), window.keyField.fieldName(),
+            entity.getWindowKey(), entity.getWindowStart(), entity.getWindowEnd(), entity.getEventCount(),
+            entity.getFirstEventAt(), entity.getLastEventAt(), entity.getClosedAt());
+    }
+    
+    private Map<String, Window> parseDefinitions(String definitions, int stripes, MeterRegistry meterRegistry) {
+        Map<String, Window> parsed = new LinkedHashMap<>();
+        if (definitions == null || definitions.isBlank()) {
+            return parsed;
+        }
+        for (String definition : definitions.split(",")) {
+            if (definition.isBlank()) {
+                continue;
+            }
+            String[] nameAndSpec = definition.split("=", 2);
+            String[] spec = nameAndSpec.length > 1 ? nameAndSpec[1].split(":") : new String[0];
+            if (spec.length < 3) {
+                throw new IllegalArgumentException("Window definition '" + definition
+                    + "' should be name=type:key:size[:advance]");
+            }
+            String name = nameAndSpec[0].trim();
+            WindowType type = WindowType.valueOf(spec[0].trim().toUpperCase(Locale.ROOT));
+            long size = Duration.parse(spec[2].trim()).toMillis();
+            long advance = type == WindowType.HOPPING
+                ? Duration.parse(spec.length > 3 ? spec[3].trim() : spec[2].trim()).toMillis()
+                : size;
+            if (size <= 0 || advance <= 0 || advance > size) {
+                throw new IllegalArgumentException("Window definition '" + definition
+                    + "' needs a positive size and an advance no longer than the size");
+            }
+            parsed.put(name, new Window(name, type, KeyField.parse(spec[1].trim()), size, advance, stripes,
+                meterRegistry));
+        }
+        return parsed;
+    }
+    
+    // Event and result times are local date-times of the server's zone, like LocalDateTime.now()
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    private static LocalDateTime toTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+    
+    /**
+     * The stripe of a key, taken from the high bits of its spread hash: the
+     * stripe's {@link EventWindowTable} indexes keys by the low bits, so with
+     * the low bits here too only one slot in every stripeCount could start a probe.
+     */
+    static int stripeOf(String key, int stripeCount) {
+        return stripeCount == 1 ? 0
+            : EventWindowTable.spread(key.hashCode()) >>> (32 - Integer.numberOfTrailingZeros(stripeCount));
+    }
+    
+    /**
+     * One window definition and its open windows.
+     */
+    private final class Window {
+        final String name;
+        final WindowType type;
+        final KeyField keyField;
+        final long size;
+        final long advance;
+        final EventWindowTable[] stripes;
+        final Counter lateEvents;
+        final Counter closedWindows;
+        
+        Window(String name, WindowType type, KeyField keyField, long size, long advance, int stripeCount,
+               MeterRegistry meterRegistry) {
+            this.name = name;
+            this.type = type;
+            this.keyField = keyField;
+            this.size = size;
+            this.advance = advance;
+            this.stripes = new EventWindowTable[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new EventWindowTable();
+            }
+            this.lateEvents = Counter.builder("analytics.windows.late.events")
+                .description("Events dropped from a window that had already closed")
+                .tag("window", name)
+                .register(meterRegistry);
+            this.closedWindows = Counter.builder("analytics.windows.closed")
+                .description("Windows closed and stored")
+                .tag("window", name)
+                .register(meterRegistry);
+            Gauge.builder("analytics.windows.open", this, Window::openWindows)
+                .description("Windows still open")
+                .tag("window", name)
+                .register(meterRegistry);
+        }
+        
+        void add(AnalyticsEvent event, long eventTime) {
+            String key = keyField.of(event);
+            if (key == null || key.isBlank()) {
+                return;
+            }
+            EventWindowTable table = stripes[stripeOf(key, stripes.length)];
+            boolean late = false;
+            synchronized (table) {
+                // Read under the lock: windows ending at or before it have been or are being swept
+                long closed = watermark;
+                switch (type) {
+                    case SESSION:
+                        if (eventTime + size <= closed) {
+                            late = true;
+                        } else {
+                            table.addToSession(key, eventTime, size);
+                        }
+                        break;
+                    case HOPPING:
+                        for (long start = Math.floorDiv(eventTime, advance) * advance; start > eventTime - size;
+                             start -= advance) {
+                            if (start + size <= closed) {
+                                late = true;
+                            } else {
+                                table.add(key, start, start + size, eventTime);
+                            }
+                        }
+                        break;
+                    case TUMBLING:
+                    default:
+                        long start = Math.floorDiv(eventTime, size) * size;
+                        if (start + size <= closed) {
+                            late = true;
+                        } else {
+                            table.add(key, start, start + size, eventTime);
+                        }
+                        break;
+                }
+            }
+            if (late) {
+                lateEvents.increment();
+            }
+        }
+        
+        void closeUpTo(long closeWatermark, LocalDateTime closedAt, List<EventWindowEntity> closed) {
+            int before = closed.size();
+            for (EventWindowTable table : stripes) {
+                synchronized (table) {
+                    table.closeUpTo(closeWatermark, (key, start, end, count, first, last) ->
+                        closed.add(new EventWindowEntity(null, name, key, toTime(start), toTime(end), count,
+                            toTime(first), toTime(last), closedAt)));
+                }
+            }
+            closedWindows.increment(closed.size() - before);
+        }
+        
+        double openWindows() {
+            long open = 0;
+            for (EventWindowTable table : stripes) {
+                synchronized (table) {
+                    open += table.openWindows();
+                }
+            }
+            return open;
+        }
+    }
+}
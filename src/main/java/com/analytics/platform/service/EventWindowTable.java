@@ -0,0 +1,253 @@
+package com.analytics.platform.service;
+
+import java.util.Arrays;
+
+/**
+ * Open windows of one stripe of {@link EventWindowEngine}, held in parallel
+ * primitive arrays so that an open window costs a few longs and no objects.
+ *
+ * Keys are interned to int ids through an open-addressing index; the windows of
+ * a key form a singly linked list through {@code next}, newest first, and freed
+ * window slots are reused through a free list. A key rarely has more than a few
+ * windows open at once (size / advance for hopping windows, plus those waiting
+ * out the allowed lateness), so windows are found by walking the key's list.
+ * Keys without open windows are dropped when the table is compacted after a close.
+ *
+ * Not thread-safe; the engine locks the stripe around every call.
+ */
+final class EventWindowTable {
+    
+    private static final int NONE = -1;
+    private static final int INITIAL_KEYS = 64;
+    private static final int INITIAL_WINDOWS = 256;
+    
+    /**
+     * Receives each window removed by {@link #closeUpTo}.
+     */
+    @FunctionalInterface
+    interface ClosedWindowSink {
+        void closed(String key, long start, long end, long eventCount, long firstEvent, long lastEvent);
+    }
+    
+    // Keys: name and head of the window list by id; index holds id + 1, 0 being empty
+    private String[] keyNames = new String[INITIAL_KEYS];
+    private int[] keyHeads = new int[INITIAL_KEYS];
+    private int[] keyIndex = new int[INITIAL_KEYS * 2];
+    private int keyCount;
+    
+    // Windows: one slot per open window; times in epoch millis
+    private int[] windowNext = new int[INITIAL_WINDOWS];
+    private long[] windowStart = new long[INITIAL_WINDOWS];
+    private long[] windowEnd = new long[INITIAL_WINDOWS];
+    private long[] eventCount = new long[INITIAL_WINDOWS];
+    private long[] firstEvent = new long[INITIAL_WINDOWS];
+    private long[] lastEvent = new long[INITIAL_WINDOWS];
+    private int windowSlots;
+    private int freeWindows = NONE;
+    private int openWindows;
+    
+    int openWindows() {
+        return openWindows;
+    }
+    
+    /**
+     * Count an event in the fixed window [start, end) of this key.
+     */
+    void add(String key, long start, long end, long eventTime) {
+        int keyId = keyId(key);
+        for (int w = keyHeads[keyId]; w != NONE; w = windowNext[w]) {
+            if (windowStart[w] == start) {
+                count(w, eventTime);
+                return;
+            }
+        }
+        int w = newWindow(keyId, start, end);
+        firstEvent[w] = eventTime;
+        lastEvent[w] = eventTime;
+        eventCount[w] = 1;
+    }
+    
+    /**
+     * Count an event in the session of this key it falls into, that is less than
+     * gap away from the session's first or last event. An event that bridges two
+     * sessions merges them; an event near none starts a new session.
+     */
+    void addToSession(String key, long eventTime, long gap) {
+        int keyId = keyId(key);
+        int session = NONE;
+        int previous = NONE;
+        for (int w = keyHeads[keyId]; w != NONE; ) {
+            int next = windowNext[w];
+            if (eventTime > firstEvent[w] - gap && eventTime < lastEvent[w] + gap) {
+                if (session == NONE) {
+                    session = w;
+                    previous = w;
+                } else {
+                    // Bridged by this event: fold w into the session found first
+                    eventCount[session] += eventCount[w];
+                    firstEvent[session] = Math.min(firstEvent[session], firstEvent[w]);
+                    lastEvent[session] = Math.max(lastEvent[session], lastEvent[w]);
+                    unlink(keyId, previous, w);
+                }
+            } else {
+                previous = w;
+            }
+            w = next;
+        }
+        if (session == NONE) {
+            session = newWindow(keyId, eventTime, eventTime + gap);
+            firstEvent[session] = eventTime;
+            lastEvent[session] = eventTime;
+            eventCount[session] = 1;
+            return;
+        }
+        count(session, eventTime);
+        windowStart[session] = firstEvent[session];
+        windowEnd[session] = lastEvent[session] + gap;
+    }
+    
+    /**
+     * Remove every window ending at or before the watermark and hand it to the sink.
+     */
+    void closeUpTo(long watermark, ClosedWindowSink sink) {
+        int emptyKeys = 0;
+        for (int keyId = 0; keyId < keyCount; keyId++) {
+            int previous = NONE;
+            for (int w = keyHeads[keyId]; w != NONE; ) {
+                int next = windowNext[w];
+                if (windowEnd[w] <= watermark) {
+                    sink.closed(keyNames[keyId], windowStart[w], windowEnd[w], eventCount[w], firstEvent[w],
+                        lastEvent[w]);
+                    unlink(keyId, previous, w);
+                } else {
+                    previous = w;
+                }
+                w = next;
+            }
+            if (keyHeads[keyId] == NONE) {
+                emptyKeys++;
+            }
+        }
+        if (emptyKeys > INITIAL_KEYS && emptyKeys * 2 > keyCount) {
+            compact();
+        }
+    }
+    
+    private void count(int w, long eventTime) {
+        eventCount[w]++;
+        if (eventTime < firstEvent[w]) {
+            firstEvent[w] = eventTime;
+        }
+        if (eventTime > lastEvent[w]) {
+            lastEvent[w] = eventTime;
+        }
+    }
+    
+    private int newWindow(int keyId, long start, long end) {
+        int w;
+        if (freeWindows != NONE) {
+            w = freeWindows;
+            freeWindows = windowNext[w];
+        } else {
+            if (windowSlots == windowNext.length) {
+                growWindows();
+            }
+            w = windowSlots++;
+        }
+        windowStart[w] = start;
+        windowEnd[w] = end;
+        windowNext[w] = keyHeads[keyId];
+        keyHeads[keyId] = w;
+        openWindows++;
+        return w;
+    }
+    
+    private void unlink(int keyId, int previous, int w) {
+        if (previous == NONE) {
+            keyHeads[keyId] = windowNext[w];
+        } else {
+            windowNext[previous] = windowNext[w];
+        }
+        windowNext[w] = freeWindows;
+        freeWindows = w;
+        openWindows--;
+    }
+    
+    private int keyId(String key) {
+        int mask = keyIndex.length - 1;
+        for (int i = spread(key.hashCode()) & mask; ; i = (i + 1) & mask) {
+            int entry = keyIndex[i];
+            if (entry == 0) {
+                break;
+            }
+            if (keyNames[entry - 1].equals(key)) {
+                return entry - 1;
+            }
+        }
+        if (keyCount == keyNames.length) {
+            keyNames = Arrays.copyOf(keyNames, keyCount * 2);
+            keyHeads = Arrays.copyOf(keyHeads, keyCount * 2);
+        }
+        int keyId = keyCount++;
+        keyNames[keyId] = key;
+        keyHeads[keyId] = NONE;
+        if (keyCount * 2 > keyIndex.length) {
+            rebuildIndex(keyIndex.length * 2);
+        } else {
+            insertIntoIndex(keyId);
+        }
+        return keyId;
+    }
+    
+    /**
+     * Drop keys without open windows and renumber the rest.
+     */
+    private void compact() {
+        int live = 0;
+        for (int keyId = 0; keyId < keyCount; keyId++) {
+            if (keyHeads[keyId] == NONE) {
+                continue;
+            }
+            keyNames[live] = keyNames[keyId];
+            keyHeads[live] = keyHeads[keyId];
+            live++;
+        }
+        Arrays.fill(keyNames, live, keyCount, null);
+        keyCount = live;
+        int capacity = Math.max(INITIAL_KEYS, Integer.highestOneBit(Math.max(1, live)) * 2);
+        keyNames = Arrays.copyOf(keyNames, Math.max(capacity, live));
+        keyHeads = Arrays.copyOf(keyHeads, keyNames.length);
+        rebuildIndex(Math.max(INITIAL_KEYS * 2, capacity * 2));
+    }
+    
+    private void rebuildIndex(int size) {
+        keyIndex = new int[size];
+        for (int keyId = 0; keyId < keyCount; keyId++) {
+            insertIntoIndex(keyId);
+        }
+    }
+    
+    private void insertIntoIndex(int keyId) {
+        int mask = keyIndex.length - 1;
+        int i = spread(keyNames[keyId].hashCode()) & mask;
+        while (keyIndex[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        keyIndex[i] = keyId + 1;
+    }
+    
+    private void growWindows() {
+        int size = windowNext.length * 2;
+        windowNext = Arrays.copyOf(windowNext, size);
+        windowStart = Arrays.copyOf(windowStart, size);
+        windowEnd = Arrays.copyOf(windowEnd, size);
+        eventCount = Arrays.copyOf(eventCount, size);
+        firstEvent = Arrays.copyOf(firstEvent, size);
+        lastEvent = Arrays.copyOf(lastEvent, size);
+    }
+    
+    // The index uses the low bits; the engine picks a key's stripe from the high bits
+    static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+}
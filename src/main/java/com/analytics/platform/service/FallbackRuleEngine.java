@@ -0,0 +1,337 @@
+package com.analytics.platform.service;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic scoring for events the model does not handle: the same event
+ * always gets the same prediction.
+ *
+ * Rules are loaded from ai.fallback.rules at startup and are of three kinds:
+ * keyword lists matched against the event text, regular expressions on a field,
+ * and numeric thresholds on a field. All keyword lists are compiled into a single
+ * {@link KeywordAutomaton}, so the text is scanned once however many keywords
+ * there are. A regex rule on the event text may list prefilter literals, one of
+ * which must occur for the match to be possible; they go into the same automaton,
+ * so clean text skips the regex entirely. Each rule owns one bit of a long, and
+ * the rules that apply to an event type are a precomputed mask, so evaluating an
+ * event allocates nothing.
+ *
+ * The matching rule with the highest score decides the prediction; when no rule
+ * matches, the default for the event type applies.
+ */
+@Component
+@Slf4j
+public class FallbackRuleEngine {
+    
+    private static final int MAX_RULES = Long.SIZE;
+    private static final String ANY_TYPE = "*";
+    
+    public enum RuleType { KEYWORD, REGEX, THRESHOLD }
+    
+    public enum Comparison {
+        GT, GTE, LT, LTE;
+        
+        boolean test(double actual, double limit) {
+            switch (this) {
+                case GT:
+                    return actual > limit;
+                case GTE:
+                    return actual >= limit;
+                case LT:
+                    return actual < limit;
+                case LTE:
+                default:
+                    return actual <= limit;
+            }
+        }
+    }
+    
+    private final Rule[] rules;
+    private final Map<String, Outcome> defaults;
+    private final Outcome anyTypeDefault;
+    
+    private final Map<String, Long> rulesByType = new HashMap<>();
+    private final long rulesForAnyType;
+    
+    private final KeywordAutomaton keywords;
+    private final long keywordRules;
+    private final long prefilteredRules;
+    private final int[] regexRules;
+    private final Pattern[] patterns;
+    private final ThreadLocal<Matcher[]> matchers;
+    private final int[] thresholdRules;
+    
+    public FallbackRuleEngine(@Value("${ai.fallback.rules:classpath:fallback-rules.json}") Resource location)
+            throws IOException {
+        RuleSet ruleSet;
+        try (InputStream in = location.getInputStream()) {
+            ruleSet = JsonMapper.builder()
+                .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+                .build()
+                .readValue(in, RuleSet.class);
+        }
+        List<Rule> definitions = ruleSet.rules() != null ? ruleSet.rules() : List.of();
+        if (definitions.size() > MAX_RULES) {
+            throw new IllegalStateException("At most " + MAX_RULES + " fallback rules are supported, "
+                + location + " defines " + definitions.size());
+        }
+        this.rules = definitions.toArray(new Rule[0]);
+        
+        this.defaults = new HashMap<>();
+        if (ruleSet.defaults() != null) {
+            ruleSet.defaults().forEach((type, outcome) -> defaults.put(type.toLowerCase(Locale.ROOT), outcome));
+        }
+        this.anyTypeDefault = defaults.getOrDefault(ANY_TYPE,
+            new Outcome("NEUTRAL", 0.5, "low", "Continue monitoring"));
+        
+        Map<String, Long> keywordBits = new HashMap<>();
+        List<Integer> regex = new ArrayList<>();
+        List<Integer> threshold = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        long anyType = 0L;
+        long keywordMask = 0L;
+        long prefilterMask = 0L;
+        for (int i = 0; i < rules.length; i++) {
+            Rule rule = rules[i];
+            validate(rule, names);
+            long bit = 1L << i;
+            if (rule.eventTypes() == null || rule.eventTypes().isEmpty()) {
+                anyType |= bit;
+            } else {
+                for (String type : rule.eventTypes()) {
+                    rulesByType.merge(type.toLowerCase(Locale.ROOT), bit, (a, b) -> a | b);
+                }
+            }
+            switch (rule.type()) {
+                case KEYWORD:
+                    keywordMask |= bit;
+                    for (String keyword : rule.keywords()) {
+                        keywordBits.merge(keyword.toLowerCase(Locale.ROOT), bit, (a, b) -> a | b);
+                    }
+                    break;
+                case REGEX:
+                    regex.add(i);
+                    if (rule.prefilter() != null && !rule.prefilter().isEmpty()) {
+                        prefilterMask |= bit;
+                        for (String literal : rule.prefilter()) {
+                            keywordBits.merge(literal.toLowerCase(Locale.ROOT), bit, (a, b) -> a | b);
+                        }
+                    }
+                    break;
+                case THRESHOLD:
+                    threshold.add(i);
+                    break;
+            }
+        }
+        // Rules without event types apply to every type, including the ones named by other rules
+        long anyTypeMask = anyType;
+        rulesByType.replaceAll((type, mask) -> mask | anyTypeMask);
+        this.rulesForAnyType = anyType;
+        
+        this.keywords = new KeywordAutomaton(keywordBits);
+        this.keywordRules = keywordMask;
+        this.prefilteredRules = prefilterMask;
+        this.regexRules = regex.stream().mapToInt(Integer::intValue).toArray();
+        this.thresholdRules = threshold.stream().mapToInt(Integer::intValue).toArray();
+        this.patterns = new Pattern[regexRules.length];
+        for (int i = 0; i < regexRules.length; i++) {
+            patterns[i] = Pattern.compile(rules[regexRules[i]].pattern());
+        }
+        this.matchers = ThreadLocal.withInitial(() -> {
+            Matcher[] perThread = new Matcher[patterns.length];
+            for (int i = 0; i < patterns.length; i++) {
+                perThread[i] = patterns[i].matcher("");
+            }
+            return perThread;
+        });
+        
+        log.info("Loaded {} fallback rules from {} ({} keywords in {} automaton states)",
+            rules.length, location, keywordBits.size(), keywords.stateCount());
+    }
+    
+    /**
+     * @return the bits of the rules that match the event, by position in the rule file
+     */
+    public long evaluate(String eventType, Map<String, Object> data) {
+        long candidates = candidatesFor(eventType);
+        if (candidates == 0L || data == null) {
+            return 0L;
+        }
+        long matched = 0L;
+        CharSequence text = textOf(data);
+        
+        // Keyword rules and prefiltered regex rules are served by one scan of the text
+        long found = 0L;
+        if ((candidates & (keywordRules | prefilteredRules)) != 0L && text != null) {
+            found = keywords.match(text) & candidates;
+            matched |= found & keywordRules;
+        }
+        if (regexRules.length > 0) {
+            Matcher[] perThread = matchers.get();
+            for (int i = 0; i < regexRules.length; i++) {
+                int rule = regexRules[i];
+                long bit = 1L << rule;
+                if ((candidates & bit) == 0L || ((prefilteredRules & bit) != 0L && (found & bit) == 0L)) {
+                    continue;
+                }
+                CharSequence value = rules[rule].field() == null ? text : asText(data.get(rules[rule].field()));
+                if (value != null) {
+                    Matcher matcher = perThread[i].reset(value);
+                    if (matcher.find()) {
+                        matched |= bit;
+                    }
+                    // Drop the reference to the event text
+                    matcher.reset("");
+                }
+            }
+        }
+        for (int rule : thresholdRules) {
+            if ((candidates & (1L << rule)) == 0L) {
+                continue;
+            }
+            double value = asNumber(data.get(rules[rule].field()));
+            if (!Double.isNaN(value) && rules[rule].op().test(value, rules[rule].value())) {
+                matched |= 1L << rule;
+            }
+        }
+        return matched;
+    }
+    
+    /**
+     * @return the matching rule with the highest score, the earliest on a tie, or null
+     */
+    public Rule strongest(long matched) {
+        Rule best = null;
+        for (long remaining = matched; remaining != 0L; remaining &= remaining - 1) {
+            Rule rule = rules[Long.numberOfTrailingZeros(remaining)];
+            if (best == null || rule.score() > best.score()) {
+                best = rule;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Chance that at least one of the matching rules is right, treating them as independent.
+     */
+    public double anomalyScore(long matched) {
+        double clean = 1.0;
+        for (long remaining = matched; remaining != 0L; remaining &= remaining - 1) {
+            clean *= 1.0 - rules[Long.numberOfTrailingZeros(remaining)].score();
+        }
+        return 1.0 - clean;
+    }
+    
+    public List<String> ruleNames(long matched) {
+        List<String> names = new ArrayList<>(Long.bitCount(matched));
+        for (long remaining = matched; remaining != 0L; remaining &= remaining - 1) {
+            names.add(rules[Long.numberOfTrailingZeros(remaining)].name());
+        }
+        return names;
+    }
+    
+    /**
+     * @return what to predict for this event type when no rule matches
+     */
+    public Outcome defaultFor(String eventType) {
+        if (eventType == null) {
+            return anyTypeDefault;
+        }
+        return defaults.getOrDefault(eventType.toLowerCase(Locale.ROOT), anyTypeDefault);
+    }
+    
+    private long candidatesFor(String eventType) {
+        if (eventType == null) {
+            return rulesForAnyType;
+        }
+        // toLowerCase returns the same instance when the type is already lower case
+        Long mask = rulesByType.get(eventType.toLowerCase(Locale.ROOT));
+        return mask != null ? mask : rulesForAnyType;
+    }
+    
+    private static CharSequence textOf(Map<String, Object> data) {
+        CharSequence content = asText(data.get("content"));
+        if (content != null) {
+            return content;
+        }
+        CharSequence text = asText(data.get("text"));
+        return text != null ? text : asText(data.get("message"));
+    }
+    
+    private static CharSequence asText(Object value) {
+        if (value == null) {
+            return null;
+        }
+        return value instanceof CharSequence sequence ? sequence : value.toString();
+    }
+    
+    private static double asNumber(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof String string) {
+            try {
+                return Double.parseDouble(string);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+    
+    private static void validate(Rule rule, Set<String> names) {
+        if (rule.name() == null || !names.add(rule.name())) {
+            throw new IllegalStateException("Fallback rule names must be present and unique: " + rule.name());
+        }
+        if (rule.type() == null || rule.prediction() == null || rule.score() < 0.0 || rule.score() > 1.0) {
+            throw new IllegalStateException("Fallback rule [" + rule.name()
+                + "] needs a type, a prediction and a score between 0 and 1");
+        }
+        boolean complete = switch (rule.type()) {
+            case KEYWORD -> rule.keywords() != null && !rule.keywords().isEmpty()
+                && rule.keywords().stream().noneMatch(String::isEmpty);
+            case REGEX -> rule.pattern() != null
+                && (rule.prefilter() == null || rule.field() == null && !rule.prefilter().contains(""));
+            case THRESHOLD -> rule.field() != null && rule.op() != null && rule.value() != null;
+        };
+        if (!complete) {
+            throw new IllegalStateException("Fallback rule [" + rule.name() + "] is missing settings for a "
+                + rule.type().name().toLowerCase(Locale.ROOT) + " rule");
+        }
+    }
+    
+    /**
+     * One entry of the rule file. Keyword rules match the event text (content, text
+     * or message); regex rules match field, or the event text when it is absent,
+     * and may then skip texts containing none of the prefilter literals; threshold
+     * rules compare the numeric field with value.
+     */
+    public record Rule(String name, RuleType type, List<String> eventTypes,
+                       List<String> keywords, String pattern, List<String> prefilter,
+                       String field, Comparison op, Double value,
+                       String prediction, double score, String riskLevel, String recommendation) {
+    }
+    
+    public record Outcome(String prediction, double confidence, String riskLevel, String recommendation) {
+    }
+    
+    record RuleSet(Map<String, Outcome> defaults, List<Rule> rules) {
+    }
+}
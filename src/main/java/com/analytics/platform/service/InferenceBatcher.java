@@ -0,0 +1,144 @@
+package com.analytics.platform.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Coalesces single-text inference calls into multi-input requests.
+ *
+ * Texts submitted concurrently are collected until maxBatchSize texts are waiting
+ * or maxWait has passed since the first one, then scored with one batch call.
+ * The batch call answers with one result per input, in input order, and each
+ * caller receives the entry at its own position. At most maxConcurrentBatches
+ * batch calls are in flight; later batches queue.
+ *
+ * @param <R> the per-input result of the batch call
+ */
+@Slf4j
+public class InferenceBatcher<R> {
+    
+    private static final ParameterizedTypeReference<List<List<Map<String, Object>>>> BATCH_RESPONSE =
+        new ParameterizedTypeReference<>() {};
+    
+    private final Function<List<String>, Mono<List<R>>> batchCall;
+    private final Sinks.Many<PendingInput<R>> pendingInputs =
+        Sinks.many().unicast().onBackpressureBuffer(Queues.<PendingInput<R>>unboundedMultiproducer().get());
+    private final DistributionSummary batchSize;
+    private final Timer batchLatency;
+    private final Disposable dispatcher;
+    
+    public InferenceBatcher(String backend, Function<List<String>, Mono<List<R>>> batchCall,
+                            int maxBatchSize, Duration maxWait, int maxConcurrentBatches,
+                            MeterRegistry meterRegistry) {
+        this.batchCall = batchCall;
+        this.batchSize = DistributionSummary.builder("analytics.inference.batch.size")
+            .description("Number of inputs per coalesced inference request")
+            .tag("backend", backend)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.batchLatency = Timer.builder("analytics.inference.batch.latency")
+            .description("Round trip time of coalesced inference requests")
+            .tag("backend", backend)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.dispatcher = pendingInputs.asFlux()
+            .bufferTimeout(maxBatchSize, maxWait)
+            .onBackpressureBuffer()
+            .flatMap(this::dispatch, maxConcurrentBatches)
+            .subscribe();
+    }
+    
+    /**
+     * Batcher in front of a Hugging Face style endpoint that takes a list of inputs
+     * and returns one list of label scores per input.
+     */
+    public static InferenceBatcher<List<Map<String, Object>>> forEndpoint(WebClient webClient, String endpoint,
+                                                                          String apiKey, int maxBatchSize,
+                                                                          Duration maxWait,
+                                                                          int maxConcurrentBatches,
+                                                                          MeterRegistry meterRegistry) {
+        Function<List<String>, Mono<List<List<Map<String, Object>>>>> call = texts -> webClient.post()
+            .uri(endpoint)
+            .header("Authorization", "Bearer " + apiKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(Map.of("inputs", texts))
+            .retrieve()
+            .bodyToMono(BATCH_RESPONSE);
+        return new InferenceBatcher<>("remote", call, maxBatchSize, maxWait, maxConcurrentBatches, meterRegistry);
+    }
+    
+    /**
+     * Queue one text for the next batch. The returned Mono emits the result for
+     * this text, or fails with the error of the batch call it was part of.
+     */
+    public Mono<R> submit(String text) {
+        return Mono.create(sink -> pendingInputs.emitNext(new PendingInput<>(text, sink),
+            Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1))));
+    }
+    
+    /**
+     * Score the texts with one batch call, bypassing the coalescing queue.
+     */
+    public Mono<List<R>> sendBatch(List<String> texts) {
+        return batchCall.apply(texts);
+    }
+    
+    public void shutdown() {
+        dispatcher.dispose();
+    }
+    
+    private Mono<Void> dispatch(List<PendingInput<R>> batch) {
+        List<String> texts = new ArrayList<>(batch.size());
+        for (PendingInput<R> input : batch) {
+            texts.add(input.text);
+        }
+        batchSize.record(batch.size());
+        long start = System.nanoTime();
+        
+        return sendBatch(texts)
+            .doOnNext(responses -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    MonoSink<R> sink = batch.get(i).sink;
+                    if (responses != null && i < responses.size()) {
+                        sink.success(responses.get(i));
+                    } else {
+                        sink.error(new IllegalStateException("No inference result for input " + i
+                            + " of a batch of " + batch.size()));
+                    }
+                }
+            })
+            .doOnError(e -> {
+                log.warn("Batched inference call of {} inputs failed: {}", batch.size(), e.toString());
+                batch.forEach(input -> input.sink.error(e));
+            })
+            .doOnSuccess(responses -> {
+                if (responses == null) {
+                    batch.forEach(input -> input.sink.error(
+                        new IllegalStateException("Empty response to batched inference request")));
+                }
+            })
+            .doFinally(signal -> batchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+            .onErrorResume(e -> Mono.empty())
+            .then();
+    }
+    
+    private record PendingInput<R>(String text, MonoSink<R> sink) {
+    }
+}
@@ -0,0 +1,221 @@
+package com.analytics.platform.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Caches model scores by content so repeated texts (templates, spam waves, reposts)
+ * are scored once per model version.
+ *
+ * The key is a SHA-256 digest of the model version and the normalized text, kept as
+ * two longs. The heap tier is a Caffeine cache bounded by an estimate of its size in
+ * bytes; its W-TinyLFU policy keeps frequently repeated texts over one-off ones.
+ * Entries whose top score is close to the decision boundary get a shorter TTL.
+ * The optional off-heap tier is written through and keeps millions of entries
+ * without heap objects; heap misses fall back to it and promote what they find.
+ */
+@Service
+@Slf4j
+public class InferenceResultCache {
+    
+    // Estimated per-entry cost besides the score array: key, node and references
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Duration uncertainTtl;
+    private final double uncertainMargin;
+    private final Cache<ContentKey, double[]> cache;
+    private final OffHeapScoreTable offHeap;
+    
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final Counter offHeapHits;
+    private final Counter invalidations;
+    
+    private volatile String currentModelVersion;
+    
+    public InferenceResultCache(MeterRegistry meterRegistry,
+                                @Value("${ai.cache.enabled:true}") boolean enabled,
+                                @Value("${ai.cache.max-weight-bytes:67108864}") long maxWeightBytes,
+                                @Value("${ai.cache.ttl:PT1H}") Duration ttl,
+                                @Value("${ai.cache.uncertain-ttl:PT5M}") Duration uncertainTtl,
+                                @Value("${ai.cache.uncertain-margin:0.1}") double uncertainMargin,
+                                @Value("${ai.cache.off-heap.enabled:false}") boolean offHeapEnabled,
+                                @Value("${ai.cache.off-heap.slots:1048576}") int offHeapSlots) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.uncertainTtl = uncertainTtl;
+        this.uncertainMargin = uncertainMargin;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxWeightBytes)
+            .weigher((ContentKey key, double[] scores) -> ENTRY_OVERHEAD_BYTES + scores.length * Double.BYTES)
+            .expireAfter(new Expiry<ContentKey, double[]>() {
+                @Override
+                public long expireAfterCreate(ContentKey key, double[] scores, long currentTime) {
+                    return ttlFor(scores).toNanos();
+                }
+                
+                @Override
+                public long expireAfterUpdate(ContentKey key, double[] scores, long currentTime,
+                                              long currentDuration) {
+                    return ttlFor(scores).toNanos();
+                }
+                
+                @Override
+                public long expireAfterRead(ContentKey key, double[] scores, long currentTime,
+                                            long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+        this.offHeap = enabled && offHeapEnabled ? new OffHeapScoreTable(offHeapSlots) : null;
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "inference-results");
+        this.offHeapHits = Counter.builder("analytics.inference.cache.offheap.hits")
+            .description("Heap misses answered by the off-heap tier")
+            .register(meterRegistry);
+        this.invalidations = Counter.builder("analytics.inference.cache.invalidations")
+            .description("Full invalidations caused by a model version change")
+            .register(meterRegistry);
+        Gauge.builder("analytics.inference.cache.hit.ratio", this, InferenceResultCache::getHitRatio)
+            .description("Share of lookups answered by either tier")
+            .register(meterRegistry);
+        Gauge.builder("analytics.inference.cache.heap.bytes", this, InferenceResultCache::getHeapBytes)
+            .description("Estimated heap used by cached scores")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("analytics.inference.cache.offheap.bytes", this,
+                c -> c.offHeap != null ? c.offHeap.capacityBytes() : 0)
+            .description("Direct memory reserved by the off-heap tier")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * @return the cached scores for this text under the given model version, or null
+     */
+    public double[] get(String content, String modelVersion) {
+        if (!enabled || content == null) {
+            return null;
+        }
+        checkModelVersion(modelVersion);
+        requests.increment();
+        
+        ContentKey key = keyOf(content, modelVersion);
+        double[] scores = cache.getIfPresent(key);
+        if (scores == null && offHeap != null) {
+            scores = offHeap.get(key.hi(), key.lo(), System.currentTimeMillis());
+            if (scores != null) {
+                offHeapHits.increment();
+                cache.put(key, scores);
+            }
+        }
+        if (scores != null) {
+            hits.increment();
+        }
+        return scores;
+    }
+    
+    public void put(String content, String modelVersion, double[] scores) {
+        if (!enabled || content == null || scores == null) {
+            return;
+        }
+        checkModelVersion(modelVersion);
+        
+        ContentKey key = keyOf(content, modelVersion);
+        cache.put(key, scores);
+        if (offHeap != null) {
+            offHeap.put(key.hi(), key.lo(), scores, System.currentTimeMillis() + ttlFor(scores).toMillis());
+        }
+    }
+    
+    public void invalidateAll() {
+        cache.invalidateAll();
+        if (offHeap != null) {
+            offHeap.clear();
+        }
+        invalidations.increment();
+    }
+    
+    public double getHitRatio() {
+        long total = requests.sum();
+        return total == 0 ? 0.0 : (double) hits.sum() / total;
+    }
+    
+    public long getHeapBytes() {
+        return cache.policy().eviction()
+            .map(eviction -> eviction.weightedSize().orElse(0L))
+            .orElse(0L);
+    }
+    
+    /**
+     * Lower-case, Unicode-normalized text with runs of whitespace collapsed, so
+     * copies that differ only in spacing or case share an entry.
+     */
+    static String normalize(String content) {
+        String normalized = Normalizer.normalize(content, Normalizer.Form.NFKC);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+    }
+    
+    static ContentKey keyOf(String content, String modelVersion) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(modelVersion.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest(normalize(content).getBytes(StandardCharsets.UTF_8)));
+        return new ContentKey(hash.getLong(), hash.getLong());
+    }
+    
+    private Duration ttlFor(double[] scores) {
+        double top = 0.0;
+        for (double score : scores) {
+            top = Math.max(top, score);
+        }
+        return Math.abs(top - 0.5) < uncertainMargin ? uncertainTtl : ttl;
+    }
+    
+    private void checkModelVersion(String modelVersion) {
+        if (modelVersion.equals(currentModelVersion)) {
+            return;
+        }
+        synchronized (this) {
+            if (modelVersion.equals(currentModelVersion)) {
+                return;
+            }
+            if (currentModelVersion != null) {
+                log.info("Model version changed from {} to {}, invalidating inference cache",
+                    currentModelVersion, modelVersion);
+                invalidateAll();
+            }
+            currentModelVersion = modelVersion;
+        }
+    }
+    
+    record ContentKey(long hi, long lo) {
+    }
+}
@@ -0,0 +1,350 @@
+package com.analytics.platform.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for calls to the rate-limited remote model.
+ *
+ * A global token bucket sized to the provider quota decides how many calls may
+ * start; waiting calls sit in one FIFO queue per priority, and whenever a token
+ * is free the next call is taken from the queues by smooth weighted round-robin,
+ * so a burst of low-priority events slows high-priority ones down in proportion
+ * to the weights instead of starving them. A call that has waited longer than
+ * its priority's max wait, or finds its queue full, is shed with a
+ * {@link ShedException} and the event goes to the fallback.
+ *
+ * The priority comes from the event type stored under {@link #EVENT_TYPE_KEY}
+ * in the Reactor context; calls without one use the default priority. One token
+ * is taken per model call, hedged attempts included (see {@link #tryAcquire}),
+ * so when batching merges several calls into one request the bucket errs on the
+ * safe side. A lane's max wait is kept below ai.model.deadline-ms, so a call that
+ * cannot get a token in time is shed here rather than timed out by the deadline.
+ */
+@Component
+@Slf4j
+public class InferenceScheduler {
+    
+    /** Reactor context key holding the type of the event a model call is made for */
+    public static final String EVENT_TYPE_KEY = InferenceScheduler.class.getName() + ".eventType";
+    
+    private final boolean enabled;
+    private final double tokensPerNano;
+    private final double burst;
+    private final Map<String, Lane> lanes;
+    private final Map<String, Lane> laneByEventType;
+    private final Lane defaultLane;
+    
+    private double tokens;
+    private long refilledAt;
+    private Disposable wakeup;
+    private long wakeupAt;
+    
+    public InferenceScheduler(MeterRegistry meterRegistry,
+                              @Value("${ai.scheduler.enabled:true}") boolean enabled,
+                              @Value("${ai.scheduler.rate-per-second:10}") double ratePerSecond,
+                              @Value("${ai.scheduler.burst:20}") int burst,
+                              @Value("${ai.scheduler.priorities:high=6:1500:1000,normal=3:1000:1000,low=1:500:200}")
+                              String priorities,
+                              @Value("${ai.scheduler.event-priorities:}") String eventPriorities,
+                              @Value("${ai.scheduler.default-priority:normal}") String defaultPriority,
+                              @Value("${ai.model.deadline-ms:3000}") long deadlineMs) {
+        this.enabled = enabled;
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.refilledAt = System.nanoTime();
+        
+        this.lanes = parseLanes(priorities, deadlineMs, meterRegistry);
+        if (lanes.isEmpty()) {
+            lanes.put("normal", new Lane("normal", 1, Math.min(1000, deadlineMs / 2), 1000, meterRegistry));
+        }
+        Lane fallbackLane = lanes.get(defaultPriority.trim().toLowerCase(Locale.ROOT));
+        this.defaultLane = fallbackLane != null ? fallbackLane : lanes.values().iterator().next();
+        this.laneByEventType = new HashMap<>();
+        for (String mapping : eventPriorities.split(",")) {
+            String[] parts = mapping.split("=", 2);
+            if (parts.length != 2) {
+                continue;
+            }
+            Lane lane = lanes.get(parts[1].trim().toLowerCase(Locale.ROOT));
+            if (lane == null) {
+                log.warn("Ignoring event priority [{}]: unknown priority", mapping.trim());
+            } else {
+                laneByEventType.put(parts[0].trim().toLowerCase(Locale.ROOT), lane);
+            }
+        }
+        
+        Gauge.builder("analytics.inference.scheduler.tokens", this, InferenceScheduler::availableTokens)
+            .description("Calls the token bucket would admit right now")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Context entry that assigns the model calls made downstream to this event type's priority.
+     */
+    public static Context forEventType(String eventType) {
+        return eventType == null ? Context.empty() : Context.of(EVENT_TYPE_KEY, eventType);
+    }
+    
+    /**
+     * Wait for a token in the caller's priority queue, then subscribe to the call.
+     * Fails with {@link ShedException} without calling when the wait bound passes.
+     */
+    public <T> Mono<T> schedule(Supplier<Mono<T>> call) {
+        if (!enabled) {
+            return Mono.defer(call);
+        }
+        return Mono.deferContextual(context -> admit(laneFor(context.getOrDefault(EVENT_TYPE_KEY, null))))
+            .then(Mono.defer(call));
+    }
+    
+    /**
+     * Take a token for an optional extra call, such as a hedged attempt, only if one
+     * is free right now and no scheduled call is waiting for it. Returns false
+     * instead of queueing, so optional calls never push the quota over its rate.
+     */
+    public boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+            if (tokens < 1.0) {
+                return false;
+            }
+            for (Lane lane : lanes.values()) {
+                if (!lane.queue.isEmpty()) {
+                    return false;
+                }
+            }
+            tokens -= 1.0;
+            return true;
+        }
+    }
+    
+    private Lane laneFor(String eventType) {
+        if (eventType == null) {
+            return defaultLane;
+        }
+        return laneByEventType.getOrDefault(eventType.toLowerCase(Locale.ROOT), defaultLane);
+    }
+    
+    private Mono<Void> admit(Lane lane) {
+        return Mono.create(sink -> {
+            Ticket ticket = new Ticket(sink, System.nanoTime());
+            sink.onCancel(() -> ticket.cancelled = true);
+            List<Runnable> signals = new ArrayList<>();
+            synchronized (this) {
+                if (lane.queue.size() >= lane.capacity) {
+                    lane.shedFull.increment();
+                    signals.add(() -> sink.error(new ShedException("Queue [" + lane.name + "] is full")));
+                } else {
+                    lane.queue.add(ticket);
+                }
+                drain(signals);
+            }
+            signals.forEach(Runnable::run);
+        });
+    }
+    
+    private void onWakeup() {
+        List<Runnable> signals = new ArrayList<>();
+        synchronized (this) {
+            wakeup = null;
+            drain(signals);
+        }
+        signals.forEach(Runnable::run);
+    }
+    
+    /**
+     * Shed expired calls, admit as many as there are tokens, and arrange to run
+     * again when the next token is due or the oldest call expires. Sinks are
+     * signalled by the caller after the lock is released.
+     */
+    private void drain(List<Runnable> signals) {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        
+        for (Lane lane : lanes.values()) {
+            Ticket head;
+            while ((head = lane.queue.peek()) != null
+                    && (head.cancelled || now - head.enqueuedAt > lane.maxWaitNanos)) {
+                lane.queue.poll();
+                if (!head.cancelled) {
+                    long waited = now - head.enqueuedAt;
+                    lane.shedExpired.increment();
+                    lane.waitTimer.record(waited, TimeUnit.NANOSECONDS);
+                    MonoSink<Void> sink = head.sink;
+                    signals.add(() -> sink.error(new ShedException("Waited " + waited / 1_000_000
+                        + " ms in queue [" + lane.name + "]")));
+                }
+            }
+        }
+        
+        while (tokens >= 1.0) {
+            Lane lane = nextLane();
+            if (lane == null) {
+                break;
+            }
+            Ticket ticket = lane.queue.poll();
+            if (ticket.cancelled) {
+                continue;
+            }
+            tokens -= 1.0;
+            lane.waitTimer.record(now - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+            signals.add(ticket.sink::success);
+        }
+        
+        long next = Long.MAX_VALUE;
+        for (Lane lane : lanes.values()) {
+            Ticket head = lane.queue.peek();
+            if (head != null) {
+                next = Math.min(next, head.enqueuedAt + lane.maxWaitNanos + 1);
+                next = Math.min(next, now + (long) Math.ceil((1.0 - tokens) / tokensPerNano));
+            }
+        }
+        if (next != Long.MAX_VALUE && (wakeup == null || next < wakeupAt)) {
+            if (wakeup != null) {
+                wakeup.dispose();
+            }
+            wakeupAt = next;
+            wakeup = Schedulers.parallel().schedule(this::onWakeup, Math.max(0, next - now), TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    /**
+     * Smooth weighted round-robin over the lanes that have calls waiting.
+     */
+    private Lane nextLane() {
+        Lane best = null;
+        int total = 0;
+        for (Lane lane : lanes.values()) {
+            if (lane.queue.isEmpty()) {
+                continue;
+            }
+            lane.credit += lane.weight;
+            total += lane.weight;
+            if (best == null || lane.credit > best.credit) {
+                best = lane;
+            }
+        }
+        if (best != null) {
+            best.credit -= total;
+        }
+        return best;
+    }
+    
+    private synchronized double availableTokens() {
+        long now = System.nanoTime();
+        return Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+    }
+    
+    /**
+     * Parses "name=weight:maxWaitMs:capacity,..." in priority order. A max wait at or
+     * past the deadline is lowered to half of it, leaving time for the call itself.
+     */
+    private static Map<String, Lane> parseLanes(String priorities, long deadlineMs, MeterRegistry meterRegistry) {
+        Map<String, Lane> parsed = new LinkedHashMap<>();
+        for (String definition : priorities.split(",")) {
+            String[] parts = definition.trim().split("[=:]");
+            if (parts.length != 4) {
+                if (!definition.isBlank()) {
+                    log.warn("Ignoring priority definition [{}], expected name=weight:maxWaitMs:capacity",
+                        definition.trim());
+                }
+                continue;
+            }
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            long maxWaitMs = Long.parseLong(parts[2].trim());
+            if (maxWaitMs >= deadlineMs) {
+                log.warn("Priority [{}] max wait of {} ms is not below the deadline of {} ms, using {} ms",
+                    name, maxWaitMs, deadlineMs, deadlineMs / 2);
+                maxWaitMs = deadlineMs / 2;
+            }
+            parsed.put(name, new Lane(name, Integer.parseInt(parts[1].trim()), maxWaitMs,
+                Integer.parseInt(parts[3].trim()), meterRegistry));
+        }
+        return parsed;
+    }
+    
+    private static class Ticket {
+        private final MonoSink<Void> sink;
+        private final long enqueuedAt;
+        private volatile boolean cancelled;
+        
+        Ticket(MonoSink<Void> sink, long enqueuedAt) {
+            this.sink = sink;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+    
+    private static class Lane {
+        private final String name;
+        private final int weight;
+        private final long maxWaitNanos;
+        private final int capacity;
+        private final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+        private int credit;
+        
+        private final Timer waitTimer;
+        private final Counter shedExpired;
+        private final Counter shedFull;
+        
+        Lane(String name, int weight, long maxWaitMs, int capacity, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.weight = Math.max(1, weight);
+            this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+            this.capacity = Math.max(1, capacity);
+            
+            this.waitTimer = Timer.builder("analytics.inference.scheduler.wait")
+                .description("Time model calls spent queued for a rate-limit token")
+                .tag("priority", name)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+            this.shedExpired = Counter.builder("analytics.inference.scheduler.shed")
+                .tag("priority", name)
+                .tag("reason", "max_wait")
+                .register(meterRegistry);
+            this.shedFull = Counter.builder("analytics.inference.scheduler.shed")
+                .tag("priority", name)
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+            Gauge.builder("analytics.inference.scheduler.queue.depth", queue, ArrayDeque::size)
+                .tag("priority", name)
+                .register(meterRegistry);
+        }
+    }
+    
+    /**
+     * Raised instead of calling the model when a call is shed by the scheduler.
+     */
+    public static class ShedException extends ModelCallGuard.ModelUnavailableException {
+        public ShedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.analytics.platform.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton over a fixed set of keywords, compiled into a dense
+ * transition table so that matching is one array lookup per character and
+ * allocates nothing.
+ *
+ * Each keyword carries a bit; {@link #match} returns the OR of the bits of every
+ * keyword found anywhere in the text. Matching is case-insensitive.
+ */
+public final class KeywordAutomaton {
+    
+    private final short[] charClass = new short[Character.MAX_VALUE + 1];
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final long[] outputs;
+    
+    /**
+     * @param keywords keyword to the bits it reports when found
+     */
+    public KeywordAutomaton(Map<String, Long> keywords) {
+        // Characters that occur in no keyword share class 0; both cases of a letter share a class
+        int classes = 1;
+        for (String keyword : keywords.keySet()) {
+            for (char c : keyword.toLowerCase(Locale.ROOT).toCharArray()) {
+                if (charClass[c] == 0) {
+                    charClass[c] = (short) classes;
+                    charClass[Character.toUpperCase(c)] = (short) classes;
+                    charClass[Character.toTitleCase(c)] = (short) classes;
+                    classes++;
+                }
+            }
+        }
+        this.alphabetSize = classes;
+        
+        // Trie with goto edges kept in maps while building
+        List<Map<Integer, Integer>> edges = new ArrayList<>();
+        List<Long> output = new ArrayList<>();
+        edges.add(new HashMap<>());
+        output.add(0L);
+        keywords.forEach((keyword, bits) -> {
+            int state = 0;
+            for (char c : keyword.toLowerCase(Locale.ROOT).toCharArray()) {
+                int symbol = charClass[c];
+                Integer target = edges.get(state).get(symbol);
+                if (target == null) {
+                    target = edges.size();
+                    edges.get(state).put(symbol, target);
+                    edges.add(new HashMap<>());
+                    output.add(0L);
+                }
+                state = target;
+            }
+            output.set(state, output.get(state) | bits);
+        });
+        
+        // Breadth-first failure links, folded straight into a full transition table
+        int states = edges.size();
+        this.transitions = new int[states * alphabetSize];
+        this.outputs = new long[states];
+        int[] failure = new int[states];
+        for (int state = 0; state < states; state++) {
+            outputs[state] = output.get(state);
+        }
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            Integer target = edges.get(0).get(symbol);
+            if (target != null) {
+                transitions[symbol] = target;
+                queue.add(target);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] |= outputs[failure[state]];
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                Integer target = edges.get(state).get(symbol);
+                if (target != null) {
+                    failure[target] = transitions[failure[state] * alphabetSize + symbol];
+                    transitions[state * alphabetSize + symbol] = target;
+                    queue.add(target);
+                } else {
+                    transitions[state * alphabetSize + symbol] = transitions[failure[state] * alphabetSize + symbol];
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return the OR of the bits of every keyword occurring in the text
+     */
+    public long match(CharSequence text) {
+        long found = 0L;
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            int symbol = charClass[text.charAt(i)];
+            state = transitions[state * alphabetSize + symbol];
+            found |= outputs[state];
+        }
+        return found;
+    }
+    
+    public int stateCount() {
+        return outputs.length;
+    }
+}
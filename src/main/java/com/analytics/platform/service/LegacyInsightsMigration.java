@@ -0,0 +1,146 @@
+package com.analytics.platform.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves insights written by earlier versions, one row per key in the
+ * analytics_insights table, into the JSON insights column of their result.
+ *
+ * Runs at startup in batches of results, each batch in its own transaction that
+ * fills the column and deletes the rows it came from, so an interrupted
+ * migration picks up where it stopped. Values were stored as strings and stay
+ * strings. With analytics.storage.insights.drop-legacy-table set, the emptied
+ * table is dropped afterwards. For a one-off migration in SQL, see
+ * db/postgres/insights-json-migration.sql.
+ */
+@Component
+@Slf4j
+public class LegacyInsightsMigration implements ApplicationRunner {
+    
+    static final String LEGACY_TABLE = "analytics_insights";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${analytics.storage.insights.migrate-legacy:true}")
+    private boolean enabled;
+    
+    @Value("${analytics.storage.insights.migration-batch-size:500}")
+    private int batchSize;
+    
+    @Value("${analytics.storage.insights.drop-legacy-table:false}")
+    private boolean dropLegacyTable;
+    
+    public LegacyInsightsMigration(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                   ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+    }
+    
+    @Override
+    public void run(ApplicationArguments args) throws MetaDataAccessException {
+        if (!enabled || !legacyTableExists()) {
+            return;
+        }
+        String update = "update analytics_results set insights = " + jsonParameter()
+            + " where id = ? and insights is null";
+        
+        long start = System.nanoTime();
+        int migrated = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> migrateBatch(update));
+            migrated += batch;
+        } while (batch > 0);
+        
+        if (migrated > 0) {
+            log.info("Migrated insights of {} results from {} in {} ms", migrated, LEGACY_TABLE,
+                (System.nanoTime() - start) / 1_000_000);
+        }
+        if (dropLegacyTable) {
+            jdbcTemplate.execute("drop table " + LEGACY_TABLE);
+            log.info("Dropped legacy table {}", LEGACY_TABLE);
+        }
+    }
+    
+    private int migrateBatch(String update) {
+        List<Long> resultIds = jdbcTemplate.queryForList(
+            "select distinct result_id from " + LEGACY_TABLE + " order by result_id limit ?", Long.class, batchSize);
+        if (resultIds.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(",", Collections.nCopies(resultIds.size(), "?"));
+        Map<Long, Map<String, Object>> insightsById = new LinkedHashMap<>();
+        jdbcTemplate.query("select result_id, insight_key, insight_value from " + LEGACY_TABLE
+                + " where result_id in (" + placeholders + ")",
+            rs -> {
+                insightsById.computeIfAbsent(rs.getLong(1), id -> new LinkedHashMap<>())
+                    .put(rs.getString(2), rs.getString(3));
+            },
+            resultIds.toArray());
+        
+        List<Object[]> updates = new ArrayList<>(insightsById.size());
+        insightsById.forEach((id, insights) -> updates.add(new Object[]{toJson(insights), id}));
+        jdbcTemplate.batchUpdate(update, updates);
+        jdbcTemplate.update("delete from " + LEGACY_TABLE + " where result_id in (" + placeholders + ")",
+            resultIds.toArray());
+        return resultIds.size();
+    }
+    
+    private boolean legacyTableExists() throws MetaDataAccessException {
+        return JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(), (DatabaseMetaData metaData) -> {
+            // Unquoted names are stored upper case by H2 and lower case by PostgreSQL
+            for (String name : List.of(LEGACY_TABLE, LEGACY_TABLE.toUpperCase())) {
+                try (ResultSet tables = metaData.getTables(null, null, name, new String[]{"TABLE"})) {
+                    if (tables.next()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+    }
+    
+    /**
+     * Placeholder that makes the database parse the bound string as JSON rather than store a JSON string.
+     */
+    private String jsonParameter() throws MetaDataAccessException {
+        String product = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+            DatabaseMetaData::getDatabaseProductName);
+        if ("PostgreSQL".equals(product)) {
+            return "cast(? as jsonb)";
+        }
+        if ("H2".equals(product)) {
+            return "? format json";
+        }
+        return "?";
+    }
+    
+    private String toJson(Map<String, Object> insights) {
+        try {
+            return objectMapper.writeValueAsString(insights);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize migrated insights", e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.analytics.platform.service;
+
+import ai.djl.MalformedModelException;
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.djl.inference.Predictor;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ModelNotFoundException;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.translate.NoBatchifyTranslator;
+import ai.djl.translate.TranslateException;
+import ai.djl.translate.TranslatorContext;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores text in-process with a sequence-classification model (TorchScript or ONNX
+ * export) loaded through DJL on the CPU, so no network round trip is needed.
+ *
+ * The model directory holds the model file and the matching tokenizer.json.
+ * Predictors are not thread-safe, so a pool of them, sized to the available cores
+ * by default, is shared by a scheduler with the same number of threads. Inputs are
+ * tokenized together, padded to the longest text and run as a single forward pass
+ * of up to maxBatchSize rows.
+ *
+ * Scores are returned as [hate, safe] probabilities, the order AIService expects.
+ */
+@Component
+@ConditionalOnProperty(name = "ai.model.backend", havingValue = "local")
+@Slf4j
+public class LocalInferenceEngine {
+    
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${ai.model.local.path:models/roberta-hate-speech}")
+    private String modelPath;
+    
+    @Value("${ai.model.local.model-name:model}")
+    private String modelName;
+    
+    @Value("${ai.model.local.engine:OnnxRuntime}")
+    private String engine;
+    
+    @Value("${ai.model.local.pool-size:0}")
+    private int poolSize;
+    
+    @Value("${ai.model.local.max-batch-size:32}")
+    private int maxBatchSize;
+    
+    @Value("${ai.model.local.max-length:256}")
+    private int maxLength;
+    
+    @Value("${ai.model.local.hate-label-index:1}")
+    private int hateLabelIndex;
+    
+    private HuggingFaceTokenizer tokenizer;
+    private ZooModel<String[], double[][]> model;
+    private BlockingQueue<Predictor<String[], double[][]>> predictors;
+    private Scheduler scheduler;
+    private Timer forwardLatency;
+    private DistributionSummary forwardBatchSize;
+    
+    public LocalInferenceEngine(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+    
+    @PostConstruct
+    void load() throws IOException, ModelNotFoundException, MalformedModelException {
+        Path directory = Paths.get(modelPath);
+        tokenizer = HuggingFaceTokenizer.builder()
+            .optTokenizerPath(directory.resolve("tokenizer.json"))
+            .optMaxLength(maxLength)
+            .optTruncation(true)
+            .optPadding(true)
+            .build();
+        
+        Criteria<String[], double[][]> criteria = Criteria.builder()
+            .setTypes(String[].class, double[][].class)
+            .optModelPath(directory)
+            .optModelName(modelName)
+            .optEngine(engine)
+            .optTranslator(new ClassificationTranslator())
+            .build();
+        model = criteria.loadModel();
+        
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        predictors = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            predictors.add(model.newPredictor());
+        }
+        scheduler = Schedulers.newParallel("local-inference", size);
+        
+        forwardLatency = Timer.builder("analytics.inference.local.forward.latency")
+            .description("Duration of one batched forward pass of the local model")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        forwardBatchSize = DistributionSummary.builder("analytics.inference.local.forward.batch.size")
+            .description("Number of texts per forward pass of the local model")
+            .register(meterRegistry);
+        
+        log.info("Loaded local {} model from {} with {} predictors", engine, directory, size);
+    }
+    
+    /**
+     * Score the texts on the inference threads, in chunks of at most maxBatchSize.
+     */
+    public Mono<List<double[]>> score(List<String> texts) {
+        return Mono.fromCallable(() -> predict(texts)).subscribeOn(scheduler);
+    }
+    
+    /**
+     * Score the texts on the calling thread.
+     */
+    public List<double[]> predict(List<String> texts) throws TranslateException, InterruptedException {
+        List<double[]> results = new ArrayList<>(texts.size());
+        Predictor<String[], double[][]> predictor = predictors.take();
+        try {
+            for (int from = 0; from < texts.size(); from += maxBatchSize) {
+                String[] chunk = texts.subList(from, Math.min(texts.size(), from + maxBatchSize))
+                    .toArray(new String[0]);
+                long start = System.nanoTime();
+                double[][] scores = predictor.predict(chunk);
+                forwardLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                forwardBatchSize.record(chunk.length);
+                results.addAll(Arrays.asList(scores));
+            }
+        } finally {
+            predictors.add(predictor);
+        }
+        return results;
+    }
+    
+    @PreDestroy
+    void close() {
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+        if (predictors != null) {
+            predictors.forEach(Predictor::close);
+        }
+        if (model != null) {
+            model.close();
+        }
+        if (tokenizer != null) {
+            tokenizer.close();
+        }
+    }
+    
+    /**
+     * Tokenizes a whole batch at once (padded to its longest entry) and turns the
+     * logits into [hate, safe] probabilities per row.
+     */
+    private class ClassificationTranslator implements NoBatchifyTranslator<String[], double[][]> {
+        
+        @Override
+        public NDList processInput(TranslatorContext ctx, String[] texts) {
+            Encoding[] encodings = tokenizer.batchEncode(texts);
+            long[][] ids = new long[encodings.length][];
+            long[][] mask = new long[encodings.length][];
+            for (int i = 0; i < encodings.length; i++) {
+                ids[i] = encodings[i].getIds();
+                mask[i] = encodings[i].getAttentionMask();
+            }
+            NDManager manager = ctx.getNDManager();
+            return new NDList(manager.create(ids), manager.create(mask));
+        }
+        
+        @Override
+        public double[][] processOutput(TranslatorContext ctx, NDList output) {
+            NDArray probabilities = output.get(0).softmax(-1);
+            long labels = probabilities.getShape().get(1);
+            float[] flat = probabilities.toFloatArray();
+            int rows = (int) (flat.length / labels);
+            double[][] scores = new double[rows][];
+            for (int row = 0; row < rows; row++) {
+                double hate = flat[(int) (row * labels + hateLabelIndex)];
+                scores[row] = new double[]{hate, 1.0 - hate};
+            }
+            return scores;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.analytics.platform.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Wraps calls to the remote model so a brownout degrades to the fallback quickly
+ * instead of holding every event for the full HTTP timeout.
+ *
+ * Each call must get a permit from the circuit breaker, must finish within the
+ * per-event deadline, and, when hedging is on, gets a second identical attempt
+ * once the first has run longer than the recent p95 latency; whichever answers
+ * first wins and the other is cancelled. A hedge is a model call of its own, so it
+ * is only sent when the {@link InferenceScheduler} has a token to spare for it.
+ *
+ * The deadline is set once per event (see {@link #startDeadline}) and every call
+ * made for the event, one per chunk and model, gets what is left of it. Calls are
+ * wrapped in {@link #withinDeadline} outside the scheduler, so time spent queued
+ * for a rate-limit token counts as well. A call cut off by the deadline counts as
+ * a failure for the breaker; one cancelled earlier by its caller does not.
+ */
+@Component
+@Slf4j
+public class ModelCallGuard {
+    
+    /** Reactor context key holding the System.nanoTime() by which the event's model calls must be done */
+    public static final String DEADLINE_KEY = ModelCallGuard.class.getName() + ".deadline";
+    
+    private final CircuitBreaker breaker;
+    private final InferenceScheduler scheduler;
+    private final Duration deadline;
+    private final boolean hedgingEnabled;
+    private final LatencyWindow latencies;
+    
+    private final Counter rejected;
+    private final Counter deadlineExceeded;
+    private final Counter hedgesSent;
+    private final Counter hedgesSkipped;
+    private final Counter hedgeWins;
+    private final Counter primaryWins;
+    
+    public ModelCallGuard(MeterRegistry meterRegistry, InferenceScheduler scheduler,
+                          @Value("${ai.model.deadline-ms:3000}") long deadlineMs,
+                          @Value("${ai.model.breaker.window-size:50}") int windowSize,
+                          @Value("${ai.model.breaker.minimum-calls:20}") int minimumCalls,
+                          @Value("${ai.model.breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                          @Value("${ai.model.breaker.slow-call-rate-threshold:0.8}") double slowCallRateThreshold,
+                          @Value("${ai.model.breaker.slow-call-ms:2000}") long slowCallMs,
+                          @Value("${ai.model.breaker.open-ms:30000}") long openMs,
+                          @Value("${ai.model.breaker.half-open-probes:3}") int halfOpenProbes,
+                          @Value("${ai.model.hedging.enabled:false}") boolean hedgingEnabled,
+                          @Value("${ai.model.hedging.min-samples:100}") int hedgingMinSamples) {
+        this.breaker = new CircuitBreaker("remote-model", windowSize, minimumCalls, failureRateThreshold,
+            slowCallRateThreshold, Duration.ofMillis(slowCallMs), Duration.ofMillis(openMs), halfOpenProbes);
+        this.scheduler = scheduler;
+        this.deadline = Duration.ofMillis(deadlineMs);
+        this.hedgingEnabled = hedgingEnabled;
+        this.latencies = new LatencyWindow(1024, hedgingMinSamples);
+        
+        this.rejected = Counter.builder("analytics.inference.breaker.rejected")
+            .description("Model calls refused because the breaker was open")
+            .register(meterRegistry);
+        this.deadlineExceeded = Counter.builder("analytics.inference.deadline.exceeded")
+            .description("Model calls abandoned at, or not started before, the per-event deadline")
+            .register(meterRegistry);
+        this.hedgesSent = Counter.builder("analytics.inference.hedge.sent").register(meterRegistry);
+        this.hedgesSkipped = Counter.builder("analytics.inference.hedge.skipped")
+            .description("Hedges not sent because the rate limit had no token to spare")
+            .register(meterRegistry);
+        this.hedgeWins = Counter.builder("analytics.inference.hedge.wins")
+            .tag("winner", "hedge")
+            .register(meterRegistry);
+        this.primaryWins = Counter.builder("analytics.inference.hedge.wins")
+            .tag("winner", "primary")
+            .register(meterRegistry);
+        Gauge.builder("analytics.inference.breaker.state", breaker, b -> b.getState().ordinal())
+            .description("0 = closed, 1 = half-open, 2 = open")
+            .register(meterRegistry);
+        Gauge.builder("analytics.inference.hedge.win.ratio", this,
+                g -> g.hedgesSent.count() == 0 ? 0.0 : g.hedgeWins.count() / g.hedgesSent.count())
+            .description("Share of hedged calls answered by the second attempt")
+            .register(meterRegistry);
+        Gauge.builder("analytics.inference.latency.p95", latencies, LatencyWindow::p95Millis)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Context entry that starts the deadline of one event, for use with contextWrite
+     * around everything that scores it. The deadline starts at subscription.
+     */
+    public Function<Context, Context> startDeadline() {
+        return context -> context.put(DEADLINE_KEY, System.nanoTime() + deadline.toNanos());
+    }
+    
+    /**
+     * Fail the call with a TimeoutException when the event's deadline passes, or at
+     * once when it already has. Without a deadline in the context the call gets a
+     * whole one of its own.
+     */
+    public <T> Mono<T> withinDeadline(Mono<T> call) {
+        return Mono.deferContextual(context -> {
+            long deadlineAt = context.getOrDefault(DEADLINE_KEY, System.nanoTime() + deadline.toNanos());
+            long remainingNanos = deadlineAt - System.nanoTime();
+            if (remainingNanos <= 0) {
+                deadlineExceeded.increment();
+                return Mono.<T>error(new TimeoutException("Deadline of " + deadline.toMillis()
+                    + " ms passed before the model was called"));
+            }
+            return call
+                .timeout(Duration.ofNanos(remainingNanos))
+                .doOnError(TimeoutException.class, e -> deadlineExceeded.increment())
+                .contextWrite(inner -> inner.put(DEADLINE_KEY, deadlineAt));
+        });
+    }
+    
+    /**
+     * Run the call under the breaker and the event's deadline. Fails with
+     * {@link ModelUnavailableException} when the breaker is open and with a
+     * TimeoutException when the deadline passes.
+     *
+     * @param hedge whether a second attempt may be sent for this call
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> attempt, boolean hedge) {
+        return Mono.deferContextual(context -> {
+            if (!context.hasKey(DEADLINE_KEY)) {
+                return withinDeadline(execute(attempt, hedge));
+            }
+            long deadlineAt = context.get(DEADLINE_KEY);
+            if (!breaker.tryAcquire()) {
+                rejected.increment();
+                return Mono.error(new ModelUnavailableException("Circuit breaker is open"));
+            }
+            long start = System.nanoTime();
+            AtomicBoolean reported = new AtomicBoolean();
+            Mono<T> call = hedge && hedgingEnabled ? hedged(attempt) : timed(attempt.get());
+            return call
+                .doOnSuccess(value -> {
+                    if (reported.compareAndSet(false, true)) {
+                        breaker.onSuccess(System.nanoTime() - start);
+                    }
+                })
+                .doOnError(e -> {
+                    if (reported.compareAndSet(false, true)) {
+                        breaker.onError(System.nanoTime() - start);
+                    }
+                })
+                .doOnCancel(() -> {
+                    if (reported.compareAndSet(false, true)) {
+                        long now = System.nanoTime();
+                        if (now - deadlineAt >= 0) {
+                            // Cut off by the deadline: the model was too slow
+                            breaker.onError(now - start);
+                        } else {
+                            // The caller gave up (an early exit, say), which says nothing about the model
+                            breaker.release();
+                        }
+                    }
+                });
+        });
+    }
+    
+    public CircuitBreaker.State getBreakerState() {
+        return breaker.getState();
+    }
+    
+    private <T> Mono<T> hedged(Supplier<Mono<T>> attempt) {
+        long p95Nanos = latencies.p95Nanos();
+        if (p95Nanos <= 0) {
+            return timed(attempt.get());
+        }
+        Mono<T> primary = timed(attempt.get()).doOnNext(value -> primaryWins.increment());
+        Mono<T> backup = Mono.delay(Duration.ofNanos(p95Nanos))
+            .then(Mono.defer(() -> {
+                if (!scheduler.tryAcquire()) {
+                    // Leave the primary to answer on its own; firstWithValue ignores an empty backup
+                    hedgesSkipped.increment();
+                    return Mono.<T>empty();
+                }
+                hedgesSent.increment();
+                return timed(attempt.get());
+            }))
+            .doOnNext(value -> hedgeWins.increment());
+        return Mono.firstWithValue(primary, backup);
+    }
+    
+    private <T> Mono<T> timed(Mono<T> attempt) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return attempt.doOnNext(value -> latencies.record(System.nanoTime() - start));
+        });
+    }
+    
+    /**
+     * Raised instead of calling the model while the breaker is open.
+     */
+    public static class ModelUnavailableException extends RuntimeException {
+        public ModelUnavailableException(String message) {
+            super(message);
+        }
+    }
+    
+    /**
+     * Ring buffer of recent successful call latencies. The p95 is recomputed every
+     * refreshEvery samples rather than on each read.
+     */
+    static class LatencyWindow {
+        private final long[] samples;
+        private final int minSamples;
+        private final int refreshEvery;
+        private int count;
+        private int next;
+        private volatile long p95Nanos;
+        
+        LatencyWindow(int size, int minSamples) {
+            this.samples = new long[size];
+            this.minSamples = Math.min(minSamples, size);
+            this.refreshEvery = Math.max(1, size / 16);
+        }
+        
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            if (count >= minSamples && next % refreshEvery == 0) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                p95Nanos = sorted[(int) Math.ceil(count * 0.95) - 1];
+            }
+        }
+        
+        long p95Nanos() {
+            return p95Nanos;
+        }
+        
+        double p95Millis() {
+            return p95Nanos / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.analytics.platform.service;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Registry of scoring models and the dispatch table from event type to models.
+ *
+ * Routes are configured as "type=model|model,type=..." in ai.router.routes; types
+ * without a route use ai.router.default-models, and a type routed to nothing is
+ * scored by the fallback. The table is rebuilt whenever a model is registered,
+ * so routing an event is a single map lookup.
+ *
+ * When an event has several models they run in parallel, and the scores of the
+ * models that answered are combined with the configured {@link EnsembleRule}.
+ * The router sets no time limit of its own: a model that is not done by the
+ * {@link ModelCallGuard} deadline counts as timed out.
+ */
+@Component
+public class ModelRouter {
+    
+    public enum EnsembleRule {
+        /** Average of the risk scores */
+        MEAN,
+        /** Highest risk score: flag when any model flags */
+        MAX,
+        /** Share of models whose risk score is above 0.5 */
+        VOTE
+    }
+    
+    private final Map<String, ScoringModel> models = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> routes;
+    private final List<String> defaultRoute;
+    private final EnsembleRule ensembleRule;
+    
+    private volatile Map<String, List<ScoringModel>> dispatchTable = Collections.emptyMap();
+    private volatile List<ScoringModel> defaultModels = Collections.emptyList();
+    
+    public ModelRouter(ObjectProvider<ScoringModel> scoringModels,
+                       @Value("${ai.router.routes:}") String routes,
+                       @Value("${ai.router.default-models:moderation}") String defaultModels,
+                       @Value("${ai.router.ensemble-rule:MEAN}") EnsembleRule ensembleRule) {
+        this.routes = parseRoutes(routes);
+        this.defaultRoute = parseModelList(defaultModels);
+        this.ensembleRule = ensembleRule;
+        scoringModels.orderedStream().forEach(this::register);
+    }
+    
+    public synchronized void register(ScoringModel model) {
+        models.put(model.getName(), model);
+        rebuildDispatchTable();
+    }
+    
+    /**
+     * @return the models for this event type, empty when it should use the fallback
+     */
+    public List<ScoringModel> route(String eventType) {
+        if (eventType == null) {
+            return defaultModels;
+        }
+        return dispatchTable.getOrDefault(eventType.toLowerCase(Locale.ROOT), defaultModels);
+    }
+    
+    /**
+     * Score the text with every model in parallel and combine the answers.
+     * Completes empty when no model answered in time.
+     */
+    public Mono<EnsembleResult> score(List<ScoringModel> selected, String content) {
+        return Flux.fromIterable(selected)
+            .flatMap(model -> scoreOne(model, content), Math.max(1, selected.size()))
+            .collectList()
+            .flatMap(outcomes -> {
+                List<double[]> answered = new ArrayList<>();
+                for (ModelOutcome outcome : outcomes) {
+                    if (outcome.scores() != null) {
+                        answered.add(outcome.scores());
+                    }
+                }
+                if (answered.isEmpty()) {
+                    return Mono.empty();
+                }
+                return Mono.just(new EnsembleResult(combine(answered), outcomes, ensembleRule));
+            });
+    }
+    
+    private Mono<ModelOutcome> scoreOne(ScoringModel model, String content) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return model.score(content)
+                .map(scores -> new ModelOutcome(model.getName(), "ok", elapsedMs(start), scores))
+                .switchIfEmpty(Mono.fromSupplier(
+                    () -> new ModelOutcome(model.getName(), "no_result", elapsedMs(start), null)))
+                .onErrorResume(e -> Mono.just(new ModelOutcome(model.getName(), status(e), elapsedMs(start), null)));
+        });
+    }
+    
+    private double[] combine(List<double[]> answered) {
+        double risk;
+        switch (ensembleRule) {
+            case MAX:
+                risk = answered.stream().mapToDouble(scores -> scores[0]).max().orElse(0.0);
+                break;
+            case VOTE:
+                risk = (double) answered.stream().filter(scores -> scores[0] > 0.5).count() / answered.size();
+                break;
+            case MEAN:
+            default:
+                risk = answered.stream().mapToDouble(scores -> scores[0]).average().orElse(0.0);
+                break;
+        }
+        return new double[]{risk, 1.0 - risk};
+    }
+    
+    private void rebuildDispatchTable() {
+        Map<String, List<ScoringModel>> table = new HashMap<>();
+        routes.forEach((eventType, names) -> table.put(eventType, resolve(names)));
+        dispatchTable = table;
+        defaultModels = resolve(defaultRoute);
+    }
+    
+    private List<ScoringModel> resolve(List<String> names) {
+        List<ScoringModel> resolved = new ArrayList<>(names.size());
+        for (String name : names) {
+            ScoringModel model = models.get(name);
+            if (model != null) {
+                resolved.add(model);
+            }
+        }
+        return List.copyOf(resolved);
+    }
+    
+    private static Map<String, List<String>> parseRoutes(String routes) {
+        Map<String, List<String>> parsed = new LinkedHashMap<>();
+        if (routes == null || routes.isBlank()) {
+            return parsed;
+        }
+        for (String route : routes.split(",")) {
+            String[] parts = route.split("=", 2);
+            String eventType = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (!eventType.isEmpty()) {
+                parsed.put(eventType, parseModelList(parts.length > 1 ? parts[1] : ""));
+            }
+        }
+        return parsed;
+    }
+    
+    private static List<String> parseModelList(String names) {
+        List<String> parsed = new ArrayList<>();
+        for (String name : names.split("\\|")) {
+            if (!name.isBlank()) {
+                parsed.add(name.trim());
+            }
+        }
+        return parsed;
+    }
+    
+    private static String status(Throwable e) {
+        if (e instanceof TimeoutException) {
+            return "timeout";
+        }
+        return e instanceof InferenceScheduler.ShedException ? "shed" : "error";
+    }
+    
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+    
+    /**
+     * What one model contributed: status is ok, no_result, timeout, shed or error.
+     */
+    public record ModelOutcome(String model, String status, long latencyMs, double[] scores) {
+    }
+    
+    public record EnsembleResult(double[] scores, List<ModelOutcome> outcomes, EnsembleRule rule) {
+        
+        /**
+         * Insight entries describing which models answered and how long each took.
+         */
+        public Map<String, Object> toInsights() {
+            List<Map<String, Object>> models = new ArrayList<>(outcomes.size());
+            for (ModelOutcome outcome : outcomes) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("name", outcome.model());
+                entry.put("status", outcome.status());
+                entry.put("latency_ms", outcome.latencyMs());
+                if (outcome.scores() != null) {
+                    entry.put("risk_score", outcome.scores()[0]);
+                }
+                models.add(entry);
+            }
+            Map<String, Object> insights = new HashMap<>();
+            insights.put("models", models);
+            insights.put("ensemble_rule", rule.name().toLowerCase(Locale.ROOT));
+            return insights;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.analytics.platform.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Direct-mapped table of score vectors in a single direct ByteBuffer, used as the
+ * second tier of {@link InferenceResultCache}. Every key maps to exactly one slot
+ * and a new entry simply overwrites whatever was there, so there is no per-entry
+ * object on the heap and no eviction bookkeeping, at the cost of collisions.
+ *
+ * Slot layout (64 bytes): key high and low words, expiry in epoch millis
+ * (0 = empty), score count, padding, then up to {@link #MAX_SCORES} doubles.
+ */
+public final class OffHeapScoreTable {
+    
+    public static final int MAX_SCORES = 4;
+    
+    private static final int SLOT_BYTES = 64;
+    private static final int KEY_HI = 0;
+    private static final int KEY_LO = 8;
+    private static final int EXPIRES_AT = 16;
+    private static final int COUNT = 24;
+    private static final int SCORES = 32;
+    private static final int MAX_SLOTS = 1 << 24;
+    private static final int LOCK_STRIPES = 1024;
+    
+    private final ByteBuffer buffer;
+    private final int mask;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    
+    public OffHeapScoreTable(int requestedSlots) {
+        int slots = Integer.highestOneBit(Math.max(1, Math.min(requestedSlots, MAX_SLOTS)));
+        this.buffer = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+        this.mask = slots - 1;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+    
+    /**
+     * @return the stored scores, or null when the slot holds another key or has expired
+     */
+    public double[] get(long keyHi, long keyLo, long nowMillis) {
+        int slot = slotOf(keyHi, keyLo);
+        int base = slot * SLOT_BYTES;
+        synchronized (locks[slot & (LOCK_STRIPES - 1)]) {
+            long expiresAt = buffer.getLong(base + EXPIRES_AT);
+            if (expiresAt == 0 || expiresAt <= nowMillis
+                    || buffer.getLong(base + KEY_HI) != keyHi || buffer.getLong(base + KEY_LO) != keyLo) {
+                return null;
+            }
+            int count = buffer.getInt(base + COUNT);
+            double[] scores = new double[count];
+            for (int i = 0; i < count; i++) {
+                scores[i] = buffer.getDouble(base + SCORES + i * Double.BYTES);
+            }
+            return scores;
+        }
+    }
+    
+    /**
+     * Store the scores, replacing the current occupant of the slot.
+     * Vectors longer than {@link #MAX_SCORES} are not stored.
+     */
+    public boolean put(long keyHi, long keyLo, double[] scores, long expiresAtMillis) {
+        if (scores.length > MAX_SCORES) {
+            return false;
+        }
+        int slot = slotOf(keyHi, keyLo);
+        int base = slot * SLOT_BYTES;
+        synchronized (locks[slot & (LOCK_STRIPES - 1)]) {
+            buffer.putLong(base + KEY_HI, keyHi);
+            buffer.putLong(base + KEY_LO, keyLo);
+            buffer.putLong(base + EXPIRES_AT, expiresAtMillis);
+            buffer.putInt(base + COUNT, scores.length);
+            for (int i = 0; i < scores.length; i++) {
+                buffer.putDouble(base + SCORES + i * Double.BYTES, scores[i]);
+            }
+            return true;
+        }
+    }
+    
+    public void clear() {
+        for (int slot = 0; slot <= mask; slot++) {
+            synchronized (locks[slot & (LOCK_STRIPES - 1)]) {
+                buffer.putLong(slot * SLOT_BYTES + EXPIRES_AT, 0L);
+            }
+        }
+    }
+    
+    public long capacityBytes() {
+        return buffer.capacity();
+    }
+    
+    private int slotOf(long keyHi, long keyLo) {
+        // Keys are already uniformly distributed digest bits
+        return (int) (keyHi ^ keyLo) & mask;
+    }
+}
@@ -0,0 +1,107 @@
+package com.analytics.platform.service;
+
+import com.analytics.platform.model.AnalyticsResult;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Tells waiting clients when a result has been stored, so they need neither poll
+ * nor hold a thread while they wait.
+ *
+ * Listeners wait either for one eventId, and are dropped once it completes, or
+ * for every result of one event userId. {@link ResultStorageService} signals
+ * after each commit, on its write thread, so listeners must hand off rather than
+ * block. Only results stored by this instance are signalled; a client waiting
+ * here for an event stored elsewhere times out and reads it on its next request.
+ */
+@Component
+@Slf4j
+public class ResultCompletionRegistry {
+    
+    private final Map<String, List<Consumer<AnalyticsResult>>> eventListeners = new ConcurrentHashMap<>();
+    private final Map<String, List<Consumer<AnalyticsResult>>> userListeners = new ConcurrentHashMap<>();
+    private final AtomicInteger eventListenerCount = new AtomicInteger();
+    private final AtomicInteger userListenerCount = new AtomicInteger();
+    
+    public ResultCompletionRegistry(MeterRegistry meterRegistry) {
+        Gauge.builder("analytics.results.waiters", eventListenerCount, AtomicInteger::get)
+            .description("Requests waiting for the result of one event")
+            .register(meterRegistry);
+        Gauge.builder("analytics.results.subscribers", userListenerCount, AtomicInteger::get)
+            .description("Streams receiving the results of one user")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Call the listener once, when the result of this event is stored. Register
+     * before checking whether the result already exists, so it cannot be missed.
+     */
+    public Registration onResult(String eventId, Consumer<AnalyticsResult> listener) {
+        return register(eventListeners, eventListenerCount, eventId, listener);
+    }
+    
+    /**
+     * Call the listener for every result stored for this event userId until cancelled.
+     */
+    public Registration onUserResults(String userId, Consumer<AnalyticsResult> listener) {
+        return register(userListeners, userListenerCount, userId, listener);
+    }
+    
+    public void completed(AnalyticsResult result) {
+        List<Consumer<AnalyticsResult>> waiting = eventListeners.remove(result.getEventId());
+        if (waiting != null) {
+            eventListenerCount.addAndGet(-waiting.size());
+            notify(waiting, result);
+        }
+        if (result.getUserId() != null) {
+            List<Consumer<AnalyticsResult>> subscribed = userListeners.get(result.getUserId());
+            if (subscribed != null) {
+                notify(subscribed, result);
+            }
+        }
+    }
+    
+    private static void notify(List<Consumer<AnalyticsResult>> listeners, AnalyticsResult result) {
+        for (Consumer<AnalyticsResult> listener : listeners) {
+            try {
+                listener.accept(result);
+            } catch (RuntimeException e) {
+                log.warn("Result listener failed for event [{}]", result.getEventId(), e);
+            }
+        }
+    }
+    
+    private static Registration register(Map<String, List<Consumer<AnalyticsResult>>> listeners,
+                                         AtomicInteger count, String key,
+                                         Consumer<AnalyticsResult> listener) {
+        listeners.compute(key, (k, registered) -> {
+            List<Consumer<AnalyticsResult>> list = registered != null ? registered : new CopyOnWriteArrayList<>();
+            list.add(listener);
+            return list;
+        });
+        count.incrementAndGet();
+        return () -> listeners.computeIfPresent(key, (k, registered) -> {
+            if (registered.remove(listener)) {
+                count.decrementAndGet();
+            }
+            return registered.isEmpty() ? null : registered;
+        });
+    }
+    
+    /**
+     * Handle to stop listening; safe to call more than once and after completion.
+     */
+    @FunctionalInterface
+    public interface Registration {
+        void cancel();
+    }
+}
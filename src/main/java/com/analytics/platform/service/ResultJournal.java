@@ -0,0 +1,684 @@
+package com.analytics.platform.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Local append-only journal that results are written to before the database.
+ *
+ * Records go into memory-mapped segment files of segment-bytes each, named by
+ * the journal position they start at. A record is its length, a CRC32C of its
+ * payload and append time, the append time and the payload; the length is
+ * written last, so a reader never sees half a record. When a record does not
+ * fit, a roll marker ends the segment and a new one is created. How an append
+ * is made durable follows fsync-policy: ALWAYS forces the mapped pages before
+ * the append returns, appends that wait together sharing one force; INTERVAL
+ * forces every fsync-interval-ms, so a crash of the process loses nothing but a
+ * crash of the machine loses up to that long; NEVER leaves it to the OS.
+ *
+ * One drainer thread reads the records in order and hands them to the sink in
+ * batches of up to drain-batch-size. After each batch the drained position is
+ * written to a small checkpoint file and segments that are fully drained are
+ * deleted. A batch that fails is retried record by record: a record is skipped,
+ * logged and counted only if the sink's skip predicate accepts its failure (a
+ * result the database already holds, say); any other failure stops the drain
+ * and it is retried with backoff, so the journal simply grows while the
+ * database is down. Once more than max-pending-bytes wait to be drained, an
+ * append waits for room outside the append lock, for up to max-pending-wait-ms;
+ * while the drain is failing it fails at once instead, so a database outage
+ * fails saves rather than holding every consumer thread.
+ *
+ * At startup the journal is read from the checkpoint to the first record that
+ * is missing or fails its checksum, which becomes the end of the journal, and
+ * everything after it is cleared. Records drained just before a crash but after
+ * the last checkpoint are handed to the sink again.
+ */
+@Component
+@Slf4j
+public class ResultJournal {
+    
+    public enum FsyncPolicy { ALWAYS, INTERVAL, NEVER }
+    
+    /**
+     * Writes drained records, all of them or none.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void write(List<byte[]> records);
+    }
+    
+    // length, CRC32C of append time and payload, append time in epoch millis
+    private static final int HEADER_BYTES = 16;
+    private static final int ROLL_MARKER = -1;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT_FILE = "drained.checkpoint";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long MIN_RETRY_MS = 100;
+    
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+    private final int drainBatchSize;
+    private final long maxPendingBytes;
+    private final long maxPendingWaitNanos;
+    private final long maxRetryMs;
+    
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Object appendLock = new Object();
+    private final Object forceLock = new Object();
+    private final AtomicLong pendingRecords = new AtomicLong();
+    private final ReentrantLock spaceLock = new ReentrantLock();
+    private final Condition spaceFreed = spaceLock.newCondition();
+    
+    // Guarded by appendLock
+    private Segment head;
+    private volatile long writePosition;
+    // Guarded by forceLock
+    private long forcedPosition;
+    // Written by the drainer only
+    private volatile long drainedPosition;
+    private volatile long oldestPendingAt;
+    private volatile boolean drainFailing;
+    private MappedByteBuffer checkpoint;
+    // Bytes of appends let in but not yet written; guarded by spaceLock
+    private long reservedBytes;
+    
+    private volatile boolean running;
+    private Thread drainer;
+    private ScheduledExecutorService flusher;
+    
+    private final Timer appendLatency;
+    private final Timer fsyncLatency;
+    private final DistributionSummary drainBatchSizes;
+    private final Counter drainFailures;
+    private final Counter skippedRecords;
+    private final Counter rejectedAppends;
+    
+    public ResultJournal(MeterRegistry meterRegistry,
+                         @Value("${analytics.storage.journal.enabled:false}") boolean enabled,
+                         @Value("${analytics.storage.journal.dir:data/journal}") Path directory,
+                         @Value("${analytics.storage.journal.segment-bytes:67108864}") int segmentBytes,
+                         @Value("${analytics.storage.journal.fsync-policy:INTERVAL}") FsyncPolicy fsyncPolicy,
+                         @Value("${analytics.storage.journal.fsync-interval-ms:100}") long fsyncIntervalMs,
+                         @Value("${analytics.storage.journal.drain-batch-size:500}") int drainBatchSize,
+                         @Value("${analytics.storage.journal.max-pending-bytes:1073741824}") long maxPendingBytes,
+                         @Value("${analytics.storage.journal.max-pending-wait-ms:5000}") long maxPendingWaitMs,
+                         @Value("${analytics.storage.journal.drain-retry-max-ms:30000}") long maxRetryMs)
+            throws IOException {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentBytes = Math.max(HEADER_BYTES * 64, segmentBytes);
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMs = Math.max(1, fsyncIntervalMs);
+        this.drainBatchSize = Math.max(1, drainBatchSize);
+        this.maxPendingBytes = Math.max(this.segmentBytes, maxPendingBytes);
+        this.maxPendingWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxPendingWaitMs));
+        this.maxRetryMs = Math.max(MIN_RETRY_MS, maxRetryMs);
+        
+        this.appendLatency = Timer.builder("analytics.journal.append.latency")
+            .description("Time to append results to the journal, including the force under fsync-policy ALWAYS")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.fsyncLatency = Timer.builder("analytics.journal.fsync.latency")
+            .description("Time to force journal pages to disk")
+            .register(meterRegistry);
+        this.drainBatchSizes = DistributionSummary.builder("analytics.journal.drain.batch.size")
+            .description("Records per batch drained into the database")
+            .register(meterRegistry);
+        this.drainFailures = Counter.builder("analytics.journal.drain.failures")
+            .description("Drain attempts that failed and will be retried")
+            .register(meterRegistry);
+        this.skippedRecords = Counter.builder("analytics.journal.skipped")
+            .description("Journal records dropped as unreadable or already in the database")
+            .register(meterRegistry);
+        this.rejectedAppends = Counter.builder("analytics.journal.append.rejected")
+            .description("Appends failed because max-pending-bytes were waiting to be drained")
+            .register(meterRegistry);
+        Gauge.builder("analytics.journal.drain.lag.bytes", this, journal -> journal.writePosition
+                - journal.drainedPosition)
+            .description("Journal bytes not yet drained into the database")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("analytics.journal.drain.lag.records", pendingRecords, AtomicLong::get)
+            .description("Journal records not yet drained into the database")
+            .register(meterRegistry);
+        Gauge.builder("analytics.journal.drain.lag.seconds", this, journal -> journal.oldestPendingAt == 0
+                ? 0 : (System.currentTimeMillis() - journal.oldestPendingAt) / 1000.0)
+            .description("Age of the oldest record not yet drained into the database")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        Gauge.builder("analytics.journal.segments", segments, Map::size)
+            .description("Journal segment files on disk")
+            .register(meterRegistry);
+        
+        if (enabled) {
+            recover();
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Start draining into the sink. A record it fails with is skipped if
+     * {@code skippable} holds for the record and the failure; other failures are retried.
+     */
+    public synchronized void start(Sink sink, BiPredicate<byte[], RuntimeException> skippable) {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        drainer = new Thread(() -> drain(sink, skippable), "result-journal-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "result-journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::forceAll, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        log.info("Result journal in {}: {} pending records from position {}, fsync {}", directory,
+            pendingRecords.get(), drainedPosition, fsyncPolicy);
+    }
+    
+    /**
+     * Append records and return once they are durable as fsync-policy defines.
+     * Waits while more than max-pending-bytes wait to be drained.
+     *
+     * @throws IllegalArgumentException if a record does not fit a segment
+     * @throws IllegalStateException if there is no room for the records within
+     *                               max-pending-wait-ms, or none while the drain is failing
+     */
+    public void append(List<byte[]> payloads) {
+        long start = System.nanoTime();
+        long bytes = 0;
+        for (byte[] payload : payloads) {
+            if (HEADER_BYTES + payload.length > segmentBytes) {
+                throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit a journal "
+                    + "segment of " + segmentBytes + " bytes");
+            }
+            bytes += HEADER_BYTES + payload.length;
+        }
+        reserve(bytes);
+        long end;
+        try {
+            synchronized (appendLock) {
+                for (byte[] payload : payloads) {
+                    appendOne(payload);
+                }
+                end = writePosition;
+            }
+        } finally {
+            spaceLock.lock();
+            try {
+                reservedBytes -= bytes;
+            } finally {
+                spaceLock.unlock();
+            }
+        }
+        if (drainer != null) {
+            LockSupport.unpark(drainer);
+        }
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            force(end);
+        }
+        appendLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Stop draining, after waiting up to the timeout for the pending records to be
+     * drained, and force what was written to disk.
+     */
+    public synchronized void close(Duration timeout) {
+        if (!running) {
+            return;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (drainedPosition < writePosition && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        forceAll();
+        if (drainedPosition < writePosition) {
+            log.warn("Result journal closed with {} records not drained, they are drained at the next start",
+                pendingRecords.get());
+        }
+    }
+    
+    /**
+     * Wait until these bytes fit under max-pending-bytes, counting those other
+     * appends have been let in to write, and claim them. A batch larger than the
+     * limit is let in once nothing else is pending.
+     */
+    private void reserve(long bytes) {
+        long deadline = System.nanoTime() + maxPendingWaitNanos;
+        spaceLock.lock();
+        try {
+            while (true) {
+                long pending = writePosition - drainedPosition + reservedBytes;
+                if (pending == 0 || pending + bytes <= maxPendingBytes) {
+                    reservedBytes += bytes;
+                    return;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (drainFailing || remaining <= 0) {
+                    rejectedAppends.increment();
+                    throw new IllegalStateException("Result journal is full: " + pending + " bytes wait to be "
+                        + (drainFailing ? "drained and the drain is failing" : "drained"));
+                }
+                spaceFreed.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for room in the result journal", e);
+        } finally {
+            spaceLock.unlock();
+        }
+    }
+    
+    private void signalSpace() {
+        spaceLock.lock();
+        try {
+            spaceFreed.signalAll();
+        } finally {
+            spaceLock.unlock();
+        }
+    }
+    
+    private void appendOne(byte[] payload) {
+        int recordBytes = HEADER_BYTES + payload.length;
+        int offset = (int) (writePosition - head.base);
+        if (offset + recordBytes > head.capacity) {
+            if (head.capacity - offset >= Integer.BYTES) {
+                head.buffer.putInt(offset, ROLL_MARKER);
+            }
+            long nextBase = head.base + head.capacity;
+            head = openSegment(nextBase, true);
+            writePosition = nextBase;
+            offset = 0;
+        }
+        long appendedAt = System.currentTimeMillis();
+        MappedByteBuffer buffer = head.buffer;
+        buffer.putLong(offset + 8, appendedAt);
+        buffer.put(offset + HEADER_BYTES, payload);
+        buffer.putInt(offset + 4, checksum(appendedAt, payload));
+        buffer.putInt(offset, payload.length);
+        writePosition += recordBytes;
+        if (pendingRecords.getAndIncrement() == 0) {
+            oldestPendingAt = appendedAt;
+        }
+    }
+    
+    private void drain(Sink sink, BiPredicate<byte[], RuntimeException> skippable) {
+        long retryMs = MIN_RETRY_MS;
+        while (running || drainedPosition < writePosition) {
+            List<Record> batch = read(drainedPosition, writePosition);
+            if (batch.isEmpty()) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            int drained = write(sink, skippable, batch);
+            if (drained > 0) {
+                advance(batch.get(drained - 1).end, drained, drained < batch.size() ? batch.get(drained) : null);
+                retryMs = MIN_RETRY_MS;
+            }
+            if (drainFailing != drained < batch.size()) {
+                // Appends waiting for room fail at once while the drain fails, and wait again once it recovers
+                drainFailing = drained < batch.size();
+                signalSpace();
+            }
+            if (drained < batch.size()) {
+                drainFailures.increment();
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(retryMs));
+                retryMs = Math.min(retryMs * 2, maxRetryMs);
+            }
+        }
+    }
+    
+    /**
+     * @return how many records of the batch, from the first, are done with
+     */
+    private int write(Sink sink, BiPredicate<byte[], RuntimeException> skippable, List<Record> batch) {
+        drainBatchSizes.record(batch.size());
+        try {
+            sink.write(batch.stream().map(Record::payload).toList());
+            return batch.size();
+        } catch (RuntimeException batchFailure) {
+            if (batch.size() == 1) {
+                return skip(batch.get(0), batchFailure, skippable) ? 1 : 0;
+            }
+            log.warn("Draining {} journal records failed, retrying them one by one: {}", batch.size(),
+                batchFailure.toString());
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    sink.write(List.of(batch.get(i).payload()));
+                } catch (RuntimeException e) {
+                    if (!skip(batch.get(i), e, skippable)) {
+                        return i;
+                    }
+                }
+            }
+            return batch.size();
+        }
+    }
+    
+    private boolean skip(Record record, RuntimeException failure, BiPredicate<byte[], RuntimeException> skippable) {
+        if (!skippable.test(record.payload(), failure)) {
+            log.warn("Draining the journal at position {} failed, will retry: {}", record.start(), failure.toString());
+            return false;
+        }
+        log.error("Skipping journal record at position {}", record.start(), failure);
+        skippedRecords.increment();
+        return true;
+    }
+    
+    private void advance(long position, int records, Record next) {
+        drainedPosition = position;
+        oldestPendingAt = next != null ? next.appendedAt() : 0;
+        pendingRecords.addAndGet(-records);
+        signalSpace();
+        checkpoint.putLong(0, position);
+        checkpoint.putLong(Long.BYTES, ~position);
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            checkpoint.force();
+        }
+        // Segments wholly before the drained position are no longer needed
+        Map.Entry<Long, Segment> drainedSegment = segments.floorEntry(position);
+        if (drainedSegment != null) {
+            synchronized (forceLock) {
+                for (Segment segment : List.copyOf(segments.headMap(drainedSegment.getKey()).values())) {
+                    segments.remove(segment.base);
+                    segment.delete();
+                }
+            }
+        }
+        if (oldestPendingAt == 0 && pendingRecords.get() > 0) {
+            // Appended after the batch was read
+            List<Record> following = read(position, writePosition, 1);
+            oldestPendingAt = following.isEmpty() ? 0 : following.get(0).appendedAt();
+        }
+    }
+    
+    private List<Record> read(long from, long to) {
+        return read(from, to, drainBatchSize);
+    }
+    
+    /**
+     * Records between two positions, both of which fall between records.
+     */
+    private List<Record> read(long from, long to, int max) {
+        List<Record> records = new ArrayList<>();
+        long position = from;
+        while (position < to && records.size() < max) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+            if (entry == null) {
+                break;
+            }
+            Segment segment = entry.getValue();
+            int offset = (int) (position - segment.base);
+            if (segment.capacity - offset < HEADER_BYTES || segment.buffer.getInt(offset) == ROLL_MARKER) {
+                position = segment.base + segment.capacity;
+                continue;
+            }
+            Record record = segment.recordAt(offset);
+            if (record == null) {
+                // Written by this process, so the checksum can only fail if the file was changed under us
+                log.error("Journal record at position {} is corrupt, skipping the rest of its segment", position);
+                skippedRecords.increment();
+                position = segment.base + segment.capacity;
+                continue;
+            }
+            records.add(record);
+            position = record.end();
+        }
+        return records;
+    }
+    
+    private void force(long upTo) {
+        synchronized (forceLock) {
+            if (forcedPosition >= upTo) {
+                // Forced by a concurrent append
+                return;
+            }
+            long target = writePosition;
+            long start = System.nanoTime();
+            for (Segment segment : segments.subMap(segments.floorKey(Math.max(forcedPosition,
+                    segments.firstKey())), true, target, true).values()) {
+                int from = (int) Math.max(0, forcedPosition - segment.base);
+                int to = (int) Math.min(segment.capacity, target - segment.base);
+                if (to > from) {
+                    segment.buffer.force(from, to - from);
+                }
+            }
+            forcedPosition = target;
+            fsyncLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    private void forceAll() {
+        try {
+            force(writePosition);
+            checkpoint.force();
+        } catch (RuntimeException e) {
+            log.warn("Could not force the result journal to disk", e);
+        }
+    }
+    
+    /**
+     * Reopen the segments after the checkpoint and find the end of the journal.
+     */
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(directory.resolve(CHECKPOINT_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            checkpoint = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2 * Long.BYTES);
+        }
+        long checkpointed = checkpoint.getLong(0);
+        boolean valid = checkpointed == ~checkpoint.getLong(Long.BYTES);
+        
+        List<Long> bases;
+        try (Stream<Path> files = Files.list(directory)) {
+            bases = files.map(path -> path.getFileName().toString())
+                .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                .sorted()
+                .toList();
+        }
+        long drained = valid ? checkpointed : (bases.isEmpty() ? 0 : bases.get(0));
+        if (!valid && !bases.isEmpty()) {
+            log.warn("Result journal checkpoint in {} is missing or unreadable, draining from the oldest segment",
+                directory);
+        }
+        for (long base : bases) {
+            Segment segment = openSegment(base, false);
+            if (segment.base + segment.capacity <= drained) {
+                segments.remove(base);
+                segment.delete();
+            }
+        }
+        if (segments.isEmpty()) {
+            openSegment(drained, true);
+        }
+        
+        // Drained up to a position in the first segment left, or its start if the checkpoint is older
+        long position = Math.max(drained, segments.firstKey());
+        long oldest = 0;
+        long count = 0;
+        while (true) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+            Segment segment = entry.getValue();
+            int offset = (int) (position - segment.base);
+            if (offset >= segment.capacity || segment.capacity - offset < HEADER_BYTES
+                    || segment.buffer.getInt(offset) == ROLL_MARKER) {
+                Segment next = segments.get(segment.base + segment.capacity);
+                if (next == null) {
+                    break;
+                }
+                position = next.base;
+                continue;
+            }
+            Record record = segment.recordAt(offset);
+            if (record == null) {
+                break;
+            }
+            if (count++ == 0) {
+                oldest = record.appendedAt();
+            }
+            position = record.end();
+        }
+        
+        head = segments.floorEntry(position).getValue();
+        head.clearFrom((int) Math.min(head.capacity, position - head.base));
+        for (Segment later : List.copyOf(segments.tailMap(head.base, false).values())) {
+            log.warn("Discarding journal segment {} found after the end of the journal", later.base);
+            segments.remove(later.base);
+            later.delete();
+        }
+        drainedPosition = Math.max(drained, segments.firstKey());
+        writePosition = position;
+        forcedPosition = position;
+        pendingRecords.set(count);
+        oldestPendingAt = oldest;
+    }
+    
+    private Segment openSegment(long base, boolean create) {
+        Path path = directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        try (FileChannel channel = create
+                ? FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int capacity = create ? segmentBytes : (int) Math.min(Integer.MAX_VALUE, channel.size());
+            // Mapping past the end grows the file, sparse and zero-filled
+            Segment segment = new Segment(base, path, capacity,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+            segments.put(base, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open journal segment " + path, e);
+        }
+    }
+    
+    private static int checksum(long appendedAt, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (appendedAt >>> shift));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+    
+    private record Record(long start, long end, long appendedAt, byte[] payload) {
+    }
+    
+    private static final class Segment {
+        final long base;
+        final Path path;
+        final int capacity;
+        final MappedByteBuffer buffer;
+        
+        Segment(long base, Path path, int capacity, MappedByteBuffer buffer) {
+            this.base = base;
+            this.path = path;
+            this.capacity = capacity;
+            this.buffer = buffer;
+        }
+        
+        /**
+         * The record at this offset, or null if there is none or it fails its checksum.
+         */
+        Record recordAt(int offset) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > capacity - offset - HEADER_BYTES) {
+                return null;
+            }
+            long appendedAt = buffer.getLong(offset + 8);
+            byte[] payload = new byte[length];
+            buffer.get(offset + HEADER_BYTES, payload);
+            if (checksum(appendedAt, payload) != buffer.getInt(offset + 4)) {
+                return null;
+            }
+            return new Record(base + offset, base + offset + HEADER_BYTES + length, appendedAt, payload);
+        }
+        
+        /**
+         * Zero the segment from this offset, so a torn record cannot be mistaken
+         * for one written after it.
+         */
+        void clearFrom(int offset) {
+            boolean cleared = false;
+            int i = offset;
+            for (; i + Long.BYTES <= capacity; i += Long.BYTES) {
+                // Reading leaves the untouched, sparse part of the file unallocated
+                if (buffer.getLong(i) != 0L) {
+                    buffer.putLong(i, 0L);
+                    cleared = true;
+                }
+            }
+            for (; i < capacity; i++) {
+                buffer.put(i, (byte) 0);
+                cleared = true;
+            }
+            if (cleared) {
+                buffer.force();
+            }
+        }
+        
+        void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Could not delete journal segment {}", path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.analytics.platform.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the range partitions of analytics_results on PostgreSQL.
+ *
+ * Only active when analytics.storage.partitioning.enabled is set and the table
+ * has been converted to a table partitioned by processed_at (see
+ * db/postgres/partition-analytics-results.sql). At startup and then daily it
+ * creates the partition for the current day or month plus premake-periods
+ * ahead, so inserts never land in the default partition, and drops whole
+ * partitions that ended more than retention-days ago, which is far cheaper than
+ * deleting rows. Partitions are named analytics_results_pYYYYMMDD (daily) or
+ * analytics_results_pYYYYMM (monthly); other partitions are left alone.
+ */
+@Component
+@Slf4j
+public class ResultPartitionManager implements ApplicationRunner {
+    
+    public enum Granularity {
+        DAILY,
+        MONTHLY
+    }
+    
+    static final String TABLE = "analytics_results";
+    
+    private static final Pattern PARTITION_NAME = Pattern.compile(TABLE + "_p(\\d{8}|\\d{6})");
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Granularity granularity;
+    private final int premakePeriods;
+    private final int retentionDays;
+    private final AtomicInteger partitionCount = new AtomicInteger();
+    
+    private volatile boolean active;
+    
+    public ResultPartitionManager(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                                  @Value("${analytics.storage.partitioning.enabled:false}") boolean enabled,
+                                  @Value("${analytics.storage.partitioning.granularity:DAILY}") Granularity granularity,
+                                  @Value("${analytics.storage.partitioning.premake-periods:3}") int premakePeriods,
+                                  @Value("${analytics.storage.partitioning.retention-days:0}") int retentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.granularity = granularity;
+        this.premakePeriods = Math.max(1, premakePeriods);
+        this.retentionDays = retentionDays;
+        
+        Gauge.builder("analytics.storage.partitions", partitionCount, AtomicInteger::get)
+            .description("Range partitions of analytics_results")
+            .register(meterRegistry);
+    }
+    
+    @Override
+    public void run(ApplicationArguments args) throws MetaDataAccessException {
+        if (!enabled) {
+            return;
+        }
+        if (!isPartitioned()) {
+            log.warn("Partitioning is enabled but {} is not a partitioned PostgreSQL table, "
+                + "see db/postgres/partition-analytics-results.sql", TABLE);
+            return;
+        }
+        active = true;
+        maintain();
+    }
+    
+    @Scheduled(cron = "${analytics.storage.partitioning.cron:0 5 0 * * *}")
+    public void scheduledMaintenance() {
+        if (active) {
+            maintain();
+        }
+    }
+    
+    synchronized void maintain() {
+        LocalDate today = LocalDate.now();
+        Set<String> existing = new HashSet<>(partitions());
+        
+        LocalDate start = periodStart(today);
+        for (int i = 0; i <= premakePeriods; i++, start = periodEnd(start)) {
+            String name = partitionName(start);
+            // A daily layout may follow a monthly one, e.g. the months created by the conversion script
+            if (existing.contains(name) || existing.contains(TABLE + "_p" + MONTH.format(start))) {
+                continue;
+            }
+            try {
+                jdbcTemplate.execute("create table if not exists " + name + " partition of " + TABLE
+                    + " for values from ('" + start + "') to ('" + periodEnd(start) + "')");
+                existing.add(name);
+                log.info("Created partition {}", name);
+            } catch (DataAccessException e) {
+                // Typically rows for this range already sit in the default partition
+                log.warn("Could not create partition {}: {}", name, e.getMostSpecificCause().getMessage());
+            }
+        }
+        
+        if (retentionDays > 0) {
+            LocalDate cutoff = today.minusDays(retentionDays);
+            for (String name : List.copyOf(existing)) {
+                Matcher matcher = PARTITION_NAME.matcher(name);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                String suffix = matcher.group(1);
+                LocalDate end = suffix.length() == 8
+                    ? LocalDate.parse(suffix, DAY).plusDays(1)
+                    : LocalDate.parse(suffix + "01", DAY).plusMonths(1);
+                if (!end.isAfter(cutoff)) {
+                    jdbcTemplate.execute("drop table if exists " + name);
+                    existing.remove(name);
+                    log.info("Dropped partition {}, older than {} days", name, retentionDays);
+                }
+            }
+        }
+        partitionCount.set(existing.size());
+    }
+    
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid "
+            + "where i.inhparent = cast(? as regclass)", String.class, TABLE);
+    }
+    
+    private boolean isPartitioned() throws MetaDataAccessException {
+        String product = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+            DatabaseMetaData::getDatabaseProductName);
+        if (!"PostgreSQL".equals(product)) {
+            return false;
+        }
+        Integer partitioned = jdbcTemplate.queryForObject(
+            "select count(*) from pg_partitioned_table where partrelid = to_regclass(?)", Integer.class, TABLE);
+        return partitioned != null && partitioned > 0;
+    }
+    
+    private LocalDate periodStart(LocalDate date) {
+        return granularity == Granularity.DAILY ? date : date.withDayOfMonth(1);
+    }
+    
+    private LocalDate periodEnd(LocalDate start) {
+        return granularity == Granularity.DAILY ? start.plusDays(1) : start.plusMonths(1);
+    }
+    
+    private String partitionName(LocalDate start) {
+        return TABLE + "_p" + (granularity == Granularity.DAILY ? DAY : MONTH).format(start);
+    }
+}
@@ -0,0 +1,370 @@
+package com.analytics.platform.service;
+
+import com.analytics.platform.dto.AnalyticsStats;
+import com.analytics.platform.entity.RollupCheckpointEntity;
+import com.analytics.platform.model.AnalyticsResult;
+import com.analytics.platform.repository.RollupCheckpointRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+
+/**
+ * In-memory rollups of stored results behind GET /api/analytics/stats.
+ *
+ * {@link ResultStorageService} records every committed result here on its write
+ * thread, so recording takes no locks: counts are striped {@link LongAdder}s in
+ * concurrent maps, per-minute counts sit in a ring of retained-minutes buckets
+ * that a new minute claims by compare-and-set, and confidences go into one
+ * {@link ConcurrentHistogram} per prediction and model version. Reading the
+ * stats costs the same however many results have been recorded. Keys are capped
+ * at max-keys per dimension, the rest counted under "other", so a misbehaving
+ * producer cannot grow the maps without bound.
+ *
+ * The rollups are checkpointed to analytics_rollup_checkpoints every
+ * checkpoint-interval-ms and at shutdown, and added back at startup. Each
+ * instance keeps its own rollups of the results it stored, so instances sharing
+ * a database need distinct checkpoint keys; counts recorded after the last
+ * checkpoint are lost if an instance dies.
+ */
+@Component
+@Slf4j
+public class ResultRollups implements ApplicationRunner {
+    
+    static final String OTHER = "other";
+    static final String UNKNOWN = "unknown";
+    
+    // Confidences in [0, 1] are recorded in millionths, to two significant digits
+    private static final long CONFIDENCE_SCALE = 1_000_000L;
+    private static final int SIGNIFICANT_DIGITS = 2;
+    
+    private final RollupCheckpointRepository checkpointRepository;
+    private final int retainedMinutes;
+    private final int maxKeys;
+    private final String checkpointKey;
+    private final Timer checkpointLatency;
+    private final Clock clock;
+    
+    private final LongAdder total = new LongAdder();
+    private final Map<String, LongAdder> byPrediction = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> byEventType = new ConcurrentHashMap<>();
+    private final Map<HistogramKey, Histogram> confidence = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<MinuteBucket> minutes;
+    
+    private volatile LocalDateTime countingSince;
+    private volatile boolean restored;
+    
+    @Autowired
+    public ResultRollups(RollupCheckpointRepository checkpointRepository, MeterRegistry meterRegistry,
+                         @Value("${analytics.rollups.retained-minutes:1440}") int retainedMinutes,
+                         @Value("${analytics.rollups.max-keys:1000}") int maxKeys,
+                         @Value("${analytics.rollups.checkpoint-key:default}") String checkpointKey) {
+        this(checkpointRepository, meterRegistry, retainedMinutes, maxKeys, checkpointKey, Clock.systemDefaultZone());
+    }
+    
+    // The clock places results and stats in minutes; processedAt is local time, so it is the default zone's
+    ResultRollups(RollupCheckpointRepository checkpointRepository, MeterRegistry meterRegistry,
+                  int retainedMinutes, int maxKeys, String checkpointKey, Clock clock) {
+        this.checkpointRepository = checkpointRepository;
+        this.clock = clock;
+        this.countingSince = LocalDateTime.now(clock);
+        this.retainedMinutes = Math.max(1, retainedMinutes);
+        this.maxKeys = Math.max(1, maxKeys);
+        this.checkpointKey = checkpointKey;
+        this.minutes = new AtomicReferenceArray<>(this.retainedMinutes);
+        
+        this.checkpointLatency = Timer.builder("analytics.rollups.checkpoint.latency")
+            .description("Time to write one checkpoint of the result rollups")
+            .register(meterRegistry);
+        Gauge.builder("analytics.rollups.keys", this, rollups -> rollups.byPrediction.size()
+                + rollups.byEventType.size() + rollups.confidence.size())
+            .description("Predictions, event types and confidence histograms kept in the rollups")
+            .register(meterRegistry);
+    }
+    
+    public void record(AnalyticsResult result) {
+        String prediction = orUnknown(result.getPrediction());
+        String predictionKey = boundedKey(byPrediction, prediction);
+        
+        total.increment();
+        counter(byPrediction, predictionKey).increment();
+        counter(byEventType, boundedKey(byEventType, orUnknown(result.getEventType()))).increment();
+        
+        if (result.getProcessedAt() != null) {
+            MinuteBucket bucket = bucketFor(epochMinute(result.getProcessedAt()));
+            if (bucket != null) {
+                bucket.count.increment();
+                counter(bucket.byPrediction, predictionKey).increment();
+            }
+        }
+        
+        Double value = result.getConfidence();
+        if (value != null && !value.isNaN()) {
+            HistogramKey key = new HistogramKey(prediction, orUnknown(result.getModelVersion()));
+            if (!confidence.containsKey(key) && confidence.size() >= maxKeys) {
+                key = new HistogramKey(OTHER, OTHER);
+            }
+            confidence.computeIfAbsent(key, k -> newHistogram())
+                .recordValue(Math.round(Math.min(1.0, Math.max(0.0, value)) * CONFIDENCE_SCALE));
+        }
+    }
+    
+    /**
+     * Totals since {@code countingSince}, the per-minute counts of the last
+     * {@code lastMinutes} minutes (capped at retained-minutes) and the confidence
+     * distribution of each prediction and model version.
+     */
+    public AnalyticsStats stats(int lastMinutes) {
+        AnalyticsStats stats = new AnalyticsStats();
+        stats.setTotal(total.sum());
+        stats.setCountingSince(countingSince);
+        stats.setByPrediction(sums(byPrediction));
+        stats.setByEventType(sums(byEventType));
+        
+        long now = epochMinute(LocalDateTime.now(clock));
+        int span = Math.min(Math.max(1, lastMinutes), retainedMinutes);
+        for (long minute = now - span + 1; minute <= now; minute++) {
+            MinuteBucket bucket = minutes.get(slot(minute));
+            stats.getPerMinute().add(bucket != null && bucket.minute == minute
+                ? new AnalyticsStats.MinuteCount(toTime(minute), bucket.count.sum(), sums(bucket.byPrediction))
+                : new AnalyticsStats.MinuteCount(toTime(minute), 0, new LinkedHashMap<>()));
+        }
+        
+        confidence.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey(Comparator.comparing(HistogramKey::prediction)
+                .thenComparing(HistogramKey::modelVersion)))
+            .forEach(entry -> stats.getConfidence().add(distribution(entry.getKey(), entry.getValue())));
+        return stats;
+    }
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            checkpointRepository.findById(checkpointKey).ifPresent(this::restore);
+        } catch (RuntimeException e) {
+            // Losing the rollups is better than refusing to start; later checkpoints start over from here
+            log.warn("Could not restore result rollups from checkpoint [{}]", checkpointKey, e);
+        }
+        restored = true;
+    }
+    
+    @Scheduled(fixedDelayString = "${analytics.rollups.checkpoint-interval-ms:60000}",
+        initialDelayString = "${analytics.rollups.checkpoint-interval-ms:60000}")
+    public void scheduledCheckpoint() {
+        // Until restored, a checkpoint would overwrite the saved rollups with the few recorded since startup
+        if (restored) {
+            checkpoint();
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduledCheckpoint();
+    }
+    
+    synchronized void checkpoint() {
+        long start = System.nanoTime();
+        try {
+            checkpointRepository.save(new RollupCheckpointEntity(checkpointKey, snapshot(), LocalDateTime.now(clock)));
+            log.debug("Checkpointed result rollups [{}]", checkpointKey);
+        } catch (DataAccessException e) {
+            log.warn("Could not checkpoint result rollups [{}]: {}", checkpointKey,
+                e.getMostSpecificCause().toString());
+        } finally {
+            checkpointLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    /**
+     * The counters are read one after the other while results keep being
+     * recorded, so a checkpoint is not an exact cut; the drift is a few results.
+     */
+    Map<String, Object> snapshot() {
+        Map<String, Object> state = new HashMap<>();
+        state.put("countingSince", countingSince.toString());
+        state.put("total", total.sum());
+        state.put("byPrediction", sums(byPrediction));
+        state.put("byEventType", sums(byEventType));
+        
+        long oldest = epochMinute(LocalDateTime.now(clock)) - retainedMinutes;
+        List<Map<String, Object>> minuteStates = new ArrayList<>();
+        for (int i = 0; i < minutes.length(); i++) {
+            MinuteBucket bucket = minutes.get(i);
+            if (bucket != null && bucket.minute > oldest) {
+                minuteStates.add(Map.of("minute", bucket.minute, "count", bucket.count.sum(),
+                    "byPrediction", sums(bucket.byPrediction)));
+            }
+        }
+        state.put("minutes", minuteStates);
+        
+        List<Map<String, Object>> histogramStates = new ArrayList<>();
+        confidence.forEach((key, histogram) -> {
+            Histogram copy = histogram.copy();
+            ByteBuffer buffer = ByteBuffer.allocate(copy.getNeededByteBufferCapacity());
+            copy.encodeIntoCompressedByteBuffer(buffer);
+            byte[] encoded = new byte[buffer.position()];
+            buffer.flip().get(encoded);
+            histogramStates.add(Map.of("prediction", key.prediction(), "modelVersion", key.modelVersion(),
+                "histogram", Base64.getEncoder().encodeToString(encoded)));
+        });
+        state.put("confidence", histogramStates);
+        return state;
+    }
+    
+    /**
+     * Adds a checkpoint to the rollups rather than replacing them, so results
+     * recorded before startup finished are kept as well.
+     */
+    @SuppressWarnings("unchecked")
+    void restore(RollupCheckpointEntity checkpoint) {
+        Map<String, Object> state = checkpoint.getState();
+        if (state.get("countingSince") instanceof String since) {
+            countingSince = LocalDateTime.parse(since);
+        }
+        total.add(number(state.get("total")));
+        addAll(byPrediction, (Map<String, Object>) state.getOrDefault("byPrediction", Map.of()));
+        addAll(byEventType, (Map<String, Object>) state.getOrDefault("byEventType", Map.of()));
+        
+        for (Map<String, Object> minuteState : (List<Map<String, Object>>) state.getOrDefault("minutes", List.of())) {
+            MinuteBucket bucket = bucketFor(number(minuteState.get("minute")));
+            if (bucket != null) {
+                bucket.count.add(number(minuteState.get("count")));
+                addAll(bucket.byPrediction, (Map<String, Object>) minuteState.getOrDefault("byPrediction", Map.of()));
+            }
+        }
+        
+        for (Map<String, Object> histogramState : (List<Map<String, Object>>) state.getOrDefault("confidence",
+                List.of())) {
+            HistogramKey key = new HistogramKey((String) histogramState.get("prediction"),
+                (String) histogramState.get("modelVersion"));
+            try {
+                Histogram saved = Histogram.decodeFromCompressedByteBuffer(
+                    ByteBuffer.wrap(Base64.getDecoder().decode((String) histogramState.get("histogram"))), 0);
+                confidence.computeIfAbsent(key, k -> newHistogram()).add(saved);
+            } catch (DataFormatException | IllegalArgumentException e) {
+                log.warn("Skipping unreadable confidence histogram for {} in checkpoint [{}]", key, checkpoint.getId());
+            }
+        }
+        log.info("Restored result rollups [{}] from {}, {} results since {}", checkpoint.getId(),
+            checkpoint.getCheckpointedAt(), total.sum(), countingSince);
+    }
+    
+    /**
+     * The bucket of this minute, claiming its ring slot if it still holds an
+     * older minute; null if the minute is older than retained-minutes, or than
+     * the minute already in its slot.
+     */
+    private MinuteBucket bucketFor(long minute) {
+        if (minute <= epochMinute(LocalDateTime.now(clock)) - retainedMinutes) {
+            return null;
+        }
+        int slot = slot(minute);
+        while (true) {
+            MinuteBucket current = minutes.get(slot);
+            if (current != null && current.minute >= minute) {
+                return current.minute == minute ? current : null;
+            }
+            MinuteBucket claimed = new MinuteBucket(minute);
+            if (minutes.compareAndSet(slot, current, claimed)) {
+                return claimed;
+            }
+        }
+    }
+    
+    private int slot(long minute) {
+        return (int) Math.floorMod(minute, (long) retainedMinutes);
+    }
+    
+    private String boundedKey(Map<String, LongAdder> counters, String key) {
+        return counters.containsKey(key) || counters.size() < maxKeys ? key : OTHER;
+    }
+    
+    private void addAll(Map<String, LongAdder> counters, Map<String, Object> counts) {
+        counts.forEach((key, count) -> counter(counters, boundedKey(counters, key)).add(number(count)));
+    }
+    
+    private static LongAdder counter(Map<String, LongAdder> counters, String key) {
+        LongAdder counter = counters.get(key);
+        return counter != null ? counter : counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+    
+    private static Map<String, Long> sums(Map<String, LongAdder> counters) {
+        Map<String, Long> sums = new LinkedHashMap<>();
+        counters.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .forEach(entry -> sums.put(entry.getKey(), entry.getValue().sum()));
+        return sums;
+    }
+    
+    private static AnalyticsStats.ConfidenceDistribution distribution(HistogramKey key, Histogram histogram) {
+        Histogram copy = histogram.copy();
+        double scale = CONFIDENCE_SCALE;
+        if (copy.getTotalCount() == 0) {
+            return new AnalyticsStats.ConfidenceDistribution(key.prediction(), key.modelVersion(), 0, 0, 0, 0, 0, 0, 0);
+        }
+        return new AnalyticsStats.ConfidenceDistribution(key.prediction(), key.modelVersion(), copy.getTotalCount(),
+            copy.getMean() / scale, copy.getMinValue() / scale, copy.getValueAtPercentile(50) / scale,
+            copy.getValueAtPercentile(90) / scale, copy.getValueAtPercentile(99) / scale,
+            copy.getMaxValue() / scale);
+    }
+    
+    private static Histogram newHistogram() {
+        return new ConcurrentHistogram(CONFIDENCE_SCALE, SIGNIFICANT_DIGITS);
+    }
+    
+    private static long epochMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+    
+    private static LocalDateTime toTime(long epochMinute) {
+        return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+    }
+    
+    private static long number(Object value) {
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+    
+    private static String orUnknown(String value) {
+        return value == null || value.isBlank() ? UNKNOWN : value;
+    }
+    
+    private record HistogramKey(String prediction, String modelVersion) {
+    }
+    
+    private static final class MinuteBucket {
+        final long minute;
+        final LongAdder count = new LongAdder();
+        final Map<String, LongAdder> byPrediction = new ConcurrentHashMap<>();
+        
+        MinuteBucket(long minute) {
+            this.minute = minute;
+        }
+    }
+}
@@ -1,76 +1,410 @@
 package com.analytics.platform.service;
 
+import com.analytics.platform.dto.ResultPage;
 import com.analytics.platform.entity.AnalyticsResultEntity;
+import com.analytics.platform.entity.UserEntity;
 import com.analytics.platform.model.AnalyticsResult;
 import com.analytics.platform.repository.AnalyticsResultRepository;
-import lombok.RequiredArgsConstructor;
+import com.analytics.platform.repository.ResultCursor;
+import com.analytics.platform.repository.ResultFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Stores and reads analytics results.
+ *
+ * Single results go through a write-behind buffer: results saved concurrently
+ * are grouped by count (analytics.storage.write-behind.max-batch-size) or time
+ * (max-delay-ms) and inserted in one transaction, as JDBC batches thanks to the
+ * pooled ID sequence and hibernate.jdbc.batch_size. A save completes only once
+ * its batch has committed, so callers acknowledge Kafka offsets after their
+ * results are durable.
+ *
+ * With analytics.storage.journal.enabled, saves go to the local
+ * {@link ResultJournal} instead and complete once journaled, so a slow or
+ * unavailable database no longer fails them; the journal drains into the
+ * database in batches, and a result becomes readable once it has been drained.
+ * Results drained again after a crash are skipped once the database confirms it
+ * already holds them; a result it rejects for any other reason stops the drain.
+ *
+ * Lookups by eventId are read through a bounded near cache that the write path
+ * fills once a result has committed. Clients poll for results that are still
+ * being processed, so misses are cached too, for a short negative-ttl; a save
+ * replaces the negative entry at once, and the short TTL bounds how long a
+ * result saved by another instance stays invisible here. Each committed result
+ * is then recorded in the {@link ResultRollups} and signalled to the
+ * {@link ResultCompletionRegistry} for clients waiting on it.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ResultStorageService {
     
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(30);
+    
     private final AnalyticsResultRepository repository;
     private final UserService userService;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate writeTransaction;
+    private final WriteBehindBuffer<PendingResult> writeBuffer;
+    private final Cache<String, Optional<AnalyticsResult>> resultCache;
+    private final ResultCompletionRegistry completionRegistry;
+    private final ResultRollups rollups;
+    private final ResultJournal journal;
+    
+    @Value("${analytics.results.max-page-size:1000}")
+    private int maxPageSize;
+    
+    @Value("${analytics.results.stream-fetch-size:500}")
+    private int streamFetchSize;
+    
+    @Autowired
+    public ResultStorageService(AnalyticsResultRepository repository, UserService userService,
+                                PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                                ResultCompletionRegistry completionRegistry, ResultRollups rollups,
+                                ResultJournal journal, MeterRegistry meterRegistry,
+                                @Value("${analytics.storage.write-behind.enabled:true}") boolean writeBehind,
+                                @Value("${analytics.storage.write-behind.max-batch-size:200}") int maxBatchSize,
+                                @Value("${analytics.storage.write-behind.max-delay-ms:20}") long maxDelayMs,
+                                @Value("${analytics.storage.write-behind.max-pending:10000}") int maxPending,
+                                @Value("${analytics.results.cache.enabled:true}") boolean cacheEnabled,
+                                @Value("${analytics.results.cache.max-size:100000}") long cacheMaxSize,
+                                @Value("${analytics.results.cache.ttl:PT10M}") Duration cacheTtl,
+                                @Value("${analytics.results.cache.negative-ttl:PT2S}") Duration negativeTtl) {
+        this(repository, userService, transactionManager, objectMapper, completionRegistry, rollups, journal,
+            meterRegistry, writeBehind, maxBatchSize, maxDelayMs, maxPending, cacheEnabled, cacheMaxSize, cacheTtl,
+            negativeTtl, Ticker.systemTicker());
+    }
+    
+    /**
+     * @param cacheTicker time source of the result cache's expiry, replaced in tests
+     */
+    ResultStorageService(AnalyticsResultRepository repository, UserService userService,
+                         PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                         ResultCompletionRegistry completionRegistry, ResultRollups rollups,
+                         ResultJournal journal, MeterRegistry meterRegistry, boolean writeBehind, int maxBatchSize,
+                         long maxDelayMs, int maxPending, boolean cacheEnabled, long cacheMaxSize, Duration cacheTtl,
+                         Duration negativeTtl, Ticker cacheTicker) {
+        this.repository = repository;
+        this.userService = userService;
+        this.transactionManager = transactionManager;
+        this.objectMapper = objectMapper;
+        this.completionRegistry = completionRegistry;
+        this.rollups = rollups;
+        this.journal = journal != null && journal.isEnabled() ? journal : null;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeBuffer = writeBehind && this.journal == null
+            ? new WriteBehindBuffer<>("results", this::writeResults, maxBatchSize, Duration.ofMillis(maxDelayMs),
+                maxPending, meterRegistry)
+            : null;
+        this.resultCache = cacheEnabled ? newResultCache(cacheMaxSize, cacheTtl, negativeTtl, cacheTicker) : null;
+        if (resultCache != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, resultCache, "results");
+            Gauge.builder("analytics.results.cache.hit.ratio", resultCache, cache -> cache.stats().hitRate())
+                .description("Share of result lookups by eventId answered without a query")
+                .register(meterRegistry);
+        }
+        if (this.journal != null) {
+            // Started last: results left in the journal are drained right away, through the cache above
+            this.journal.start(this::drainJournal, this::isSkippable);
+        }
+    }
     
-    @Transactional
+    private static Cache<String, Optional<AnalyticsResult>> newResultCache(long maxSize, Duration ttl,
+                                                                           Duration negativeTtl, Ticker ticker) {
+        return Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .ticker(ticker)
+            .expireAfter(new Expiry<String, Optional<AnalyticsResult>>() {
+                @Override
+                public long expireAfterCreate(String eventId, Optional<AnalyticsResult> result, long currentTime) {
+                    return (result.isPresent() ? ttl : negativeTtl).toNanos();
+                }
+                
+                @Override
+                public long expireAfterUpdate(String eventId, Optional<AnalyticsResult> result, long currentTime,
+                                              long currentDuration) {
+                    return (result.isPresent() ? ttl : negativeTtl).toNanos();
+                }
+                
+                @Override
+                public long expireAfterRead(String eventId, Optional<AnalyticsResult> result, long currentTime,
+                                            long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (writeBuffer != null) {
+            writeBuffer.close(CLOSE_TIMEOUT);
+        }
+        if (journal != null) {
+            journal.close(CLOSE_TIMEOUT);
+        }
+    }
+    
+    /**
+     * Save one result and wait until it is committed. Results saved by concurrent
+     * callers share a transaction.
+     */
     public void saveResult(AnalyticsResult result) {
-        AnalyticsResultEntity entity = convertToEntity(result);
-        
+        saveResultAsync(result).block();
+    }
+    
+    /**
+     * Queue one result for the next flush. The Mono completes once the result is
+     * committed, or journaled when the journal is enabled, or fails if it could not
+     * be written. The current user is taken from the calling thread. Blocks the
+     * subscribing thread while the buffer is full.
+     */
+    public Mono<Void> saveResultAsync(AnalyticsResult result) {
         // Associate with current user if authenticated
+        PendingResult pending = new PendingResult(result, findCurrentUser());
+        if (journal != null) {
+            return Mono.fromRunnable(() -> journal.append(List.of(encode(pending))));
+        }
+        if (writeBuffer == null) {
+            return Mono.fromRunnable(() -> writeResults(List.of(pending)));
+        }
+        return writeBuffer.submit(pending);
+    }
+    
+    /**
+     * Persist a batch of results in one transaction, bypassing the write-behind
+     * buffer since the batch is already grouped. The inserts are sent as JDBC
+     * batches because IDs come from the pooled sequence rather than an identity
+     * column, which would make Hibernate insert row by row.
+     */
+    public void saveResults(List<AnalyticsResult> results) {
+        UserEntity user = findCurrentUser();
+        List<PendingResult> pending = new ArrayList<>(results.size());
+        for (AnalyticsResult result : results) {
+            pending.add(new PendingResult(result, user));
+        }
+        if (journal != null) {
+            journal.append(pending.stream().map(this::encode).toList());
+            return;
+        }
+        writeResults(pending);
+    }
+    
+    private byte[] encode(PendingResult pending) {
+        try {
+            return objectMapper.writeValueAsBytes(new JournaledResult(pending.result(),
+                pending.user() != null ? pending.user().getUsername() : null));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not journal result of event " + pending.result().getEventId(), e);
+        }
+    }
+    
+    /**
+     * Store results read back from the journal. The account of each is looked up
+     * again by username, once per batch.
+     */
+    private void drainJournal(List<byte[]> records) {
+        Map<String, Optional<UserEntity>> users = new HashMap<>();
+        List<PendingResult> pending = new ArrayList<>(records.size());
+        for (byte[] record : records) {
+            JournaledResult journaled;
+            try {
+                journaled = objectMapper.readValue(record, JournaledResult.class);
+            } catch (IOException e) {
+                // Fails the batch, so the journal retries its records one by one and skips this one
+                throw new UncheckedIOException("Unreadable journaled result", e);
+            }
+            UserEntity user = journaled.username() == null ? null
+                : users.computeIfAbsent(journaled.username(), this::findUser).orElse(null);
+            pending.add(new PendingResult(journaled.result(), user));
+        }
+        if (!pending.isEmpty()) {
+            writeResults(pending);
+        }
+    }
+    
+    /**
+     * Whether a journaled result the drain failed on may be skipped: one that
+     * cannot be read, or one whose eventId the database already holds, written
+     * before a crash and replayed from an older checkpoint. Any other constraint
+     * failure is retried rather than dropping a result whose offset was acknowledged.
+     */
+    private boolean isSkippable(byte[] record, RuntimeException failure) {
+        if (failure instanceof UncheckedIOException) {
+            return true;
+        }
+        if (!(failure instanceof DataIntegrityViolationException)) {
+            return false;
+        }
+        try {
+            String eventId = objectMapper.readValue(record, JournaledResult.class).result().getEventId();
+            return eventId != null && repository.existsByEventId(eventId);
+        } catch (IOException | DataAccessException e) {
+            return false;
+        }
+    }
+    
+    private Optional<UserEntity> findUser(String username) {
+        try {
+            return Optional.of(userService.findByUsername(username));
+        } catch (DataAccessException e) {
+            // The database is unavailable: fail the drain so it is retried
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("Could not associate journaled result with user [{}]", username);
+            return Optional.empty();
+        }
+    }
+    
+    /**
+     * Entities are built afresh on each call, so a batch that failed can be
+     * written again item by item without carrying IDs over from the rolled back attempt.
+     */
+    private void writeResults(List<PendingResult> results) {
+        List<AnalyticsResultEntity> entities = new ArrayList<>(results.size());
+        for (PendingResult pending : results) {
+            AnalyticsResultEntity entity = convertToEntity(pending.result());
+            entity.setUser(pending.user());
+            entities.add(entity);
+        }
+        writeTransaction.executeWithoutResult(status -> repository.saveAll(entities));
+        log.debug("Saved {} analytics results", entities.size());
+        
+        // Cached before waiting clients are told, so a client that checks right after registering sees it
+        for (AnalyticsResultEntity entity : entities) {
+            AnalyticsResult stored = convertToModel(entity);
+            if (resultCache != null) {
+                resultCache.put(entity.getEventId(), Optional.of(stored));
+            }
+            rollups.record(stored);
+            completionRegistry.completed(stored);
+        }
+    }
+    
+    private UserEntity findCurrentUser() {
         try {
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
             if (auth != null && auth.isAuthenticated() && !auth.getName().equals("anonymousUser")) {
-                entity.setUser(userService.findByUsername(auth.getName()));
+                return userService.findByUsername(auth.getName());
             }
         } catch (Exception e) {
             log.warn("Could not associate result with user", e);
         }
-        
-        repository.save(entity);
-        log.info("Saved analytics result for event [{}]", result.getEventId());
+        return null;
     }
     
+    /**
+     * The result of one event. Concurrent lookups of an uncached eventId share one query.
+     */
     public Optional<AnalyticsResult> getResult(String eventId) {
+        if (resultCache == null) {
+            return loadResult(eventId);
+        }
+        return resultCache.get(eventId, this::loadResult);
+    }
+    
+    private Optional<AnalyticsResult> loadResult(String eventId) {
         return repository.findByEventId(eventId)
             .map(this::convertToModel);
     }
     
-    public List<AnalyticsResult> getAllResults() {
-        return repository.findAll().stream()
+    /**
+     * One page of results, newest first.
+     *
+     * @param cursor nextCursor of the previous page, or null for the first page
+     * @throws IllegalArgumentException when the cursor is not valid
+     */
+    @Transactional(readOnly = true)
+    public ResultPage getResults(ResultFilter filter, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        ResultCursor after = cursor == null || cursor.isEmpty() ? null : ResultCursor.decode(cursor);
+        
+        // One extra row tells whether there is a next page
+        List<AnalyticsResultEntity> entities = repository.findPage(filter, after, pageSize + 1);
+        boolean more = entities.size() > pageSize;
+        List<AnalyticsResultEntity> page = more ? entities.subList(0, pageSize) : entities;
+        
+        List<AnalyticsResult> items = page.stream()
             .map(this::convertToModel)
             .collect(Collectors.toList());
+        String nextCursor = null;
+        if (more) {
+            AnalyticsResultEntity last = page.get(page.size() - 1);
+            nextCursor = new ResultCursor(last.getProcessedAt(), last.getId()).encode();
+        }
+        return new ResultPage(items, nextCursor);
     }
     
-    public List<AnalyticsResult> getResultsByPrediction(String prediction) {
-        return repository.findByPrediction(prediction).stream()
-            .map(this::convertToModel)
-            .collect(Collectors.toList());
+    /**
+     * Write every matching result to the output as newline-delimited JSON, newest
+     * first. Rows are read from a database cursor and written one at a time, so
+     * memory use does not depend on how many results match.
+     */
+    public void streamResults(ResultFilter filter, OutputStream output) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.executeWithoutResult(status -> {
+            try (Stream<AnalyticsResultEntity> entities = repository.streamAll(filter, streamFetchSize);
+                 JsonGenerator generator = objectMapper.createGenerator(output)) {
+                ObjectWriter writer = objectMapper.writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+                // Each value is followed by a newline instead of Jackson's default space separator
+                generator.setRootValueSeparator(null);
+                int written = 0;
+                for (AnalyticsResultEntity entity : (Iterable<AnalyticsResultEntity>) entities::iterator) {
+                    writer.writeValue(generator, convertToModel(entity));
+                    generator.writeRaw('\n');
+                    if (++written % streamFetchSize == 0) {
+                        generator.flush();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not stream results", e);
+            }
+        });
     }
     
-    public List<AnalyticsResult> getUserResults() {
-        try {
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            if (auth != null && auth.isAuthenticated()) {
-                var user = userService.findByUsername(auth.getName());
-                return repository.findByUserId(user.getId()).stream()
-                    .map(this::convertToModel)
-                    .collect(Collectors.toList());
-            }
-        } catch (Exception e) {
-            log.warn("Could not get user results", e);
-        }
-        return List.of();
+    /**
+     * @return the ID of the authenticated user, empty for anonymous requests
+     */
+    public Optional<Long> currentUserId() {
+        return Optional.ofNullable(findCurrentUser()).map(UserEntity::getId);
     }
     
     private AnalyticsResultEntity convertToEntity(AnalyticsResult result) {
@@ -80,24 +414,20 @@ public class ResultStorageService {
         entity.setConfidence(result.getConfidence());
         entity.setProcessedAt(result.getProcessedAt());
         entity.setModelVersion(result.getModelVersion());
+        entity.setEventUserId(result.getUserId());
+        entity.setEventType(result.getEventType());
         
-        // Convert insights Map<String, Object> to Map<String, String>
+        // Stored as a JSON document, so nested values such as per-model outcomes keep their structure
         if (result.getInsights() != null) {
-            Map<String, String> insights = result.getInsights().entrySet().stream()
-                .collect(Collectors.toMap(
-                    Map.Entry::getKey,
-                    e -> e.getValue() != null ? e.getValue().toString() : ""
-                ));
-            entity.setInsights(insights);
+            entity.setInsights(new HashMap<>(result.getInsights()));
         }
         
         return entity;
     }
     
     private AnalyticsResult convertToModel(AnalyticsResultEntity entity) {
-        Map<String, Object> insights = entity.getInsights() != null 
-            ? entity.getInsights().entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
+        Map<String, Object> insights = entity.getInsights() != null
+            ? new HashMap<>(entity.getInsights())
             : Map.of();
         
         return new AnalyticsResult(
@@ -106,8 +436,16 @@ public class ResultStorageService {
             entity.getConfidence(),
             insights,
             entity.getProcessedAt(),
-            entity.getModelVersion()
+            entity.getModelVersion(),
+            entity.getEventUserId(),
+            entity.getEventType()
         );
     }
+    
+    private record PendingResult(AnalyticsResult result, UserEntity user) {
+    }
+    
+    private record JournaledResult(AnalyticsResult result, String username) {
+    }
 }
 
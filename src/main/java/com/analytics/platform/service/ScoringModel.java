@@ -0,0 +1,35 @@
+package com.analytics.platform.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * A model the {@link ModelRouter} can dispatch events to. Implementations score
+ * the text of an event and answer with [risk, safe] probabilities, the layout
+ * AIService builds results from. Spring beans of this type are registered
+ * automatically under their name.
+ */
+public interface ScoringModel {
+    
+    String getName();
+    
+    /**
+     * @return the scores for the text, or an empty Mono when the model has no answer
+     */
+    Mono<double[]> score(String content);
+    
+    static ScoringModel of(String name, Function<String, Mono<double[]>> scorer) {
+        return new ScoringModel() {
+            @Override
+            public String getName() {
+                return name;
+            }
+            
+            @Override
+            public Mono<double[]> score(String content) {
+                return scorer.apply(content);
+            }
+        };
+    }
+}
@@ -0,0 +1,162 @@
+package com.analytics.platform.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Groups writes submitted from many threads into batches written together.
+ *
+ * Items are collected until maxBatchSize are waiting or maxDelay has passed
+ * since the first one, then handed to the writer in one call; one batch is
+ * written at a time, in submission order, so callers that acknowledge upstream
+ * work when their write completes do so in order. If a batch fails, its items
+ * are written again one by one so a single bad item fails only its own caller.
+ * At most maxPending items may be waiting; {@link #submit} blocks while the
+ * buffer is full, which pushes back on the producers.
+ *
+ * @param <T> the item written
+ */
+@Slf4j
+public class WriteBehindBuffer<T> {
+    
+    private final Consumer<List<T>> writer;
+    private final Sinks.Many<PendingWrite<T>> pendingWrites =
+        Sinks.many().unicast().onBackpressureBuffer(Queues.<PendingWrite<T>>unboundedMultiproducer().get());
+    private final Semaphore capacity;
+    private final CountDownLatch drained = new CountDownLatch(1);
+    private final Disposable dispatcher;
+    
+    private final Timer flushLatency;
+    private final DistributionSummary flushBatchSize;
+    private final Counter flushFailures;
+    
+    public WriteBehindBuffer(String name, Consumer<List<T>> writer, int maxBatchSize, Duration maxDelay,
+                             int maxPending, MeterRegistry meterRegistry) {
+        this.writer = writer;
+        this.capacity = new Semaphore(Math.max(1, maxPending));
+        this.flushLatency = Timer.builder("analytics.storage.flush.latency")
+            .description("Time to write one batch of buffered writes")
+            .tag("buffer", name)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.flushBatchSize = DistributionSummary.builder("analytics.storage.flush.batch.size")
+            .description("Writes per flushed batch")
+            .tag("buffer", name)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.flushFailures = Counter.builder("analytics.storage.flush.failures")
+            .description("Batches that failed and were written again item by item")
+            .tag("buffer", name)
+            .register(meterRegistry);
+        int max = Math.max(1, maxPending);
+        Gauge.builder("analytics.storage.write.buffer.pending", capacity, c -> max - c.availablePermits())
+            .description("Writes waiting in the buffer or being flushed")
+            .tag("buffer", name)
+            .register(meterRegistry);
+        
+        this.dispatcher = pendingWrites.asFlux()
+            .bufferTimeout(Math.max(1, maxBatchSize), maxDelay)
+            .onBackpressureBuffer()
+            .concatMap(batch -> Mono.fromRunnable(() -> flush(batch)).subscribeOn(Schedulers.boundedElastic()))
+            .subscribe(null, e -> {
+                log.error("Write-behind dispatcher stopped", e);
+                drained.countDown();
+            }, drained::countDown);
+    }
+    
+    /**
+     * Queue one item for the next batch. The returned Mono completes once the
+     * batch holding the item has been written, or fails with the error the item
+     * could not be written with. Subscribing blocks while the buffer is full.
+     */
+    public Mono<Void> submit(T item) {
+        return Mono.create(sink -> {
+            capacity.acquireUninterruptibly();
+            try {
+                pendingWrites.emitNext(new PendingWrite<>(item, sink),
+                    Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+            } catch (Sinks.EmissionException e) {
+                capacity.release();
+                sink.error(new IllegalStateException("Write buffer is closed", e));
+            }
+        });
+    }
+    
+    /**
+     * Stop accepting items and wait for the ones already queued to be written.
+     */
+    public void close(Duration timeout) {
+        pendingWrites.tryEmitComplete();
+        try {
+            if (!drained.await(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Write buffer not drained within {}", timeout);
+                dispatcher.dispose();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dispatcher.dispose();
+        }
+    }
+    
+    private void flush(List<PendingWrite<T>> batch) {
+        List<T> items = new ArrayList<>(batch.size());
+        for (PendingWrite<T> write : batch) {
+            items.add(write.item);
+        }
+        flushBatchSize.record(batch.size());
+        long start = System.nanoTime();
+        try {
+            writer.accept(items);
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            complete(batch, null);
+        } catch (RuntimeException e) {
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (batch.size() == 1) {
+                complete(batch, e);
+                return;
+            }
+            flushFailures.increment();
+            log.warn("Flush of {} writes failed, writing them one by one: {}", batch.size(), e.toString());
+            for (PendingWrite<T> write : batch) {
+                try {
+                    writer.accept(List.of(write.item));
+                    complete(List.of(write), null);
+                } catch (RuntimeException itemFailure) {
+                    complete(List.of(write), itemFailure);
+                }
+            }
+        }
+    }
+    
+    private void complete(List<PendingWrite<T>> writes, Throwable error) {
+        for (PendingWrite<T> write : writes) {
+            capacity.release();
+            if (error == null) {
+                write.sink.success();
+            } else {
+                write.sink.error(error);
+            }
+        }
+    }
+    
+    private record PendingWrite<T>(T item, MonoSink<Void> sink) {
+    }
+}
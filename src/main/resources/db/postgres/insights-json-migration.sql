@@ -0,0 +1,28 @@
+-- Moves insights from the analytics_insights key/value table into the JSON
+-- insights column of analytics_results. Equivalent to what LegacyInsightsMigration
+-- does at startup, for databases migrated by hand (ddl-auto none or validate).
+-- Insight values were stored as text and stay text.
+
+BEGIN;
+
+ALTER TABLE analytics_results ADD COLUMN IF NOT EXISTS insights jsonb;
+
+UPDATE analytics_results r
+SET insights = l.doc
+FROM (
+    SELECT result_id, jsonb_object_agg(insight_key, insight_value) AS doc
+    FROM analytics_insights
+    GROUP BY result_id
+) l
+WHERE r.id = l.result_id
+  AND r.insights IS NULL;
+
+DELETE FROM analytics_insights i
+USING analytics_results r
+WHERE r.id = i.result_id
+  AND r.insights IS NOT NULL;
+
+COMMIT;
+
+-- Once the application runs on the new column:
+-- DROP TABLE analytics_insights;
@@ -0,0 +1,69 @@
+-- Converts analytics_results into a table range partitioned by processed_at,
+-- with one partition per month holding the existing rows. ResultPartitionManager
+-- (analytics.storage.partitioning.enabled=true) then creates upcoming daily or
+-- monthly partitions and drops expired ones. Run result-id-sequence.sql first.
+--
+-- A partitioned table only enforces uniqueness on keys that include the
+-- partition column, so the primary key becomes (id, processed_at) and event_id is
+-- unique per processed_at; duplicates are still skipped by the deduplicator and
+-- the existsByEventId check. Run the application with ddl-auto none or validate
+-- afterwards, since ddl-auto update would try to add the plain unique constraint.
+--
+-- Copies every row while holding the old table locked; schedule accordingly.
+
+BEGIN;
+
+LOCK TABLE analytics_results IN ACCESS EXCLUSIVE MODE;
+
+ALTER TABLE analytics_results RENAME TO analytics_results_unpartitioned;
+
+CREATE TABLE analytics_results (
+    id            bigint           NOT NULL DEFAULT nextval('analytics_results_seq'),
+    event_id      varchar(255)     NOT NULL,
+    prediction    varchar(255)     NOT NULL,
+    confidence    double precision NOT NULL,
+    insights      jsonb,
+    processed_at  timestamp(6)     NOT NULL,
+    model_version varchar(255)     NOT NULL,
+    event_user_id varchar(255),
+    event_type    varchar(255),
+    user_id       bigint REFERENCES users (id),
+    PRIMARY KEY (id, processed_at),
+    UNIQUE (event_id, processed_at)
+) PARTITION BY RANGE (processed_at);
+
+-- Catches rows outside every partition; should stay empty
+CREATE TABLE analytics_results_default PARTITION OF analytics_results DEFAULT;
+
+CREATE INDEX idx_results_event_id ON analytics_results (event_id);
+CREATE INDEX idx_results_prediction_processed_at ON analytics_results (prediction, processed_at, id);
+CREATE INDEX idx_results_user_processed_at ON analytics_results (user_id, processed_at, id);
+CREATE INDEX idx_results_processed_at ON analytics_results (processed_at, id);
+
+-- One partition per month from the oldest row through next month
+DO $$
+DECLARE
+    month date;
+BEGIN
+    FOR month IN
+        SELECT generate_series(
+            date_trunc('month', coalesce((SELECT min(processed_at) FROM analytics_results_unpartitioned), now())),
+            date_trunc('month', now()) + interval '1 month',
+            interval '1 month')::date
+    LOOP
+        EXECUTE format('CREATE TABLE analytics_results_p%s PARTITION OF analytics_results '
+                       'FOR VALUES FROM (%L) TO (%L)',
+                       to_char(month, 'YYYYMM'), month, month + interval '1 month');
+    END LOOP;
+END $$;
+
+INSERT INTO analytics_results (id, event_id, prediction, confidence, insights, processed_at, model_version,
+                               event_user_id, event_type, user_id)
+SELECT id, event_id, prediction, confidence, insights, processed_at, model_version, event_user_id, event_type,
+       user_id
+FROM analytics_results_unpartitioned;
+
+COMMIT;
+
+-- Once the application runs on the partitioned table:
+-- DROP TABLE analytics_results_unpartitioned;
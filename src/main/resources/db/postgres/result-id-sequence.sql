@@ -0,0 +1,17 @@
+-- Moves analytics_results IDs from the identity column to the pooled sequence
+-- the entity now uses. With ddl-auto update Hibernate creates the sequence
+-- starting at 1, which would collide with existing rows; run this before (or
+-- right after, before the first insert) deploying the new version.
+-- Hibernate reserves IDs (value - 49 .. value] per nextval, so the sequence is
+-- set a full block past the highest existing ID.
+
+BEGIN;
+
+CREATE SEQUENCE IF NOT EXISTS analytics_results_seq INCREMENT BY 50;
+
+SELECT setval('analytics_results_seq', COALESCE((SELECT max(id) FROM analytics_results), 0) + 50);
+
+-- IDs now come from the application; drop the identity default so the two never mix
+ALTER TABLE analytics_results ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+COMMIT;
@@ -0,0 +1,12 @@
+-- Indexes declared on AnalyticsResultEntity, for databases managed by hand
+-- (ddl-auto none or validate). CONCURRENTLY keeps the table writable while the
+-- indexes build, so run each statement on its own, outside a transaction.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_results_prediction_processed_at
+    ON analytics_results (prediction, processed_at, id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_results_user_processed_at
+    ON analytics_results (user_id, processed_at, id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_results_processed_at
+    ON analytics_results (processed_at, id);
@@ -0,0 +1,108 @@
+package com.analytics.platform.benchmark;
+
+import com.analytics.platform.kafka.AnalyticsEventCodec;
+import com.analytics.platform.kafka.AnalyticsEventDeserializer;
+import com.analytics.platform.kafka.AnalyticsEventSerializer;
+import com.analytics.platform.model.AnalyticsEvent;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON and binary wire formats of AnalyticsEvent.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.analytics.platform.benchmark.AnalyticsEventCodecBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyticsEventCodecBenchmark {
+    
+    private AnalyticsEventSerializer jsonSerializer;
+    private AnalyticsEventDeserializer deserializer;
+    private AnalyticsEvent event;
+    private byte[] jsonPayload;
+    private byte[] binaryPayload;
+    private RecordHeaders jsonHeaders;
+    private RecordHeaders binaryHeaders;
+    
+    @Setup
+    public void setup() {
+        event = sampleEvent();
+        jsonSerializer = new AnalyticsEventSerializer();
+        jsonSerializer.configure(Map.of(AnalyticsEventSerializer.FORMAT_CONFIG, "json"), false);
+        AnalyticsEventSerializer binarySerializer = new AnalyticsEventSerializer();
+        binarySerializer.configure(Map.of(AnalyticsEventSerializer.FORMAT_CONFIG, "binary"), false);
+        deserializer = new AnalyticsEventDeserializer();
+        
+        jsonHeaders = new RecordHeaders();
+        binaryHeaders = new RecordHeaders();
+        jsonPayload = jsonSerializer.serialize("bench", jsonHeaders, event);
+        binaryPayload = binarySerializer.serialize("bench", binaryHeaders, event);
+    }
+    
+    @Benchmark
+    public byte[] encodeJson() {
+        return jsonSerializer.serialize("bench", event);
+    }
+    
+    @Benchmark
+    public byte[] encodeBinary() {
+        return AnalyticsEventCodec.encode(event);
+    }
+    
+    @Benchmark
+    public AnalyticsEvent decodeJson() {
+        return deserializer.deserialize("bench", jsonHeaders, ByteBuffer.wrap(jsonPayload));
+    }
+    
+    @Benchmark
+    public AnalyticsEvent decodeBinary() {
+        return deserializer.deserialize("bench", binaryHeaders, ByteBuffer.wrap(binaryPayload));
+    }
+    
+    static AnalyticsEvent sampleEvent() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("content", "Just watched the new release, the soundtrack is amazing and the pacing felt right");
+        data.put("postId", 918273645L);
+        data.put("likes", 42);
+        data.put("score", 0.8731);
+        data.put("verified", true);
+        data.put("tags", List.of("movies", "review", "music"));
+        data.put("location", Map.of("country", "TN", "city", "Tunis"));
+        return new AnalyticsEvent("6f1c2a7e-5b0d-4c4e-9a51-3d2f1e0b9c88", "comment",
+            LocalDateTime.of(2024, 3, 14, 15, 9, 26, 535_000_000), data, "user-12345", "mobile-app");
+    }
+    
+    public static void main(String[] args) throws Exception {
+        AnalyticsEventCodecBenchmark sizes = new AnalyticsEventCodecBenchmark();
+        sizes.setup();
+        System.out.printf("Payload size: json=%d bytes, binary=%d bytes (%.0f%%)%n",
+            sizes.jsonPayload.length, sizes.binaryPayload.length,
+            100.0 * sizes.binaryPayload.length / sizes.jsonPayload.length);
+        
+        new Runner(new OptionsBuilder()
+            .include(AnalyticsEventCodecBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
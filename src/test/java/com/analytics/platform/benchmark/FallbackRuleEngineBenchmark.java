@@ -0,0 +1,72 @@
+package com.analytics.platform.benchmark;
+
+import com.analytics.platform.service.FallbackRuleEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded throughput of the fallback rules on the bundled rule file.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.analytics.platform.benchmark.FallbackRuleEngineBenchmark
+ * Add -prof gc on the JMH command line to confirm evaluation allocates nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class FallbackRuleEngineBenchmark {
+    
+    private FallbackRuleEngine engine;
+    private Map<String, Object> cleanComment;
+    private Map<String, Object> flaggedComment;
+    private Map<String, Object> purchase;
+    
+    @Setup
+    public void setup() throws Exception {
+        engine = new FallbackRuleEngine(new ClassPathResource("fallback-rules.json"));
+        cleanComment = Map.of("content",
+            "Just watched the new release, the soundtrack is amazing and the pacing felt right");
+        flaggedComment = Map.of("content",
+            "Free money for everyone who replies, click here before the limited offer ends you idiot");
+        purchase = Map.of("amount", 749.90, "currency", "EUR", "items", 3);
+    }
+    
+    @Benchmark
+    public long cleanComment() {
+        return engine.evaluate("comment", cleanComment);
+    }
+    
+    @Benchmark
+    public long flaggedComment() {
+        return engine.evaluate("comment", flaggedComment);
+    }
+    
+    @Benchmark
+    public long purchase() {
+        return engine.evaluate("purchase", purchase);
+    }
+    
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(FallbackRuleEngineBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,215 @@
+package com.analytics.platform.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two insights layouts over plain JDBC, issuing the statements
+ * Hibernate issues for each: the key/value table needs one insert per insight
+ * and, for a list of results, one select per result (the N+1); the JSON column
+ * is written and read with the result row.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.analytics.platform.benchmark.InsightsStorageBenchmark
+ * Defaults to in-memory H2. For PostgreSQL (docker compose up postgres), pass
+ *   -Dexec.args="jdbc:postgresql://localhost:5432/analyticsdb analytics analytics123"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsightsStorageBenchmark {
+    
+    private static final int PRELOADED_RESULTS = 1000;
+    private static final int PAGE_SIZE = 100;
+    
+    @Param("jdbc:h2:mem:insights-bench;DB_CLOSE_DELAY=-1")
+    public String url;
+    
+    @Param("sa")
+    public String user;
+    
+    @Param("")
+    public String password;
+    
+    private Connection connection;
+    private PreparedStatement insertLegacyResult;
+    private PreparedStatement insertLegacyInsight;
+    private PreparedStatement insertJsonResult;
+    private PreparedStatement selectLegacyResults;
+    private PreparedStatement selectLegacyInsights;
+    private PreparedStatement selectJsonResults;
+    private String insightsJson;
+    private Map<String, String> insights;
+    private long nextId = PRELOADED_RESULTS;
+    
+    @Setup
+    public void setup() throws Exception {
+        boolean postgres = url.startsWith("jdbc:postgresql");
+        connection = DriverManager.getConnection(url, user, password);
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("drop table if exists bench_insights");
+            ddl.execute("drop table if exists bench_results_legacy");
+            ddl.execute("drop table if exists bench_results_json");
+            String columns = "id bigint primary key, event_id varchar(64) not null, prediction varchar(64) not null, "
+                + "confidence double precision not null, processed_at timestamp not null, "
+                + "model_version varchar(32) not null";
+            ddl.execute("create table bench_results_legacy (" + columns + ")");
+            ddl.execute("create table bench_insights (result_id bigint not null, insight_key varchar(255) not null, "
+                + "insight_value varchar(255), primary key (result_id, insight_key))");
+            ddl.execute("create table bench_results_json (" + columns + ", insights "
+                + (postgres ? "jsonb" : "json") + ")");
+            ddl.execute("create index bench_legacy_prediction on bench_results_legacy (prediction)");
+            ddl.execute("create index bench_json_prediction on bench_results_json (prediction)");
+        }
+        
+        insights = new LinkedHashMap<>();
+        insights.put("hate_score", "0.0213");
+        insights.put("safe_score", "0.9787");
+        insights.put("model", "roberta-hate-speech-dynabench");
+        insights.put("recommendation", "Content is safe");
+        insights.put("risk_level", "low");
+        insightsJson = new ObjectMapper().writeValueAsString(insights);
+        
+        String resultColumns = "(id, event_id, prediction, confidence, processed_at, model_version";
+        insertLegacyResult = connection.prepareStatement(
+            "insert into bench_results_legacy " + resultColumns + ") values (?, ?, ?, ?, ?, ?)");
+        insertLegacyInsight = connection.prepareStatement(
+            "insert into bench_insights (result_id, insight_key, insight_value) values (?, ?, ?)");
+        insertJsonResult = connection.prepareStatement("insert into bench_results_json " + resultColumns
+            + ", insights) values (?, ?, ?, ?, ?, ?, " + (postgres ? "cast(? as jsonb)" : "? format json") + ")");
+        selectLegacyResults = connection.prepareStatement("select id, event_id, prediction, confidence, "
+            + "processed_at, model_version from bench_results_legacy where prediction = ? order by id limit ?");
+        selectLegacyInsights = connection.prepareStatement(
+            "select insight_key, insight_value from bench_insights where result_id = ?");
+        selectJsonResults = connection.prepareStatement("select id, event_id, prediction, confidence, "
+            + "processed_at, model_version, insights from bench_results_json where prediction = ? order by id limit ?");
+        
+        connection.setAutoCommit(false);
+        for (long id = 0; id < PRELOADED_RESULTS; id++) {
+            writeLegacy(id);
+            writeJson(id);
+        }
+        connection.commit();
+    }
+    
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+    
+    @Benchmark
+    public long insertKeyValue() throws SQLException {
+        long id = nextId++;
+        writeLegacy(id);
+        connection.commit();
+        return id;
+    }
+    
+    @Benchmark
+    public long insertJson() throws SQLException {
+        long id = nextId++;
+        writeJson(id);
+        connection.commit();
+        return id;
+    }
+    
+    /**
+     * A page of results by prediction, then the insights of each result.
+     */
+    @Benchmark
+    public int readKeyValue() throws SQLException {
+        int values = 0;
+        selectLegacyResults.setString(1, "SAFE_CONTENT");
+        selectLegacyResults.setInt(2, PAGE_SIZE);
+        try (ResultSet results = selectLegacyResults.executeQuery()) {
+            while (results.next()) {
+                selectLegacyInsights.setLong(1, results.getLong(1));
+                try (ResultSet rows = selectLegacyInsights.executeQuery()) {
+                    while (rows.next()) {
+                        values += rows.getString(2).length();
+                    }
+                }
+            }
+        }
+        connection.commit();
+        return values;
+    }
+    
+    @Benchmark
+    public int readJson() throws SQLException {
+        int values = 0;
+        selectJsonResults.setString(1, "SAFE_CONTENT");
+        selectJsonResults.setInt(2, PAGE_SIZE);
+        try (ResultSet results = selectJsonResults.executeQuery()) {
+            while (results.next()) {
+                values += results.getString(7).length();
+            }
+        }
+        connection.commit();
+        return values;
+    }
+    
+    private void writeLegacy(long id) throws SQLException {
+        bindResult(insertLegacyResult, id);
+        insertLegacyResult.executeUpdate();
+        for (Map.Entry<String, String> insight : insights.entrySet()) {
+            insertLegacyInsight.setLong(1, id);
+            insertLegacyInsight.setString(2, insight.getKey());
+            insertLegacyInsight.setString(3, insight.getValue());
+            insertLegacyInsight.addBatch();
+        }
+        insertLegacyInsight.executeBatch();
+    }
+    
+    private void writeJson(long id) throws SQLException {
+        bindResult(insertJsonResult, id);
+        insertJsonResult.setString(7, insightsJson);
+        insertJsonResult.executeUpdate();
+    }
+    
+    private static void bindResult(PreparedStatement statement, long id) throws SQLException {
+        statement.setLong(1, id);
+        statement.setString(2, "event-" + id);
+        statement.setString(3, "SAFE_CONTENT");
+        statement.setDouble(4, 0.9787);
+        statement.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+        statement.setString(6, "v1.0.0");
+    }
+    
+    public static void main(String[] args) throws Exception {
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(InsightsStorageBenchmark.class.getSimpleName());
+        if (args.length > 0) {
+            options.param("url", args[0]);
+            options.param("user", args.length > 1 ? args[1] : "");
+            options.param("password", args.length > 2 ? args[2] : "");
+        }
+        new Runner(options.build()).run();
+    }
+}
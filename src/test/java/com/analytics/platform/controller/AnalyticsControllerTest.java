@@ -0,0 +1,177 @@
+package com.analytics.platform.controller;
+
+import com.analytics.platform.dto.ResultPage;
+import com.analytics.platform.kafka.KafkaProducer;
+import com.analytics.platform.model.AnalyticsResult;
+import com.analytics.platform.repository.ResultFilter;
+import com.analytics.platform.service.EventIngestionService;
+import com.analytics.platform.service.EventWindowEngine;
+import com.analytics.platform.service.ResultCompletionRegistry;
+import com.analytics.platform.service.ResultRollups;
+import com.analytics.platform.service.ResultStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AnalyticsControllerTest {
+    
+    private static final String NDJSON_BODY = "{\"eventId\":\"event-2\"}\n{\"eventId\":\"event-1\"}\n";
+    
+    private final ResultStorageService resultStorageService = mock(ResultStorageService.class);
+    private final ResultCompletionRegistry completionRegistry = mock(ResultCompletionRegistry.class);
+    private MockMvc mvc;
+    
+    @BeforeEach
+    void setUp() {
+        AnalyticsController controller = new AnalyticsController(mock(KafkaProducer.class), resultStorageService,
+            mock(EventIngestionService.class), completionRegistry, mock(ResultRollups.class),
+            mock(EventWindowEngine.class), 30000, 60000, 16);
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+        
+        doAnswer(invocation -> {
+            OutputStream output = invocation.getArgument(1);
+            output.write(NDJSON_BODY.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(resultStorageService).streamResults(any(), any());
+    }
+    
+    @Test
+    void resultsAreStreamedAsNdjsonWhenAccepted() throws Exception {
+        MvcResult started = mvc.perform(get("/api/analytics/results").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        
+        mvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string(NDJSON_BODY));
+        verify(resultStorageService).streamResults(eq(ResultFilter.none()), any());
+        verify(resultStorageService, never()).getResults(any(), any(), anyInt());
+    }
+    
+    @Test
+    void streamedResultsKeepThePathAndQueryFilters() throws Exception {
+        MvcResult started = mvc.perform(get("/api/analytics/results/prediction/HATE_SPEECH")
+                .param("modelVersion", "v1.0.0")
+                .accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        
+        mvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string(NDJSON_BODY));
+        verify(resultStorageService).streamResults(
+            eq(new ResultFilter("HATE_SPEECH", "v1.0.0", null, null, null)), any());
+    }
+    
+    @Test
+    void resultsArePagedAsJsonByDefault() throws Exception {
+        AnalyticsResult result = new AnalyticsResult("event-1", "SAFE_CONTENT", 0.97, Map.of(),
+            LocalDateTime.of(2026, 1, 1, 12, 0), "v1.0.0", "user-1", "comment");
+        when(resultStorageService.getResults(eq(ResultFilter.none()), isNull(), eq(100)))
+            .thenReturn(new ResultPage(List.of(result), "next"));
+        
+        mvc.perform(get("/api/analytics/results").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$.items[0].eventId").value("event-1"))
+            .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+    
+    @Test
+    void myResultsStreamNothingForAnonymousCallers() throws Exception {
+        when(resultStorageService.currentUserId()).thenReturn(Optional.empty());
+        
+        MvcResult started = mvc.perform(get("/api/analytics/results/my").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        
+        mvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string(""));
+        verify(resultStorageService, never()).streamResults(any(), any());
+    }
+    
+    @Test
+    void resultStreamFollowsTheCallersOwnUserId() throws Exception {
+        when(completionRegistry.onUserResults(any(), any()))
+            .thenReturn(mock(ResultCompletionRegistry.Registration.class));
+        
+        mvc.perform(get("/api/analytics/results/stream").principal(user("alice", "ROLE_USER")))
+            .andExpect(request().asyncStarted());
+        
+        verify(completionRegistry).onUserResults(eq("alice"), any());
+    }
+    
+    @Test
+    void onlyAdminsMayStreamAnotherUsersResults() throws Exception {
+        when(completionRegistry.onUserResults(any(), any()))
+            .thenReturn(mock(ResultCompletionRegistry.Registration.class));
+        
+        mvc.perform(get("/api/analytics/results/stream").param("userId", "bob")
+                .principal(user("alice", "ROLE_USER")))
+            .andExpect(status().isForbidden());
+        verify(completionRegistry, never()).onUserResults(any(), any());
+        
+        mvc.perform(get("/api/analytics/results/stream").param("userId", "bob")
+                .principal(user("root", "ROLE_ADMIN")))
+            .andExpect(request().asyncStarted());
+        verify(completionRegistry).onUserResults(eq("bob"), any());
+    }
+    
+    @Test
+    void longPollHidesOtherUsersResults() throws Exception {
+        when(completionRegistry.onResult(any(), any()))
+            .thenReturn(mock(ResultCompletionRegistry.Registration.class));
+        AnalyticsResult result = new AnalyticsResult("event-9", "SAFE_CONTENT", 0.9, Map.of(),
+            LocalDateTime.of(2026, 1, 1, 12, 0), "v1.0.0", "bob", "comment");
+        when(resultStorageService.getResult("event-9")).thenReturn(Optional.of(result));
+        
+        MvcResult denied = mvc.perform(get("/api/analytics/results/event-9").param("waitMs", "1000")
+                .principal(user("alice", "ROLE_USER")))
+            .andReturn();
+        mvc.perform(asyncDispatch(denied)).andExpect(status().isNotFound());
+        
+        MvcResult allowed = mvc.perform(get("/api/analytics/results/event-9").param("waitMs", "1000")
+                .principal(user("bob", "ROLE_USER")))
+            .andReturn();
+        mvc.perform(asyncDispatch(allowed))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.eventId").value("event-9"));
+    }
+    
+    private static Authentication user(String name, String role) {
+        return new UsernamePasswordAuthenticationToken(name, null, List.of(new SimpleGrantedAuthority(role)));
+    }
+}
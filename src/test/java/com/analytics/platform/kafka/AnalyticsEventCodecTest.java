@@ -0,0 +1,204 @@
+package com.analytics.platform.kafka;
+
+import com.analytics.platform.model.AnalyticsEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AnalyticsEventCodecTest {
+    
+    private static final ObjectMapper JSON = JsonMapper.builder()
+        .addModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .build();
+    
+    @Test
+    void jsonEventSurvivesTheBinaryFormat() throws Exception {
+        String json = """
+            {"eventId":"evt-1","eventType":"comment","timestamp":"2026-10-16T12:34:56.789",
+             "data":{"content":"héllo wörld","count":3,"big":9007199254740993,"score":0.25,
+                     "flag":true,"off":false,"missing":null,"tags":["a",1,null],
+                     "nested":{"depth":{"level":2}}},
+             "userId":"user-7","source":"web"}
+            """;
+        // Read with a plain mapper: the test classpath carries Kafka's Scala Jackson module, which the
+        // deserializer's findAndAddModules would pick up for untyped values
+        AnalyticsEvent fromJson = JSON.readValue(json, AnalyticsEvent.class);
+        
+        AnalyticsEvent fromBinary = roundTrip(fromJson);
+        
+        assertThat(fromBinary).isEqualTo(fromJson);
+        AnalyticsEventSerializer jsonSerializer = new AnalyticsEventSerializer();
+        jsonSerializer.configure(Map.of(AnalyticsEventSerializer.FORMAT_CONFIG, "json"), false);
+        assertThat(JSON.readTree(jsonSerializer.serialize("events", fromBinary))).isEqualTo(JSON.readTree(json));
+        assertThat(fromBinary.getTimestamp()).isEqualTo(LocalDateTime.of(2026, 10, 16, 12, 34, 56, 789_000_000));
+        assertThat(fromBinary.getData().get("count")).isInstanceOf(Integer.class);
+        assertThat(fromBinary.getData().get("big")).isEqualTo(9007199254740993L);
+        assertThat(fromBinary.getData()).containsEntry("missing", null);
+        assertThat(fromBinary.getData().keySet()).containsExactlyElementsOf(fromJson.getData().keySet());
+    }
+    
+    @Test
+    void serializerAndDeserializerAgreeOnTheBinaryFormat() {
+        AnalyticsEventSerializer serializer = new AnalyticsEventSerializer();
+        serializer.configure(Map.of(AnalyticsEventSerializer.FORMAT_CONFIG, "binary"), false);
+        AnalyticsEvent event = new AnalyticsEvent("evt-2", "click", LocalDateTime.of(1969, 12, 31, 23, 59, 59, 1),
+            Map.of("x", -42L), "user-1", "mobile");
+        
+        RecordHeaders headers = new RecordHeaders();
+        byte[] payload = serializer.serialize("events", headers, event);
+        
+        assertThat(new String(headers.lastHeader(AnalyticsEventSerializer.CONTENT_TYPE_HEADER).value(),
+            StandardCharsets.UTF_8)).isEqualTo(AnalyticsEventSerializer.BINARY_CONTENT_TYPE);
+        assertThat(new AnalyticsEventDeserializer().deserialize("events", headers, payload)).isEqualTo(event);
+    }
+    
+    @Test
+    void absentFieldsStayAbsent() {
+        AnalyticsEvent empty = new AnalyticsEvent();
+        
+        byte[] payload = AnalyticsEventCodec.encode(empty);
+        
+        assertThat(payload).containsExactly(AnalyticsEventCodec.SCHEMA_VERSION, 0);
+        assertThat(AnalyticsEventCodec.decode(ByteBuffer.wrap(payload))).isEqualTo(empty);
+        
+        AnalyticsEvent onlyType = new AnalyticsEvent(null, "comment", null, Map.of(), null, null);
+        assertThat(roundTrip(onlyType)).isEqualTo(onlyType);
+    }
+    
+    @Test
+    void valuesWithoutATagOfTheirOwnAreWidenedOrKeptAsText() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("float", 1.5f);
+        data.put("short", (short) 7);
+        data.put("decimal", new BigDecimal("12.345"));
+        
+        Map<String, Object> decoded = roundTrip(new AnalyticsEvent("e", "t", null, data, null, null)).getData();
+        
+        assertThat(decoded).containsEntry("float", 1.5d)
+            .containsEntry("short", 7)
+            .containsEntry("decimal", "12.345");
+    }
+    
+    @Test
+    void everyTruncationIsRejected() {
+        byte[] payload = AnalyticsEventCodec.encode(new AnalyticsEvent("evt-3", "comment",
+            LocalDateTime.of(2026, 1, 1, 0, 0), Map.of("content", "some text", "tags", List.of(1, 2.5)),
+            "user-3", "api"));
+        
+        for (int length = 0; length < payload.length; length++) {
+            ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(payload, length));
+            assertThatThrownBy(() -> AnalyticsEventCodec.decode(truncated))
+                .as("payload cut to %d of %d bytes", length, payload.length)
+                .isInstanceOf(SerializationException.class);
+        }
+    }
+    
+    @Test
+    void trailingBytesAreRejected() {
+        byte[] payload = AnalyticsEventCodec.encode(new AnalyticsEvent("evt-4", "comment", null, null, null, null));
+        byte[] padded = Arrays.copyOf(payload, payload.length + 1);
+        
+        assertThatThrownBy(() -> AnalyticsEventCodec.decode(ByteBuffer.wrap(padded)))
+            .isInstanceOf(SerializationException.class)
+            .hasMessageContaining("unexpected bytes");
+    }
+    
+    @Test
+    void malformedHeadersAreRejected() {
+        assertThatThrownBy(() -> AnalyticsEventCodec.decode(ByteBuffer.wrap(new byte[]{2, 0})))
+            .isInstanceOf(SerializationException.class)
+            .hasMessageContaining("schema version 2");
+        assertThatThrownBy(() -> AnalyticsEventCodec.decode(ByteBuffer.wrap(new byte[]{1, (byte) 0x80})))
+            .isInstanceOf(SerializationException.class)
+            .hasMessageContaining("presence byte");
+    }
+    
+    @Test
+    void malformedBodiesAreRejected() {
+        // eventId whose length claims more bytes than the payload holds
+        byte[] longString = {1, 1, 100, 'a'};
+        assertThatThrownBy(() -> AnalyticsEventCodec.decode(ByteBuffer.wrap(longString)))
+            .isInstanceOf(SerializationException.class)
+            .hasMessageContaining("Invalid length");
+        
+        // data map with one entry "k" whose value has an unknown tag
+        byte[] unknownTag = {1, 1 << 3, 1, 1, 'k', 42};
+        assertThatThrownBy(() -> AnalyticsEventCodec.decode(ByteBuffer.wrap(unknownTag)))
+            .isInstanceOf(SerializationException.class)
+            .hasMessageContaining("Unknown value tag 42");
+        
+        // eventId length varint that never terminates
+        byte[] endlessVarint = new byte[13];
+        Arrays.fill(endlessVarint, (byte) 0xFF);
+        endlessVarint[0] = 1;
+        endlessVarint[1] = 1;
+        assertThatThrownBy(() -> AnalyticsEventCodec.decode(ByteBuffer.wrap(endlessVarint)))
+            .isInstanceOf(SerializationException.class);
+    }
+    
+    @Test
+    void nestingIsBounded() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        Map<String, Object> current = data;
+        for (int i = 0; i < 40; i++) {
+            Map<String, Object> child = new LinkedHashMap<>();
+            current.put("child", child);
+            current = child;
+        }
+        AnalyticsEvent deep = new AnalyticsEvent("e", "t", null, data, null, null);
+        
+        assertThatThrownBy(() -> AnalyticsEventCodec.encode(deep))
+            .isInstanceOf(SerializationException.class)
+            .hasMessageContaining("nested deeper");
+        
+        // A hand-built payload of nested lists is refused on the way in as well
+        List<Byte> bytes = new ArrayList<>(List.of((byte) 1, (byte) (1 << 3), (byte) 1, (byte) 1, (byte) 'k'));
+        for (int i = 0; i < 40; i++) {
+            bytes.add((byte) 8);
+            bytes.add((byte) 1);
+        }
+        bytes.add((byte) 0);
+        byte[] payload = new byte[bytes.size()];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = bytes.get(i);
+        }
+        assertThatThrownBy(() -> AnalyticsEventCodec.decode(ByteBuffer.wrap(payload)))
+            .isInstanceOf(SerializationException.class)
+            .hasMessageContaining("nested deeper");
+    }
+    
+    @Test
+    void deserializerReportsMalformedPayloadsInAHeader() {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(AnalyticsEventSerializer.CONTENT_TYPE_HEADER,
+            AnalyticsEventSerializer.BINARY_CONTENT_TYPE.getBytes(StandardCharsets.UTF_8));
+        
+        AnalyticsEvent event = new AnalyticsEventDeserializer().deserialize("events", headers, new byte[]{1});
+        
+        assertThat(event).isNull();
+        assertThat(headers.lastHeader(AnalyticsEventDeserializer.ERROR_HEADER)).isNotNull();
+    }
+    
+    private static AnalyticsEvent roundTrip(AnalyticsEvent event) {
+        return AnalyticsEventCodec.decode(ByteBuffer.wrap(AnalyticsEventCodec.encode(event)));
+    }
+}
@@ -0,0 +1,45 @@
+package com.analytics.platform.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AIServiceTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Test
+    void benignTextSortedFirstIsNotScoredAsHate() throws Exception {
+        // What the moderation model returns for one input: both labels, highest score first
+        List<Object> single = objectMapper.readValue(
+            "[[{\"label\":\"nothate\",\"score\":0.99},{\"label\":\"hate\",\"score\":0.01}]]", new TypeReference<>() { });
+        
+        assertThat(AIService.riskScores(single, "hate")).containsExactly(new double[]{0.01, 0.99}, within(1e-9));
+    }
+    
+    @Test
+    void everyInputOfAMultiInputResponseIsScoredByLabel() throws Exception {
+        List<List<Map<String, Object>>> batch = objectMapper.readValue("["
+            + "[{\"label\":\"nothate\",\"score\":0.97},{\"label\":\"hate\",\"score\":0.03}],"
+            + "[{\"label\":\"hate\",\"score\":0.88},{\"label\":\"nothate\",\"score\":0.12}]]", new TypeReference<>() { });
+        
+        assertThat(AIService.riskScores(batch.get(0), "hate")).containsExactly(new double[]{0.03, 0.97}, within(1e-9));
+        assertThat(AIService.riskScores(batch.get(1), "hate")).containsExactly(new double[]{0.88, 0.12}, within(1e-9));
+    }
+    
+    @Test
+    void responseWithoutTheRiskLabelHasNoScores() throws Exception {
+        List<Object> response = objectMapper.readValue(
+            "[{\"label\":\"toxic\",\"score\":0.7},{\"label\":\"neutral\",\"score\":0.3}]", new TypeReference<>() { });
+        
+        assertThat(AIService.riskScores(response, "TOXIC")).containsExactly(new double[]{0.7, 0.3}, within(1e-9));
+        assertThat(AIService.riskScores(response, "hate")).isNull();
+        assertThat(AIService.riskScores(List.of(), "hate")).isNull();
+    }
+}
@@ -0,0 +1,174 @@
+package com.analytics.platform.service;
+
+import com.analytics.platform.entity.EventWindowEntity;
+import com.analytics.platform.model.AnalyticsEvent;
+import com.analytics.platform.repository.EventWindowRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventWindowEngineTest {
+    
+    private static final long SECOND = 1_000;
+    private static final long MINUTE = 60 * SECOND;
+    
+    // Whole hours back, so every window size used here lines up with it, and far enough that
+    // event times are never capped at the wall clock
+    private final long base = Math.floorDiv(System.currentTimeMillis(), 60 * MINUTE) * 60 * MINUTE - 180 * MINUTE;
+    private final EventWindowRepository repository = mock(EventWindowRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<EventWindowEntity> stored = new ArrayList<>();
+    
+    EventWindowEngineTest() {
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            stored.addAll(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+    }
+    
+    @Test
+    void eventsAreAssignedToTheirTumblingAndHoppingWindows() {
+        EventWindowEngine engine = newEngine("t=tumbling:userId:PT1M,h=hopping:userId:PT2M:PT1M", 10_000);
+        engine.accept(event("alice", 10 * SECOND));
+        engine.accept(event("alice", 70 * SECOND));
+        engine.accept(event("bob", 20 * SECOND));
+        
+        advanceTo(engine, 10 * MINUTE);
+        
+        assertThat(closedWindows()).containsExactlyInAnyOrder(
+            "t alice [0s,60s) 1",
+            "t alice [60s,120s) 1",
+            "t bob [0s,60s) 1",
+            "h alice [-60s,60s) 1",
+            "h alice [0s,120s) 2",
+            "h alice [60s,180s) 1",
+            "h bob [-60s,60s) 1",
+            "h bob [0s,120s) 1");
+        assertThat(meterRegistry.get("analytics.windows.closed").tag("window", "h").counter().count()).isEqualTo(5);
+    }
+    
+    @Test
+    void outOfOrderEventsAreCountedUntilTheWatermarkPassesTheirWindow() {
+        EventWindowEngine engine = newEngine("t=tumbling:userId:PT1M", 10_000);
+        engine.accept(event("alice", 65 * SECOND));
+        engine.accept(event("alice", 10 * SECOND));
+        engine.closeWindows();
+        
+        // The watermark is 35s: [0s, 60s) stays open for an event that is 45s late
+        assertThat(closedWindows()).isEmpty();
+        engine.accept(event("alice", 20 * SECOND));
+        
+        engine.accept(event("alice", 95 * SECOND));
+        engine.closeWindows();
+        assertThat(closedWindows()).containsExactly("t alice [0s,60s) 2");
+        assertThat(stored.get(0).getFirstEventAt()).isEqualTo(time(10 * SECOND));
+        assertThat(stored.get(0).getLastEventAt()).isEqualTo(time(20 * SECOND));
+        
+        // The watermark is now 65s, so the first minute has closed and an event for it is dropped
+        engine.accept(event("alice", 30 * SECOND));
+        advanceTo(engine, 10 * MINUTE);
+        
+        assertThat(closedWindows()).containsExactly("t alice [0s,60s) 2", "t alice [60s,120s) 2");
+        assertThat(meterRegistry.get("analytics.windows.late.events").tag("window", "t").counter().count())
+            .isEqualTo(1);
+    }
+    
+    @Test
+    void sessionsCloseAfterTheGapAndMergeWhenBridged() {
+        EventWindowEngine engine = newEngine("s=session:userId:PT5M", 10_000);
+        engine.accept(event("alice", 0));
+        engine.accept(event("alice", 2 * MINUTE));
+        engine.accept(event("alice", 10 * MINUTE));
+        engine.accept(event("bob", 20 * MINUTE));
+        engine.accept(event("bob", 28 * MINUTE));
+        engine.accept(event("bob", 24 * MINUTE));
+        
+        advanceTo(engine, 60 * MINUTE);
+        
+        assertThat(closedWindows()).containsExactlyInAnyOrder(
+            "s alice [0s,420s) 2",
+            "s alice [600s,900s) 1",
+            "s bob [1200s,1980s) 3");
+    }
+    
+    @Test
+    void closedWindowsAreEvictedAndUnstoredOnesAreBounded() {
+        EventWindowEngine engine = newEngine("t=tumbling:userId:PT1M", 2);
+        for (int user = 0; user < 5; user++) {
+            engine.accept(event("user-" + user, 10 * SECOND));
+        }
+        assertThat(meterRegistry.get("analytics.windows.open").tag("window", "t").gauge().value()).isEqualTo(5);
+        when(repository.saveAll(anyList())).thenThrow(new DataAccessResourceFailureException("database down"));
+        
+        advanceTo(engine, 10 * MINUTE);
+        
+        // Only the zed window is still open; two of the five closed ones wait for the database
+        assertThat(meterRegistry.get("analytics.windows.open").tag("window", "t").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("analytics.windows.dropped").counter().count()).isEqualTo(3);
+    }
+    
+    @Test
+    void keysOfOneStripeUseTheWholeTableIndex() {
+        int stripes = 16;
+        int indexMask = 127;
+        Set<Integer> probeStarts = new HashSet<>();
+        for (int user = 0; user < 20_000; user++) {
+            String key = "user-" + user;
+            if (EventWindowEngine.stripeOf(key, stripes) == 0) {
+                probeStarts.add(EventWindowTable.spread(key.hashCode()) & indexMask);
+            }
+        }
+        
+        // Low bits for the stripe as well would leave only 128 / 16 = 8 starts
+        assertThat(probeStarts).hasSizeGreaterThan(120);
+        assertThat(EventWindowEngine.stripeOf("any", 1)).isZero();
+    }
+    
+    private EventWindowEngine newEngine(String definitions, int maxUnsaved) {
+        return new EventWindowEngine(repository, mock(PlatformTransactionManager.class), meterRegistry, true,
+            definitions, Duration.ofSeconds(30), Duration.ofHours(1), 4, maxUnsaved);
+    }
+    
+    // An event far ahead moves the watermark past every window before it
+    private void advanceTo(EventWindowEngine engine, long offset) {
+        engine.accept(event("zed", offset));
+        engine.closeWindows();
+    }
+    
+    private List<String> closedWindows() {
+        return stored.stream()
+            .filter(window -> !window.getWindowKey().equals("zed"))
+            .map(window -> window.getWindowName() + " " + window.getWindowKey()
+                + " [" + offsetSeconds(window.getWindowStart()) + "s," + offsetSeconds(window.getWindowEnd()) + "s) "
+                + window.getEventCount())
+            .toList();
+    }
+    
+    private AnalyticsEvent event(String userId, long offset) {
+        return new AnalyticsEvent(userId + "@" + offset, "comment", time(offset), Map.of(), userId, "web");
+    }
+    
+    private LocalDateTime time(long offset) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(base + offset), ZoneId.systemDefault());
+    }
+    
+    private long offsetSeconds(LocalDateTime time) {
+        return (time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() - base) / SECOND;
+    }
+}
@@ -0,0 +1,95 @@
+package com.analytics.platform.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventWindowTableTest {
+    
+    private final EventWindowTable table = new EventWindowTable();
+    
+    @Test
+    void eventsOfTheSameWindowAreCountedTogether() {
+        table.add("alice", 0, 60, 30);
+        table.add("alice", 0, 60, 10);
+        table.add("alice", 60, 120, 70);
+        table.add("bob", 0, 60, 50);
+        
+        List<String> closed = closeUpTo(60);
+        
+        assertThat(closed).containsExactlyInAnyOrder("alice [0,60) 2 events 10..30", "bob [0,60) 1 events 50..50");
+        assertThat(table.openWindows()).isEqualTo(1);
+        assertThat(closeUpTo(120)).containsExactly("alice [60,120) 1 events 70..70");
+        assertThat(table.openWindows()).isZero();
+    }
+    
+    @Test
+    void anEventBetweenTwoSessionsMergesThem() {
+        table.addToSession("alice", 100, 20);
+        table.addToSession("alice", 105, 20);
+        table.addToSession("alice", 130, 20);
+        assertThat(table.openWindows()).isEqualTo(2);
+        
+        // Out of order, and within the gap of both sessions
+        table.addToSession("alice", 118, 20);
+        
+        assertThat(table.openWindows()).isEqualTo(1);
+        assertThat(closeUpTo(149)).isEmpty();
+        assertThat(closeUpTo(150)).containsExactly("alice [100,150) 4 events 100..130");
+    }
+    
+    @Test
+    void tableGrowsPastItsInitialKeysAndWindows() {
+        int keys = 5_000;
+        int windowsPerKey = 3;
+        for (int key = 0; key < keys; key++) {
+            for (int window = 0; window < windowsPerKey; window++) {
+                for (int event = 0; event <= key % 4; event++) {
+                    table.add("user-" + key, window * 60L, window * 60L + 60, window * 60L + event);
+                }
+            }
+        }
+        assertThat(table.openWindows()).isEqualTo(keys * windowsPerKey);
+        
+        Map<String, Long> counts = new HashMap<>();
+        table.closeUpTo(Long.MAX_VALUE, (key, start, end, eventCount, first, last) ->
+            counts.merge(key + "@" + start, eventCount, Long::sum));
+        
+        assertThat(counts).hasSize(keys * windowsPerKey);
+        for (int key = 0; key < keys; key++) {
+            for (int window = 0; window < windowsPerKey; window++) {
+                assertThat(counts.get("user-" + key + "@" + window * 60L)).isEqualTo(key % 4 + 1);
+            }
+        }
+        assertThat(table.openWindows()).isZero();
+    }
+    
+    @Test
+    void closedKeysAreCompactedAndSlotsReused() {
+        for (int key = 0; key < 1_000; key++) {
+            table.add("old-" + key, 0, 60, 1);
+        }
+        table.add("kept", 60, 120, 61);
+        
+        assertThat(closeUpTo(60)).hasSize(1_000);
+        
+        // Old keys start over with new windows; the kept key still finds its open one
+        table.add("old-7", 120, 180, 121);
+        table.add("kept", 60, 120, 62);
+        assertThat(table.openWindows()).isEqualTo(2);
+        assertThat(closeUpTo(180)).containsExactlyInAnyOrder("kept [60,120) 2 events 61..62",
+            "old-7 [120,180) 1 events 121..121");
+    }
+    
+    private List<String> closeUpTo(long watermark) {
+        List<String> closed = new ArrayList<>();
+        table.closeUpTo(watermark, (key, start, end, eventCount, first, last) ->
+            closed.add(key + " [" + start + "," + end + ") " + eventCount + " events " + first + ".." + last));
+        return closed;
+    }
+}
@@ -0,0 +1,111 @@
+package com.analytics.platform.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InferenceBatcherTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Integer> receivedBatchSizes = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private volatile int responseStatus = 200;
+    private HttpServer server;
+    private InferenceBatcher<List<Map<String, Object>>> batcher;
+    
+    @BeforeEach
+    void startStubServer() throws Exception {
+        // Answers every input with a single label whose name echoes the input text
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/model", exchange -> {
+            Map<?, ?> request = objectMapper.readValue(exchange.getRequestBody(), Map.class);
+            List<?> inputs = (List<?>) request.get("inputs");
+            receivedBatchSizes.add(inputs.size());
+            
+            List<List<Map<String, Object>>> response = new ArrayList<>();
+            for (Object input : inputs) {
+                response.add(List.of(Map.of("label", input, "score", 0.5)));
+            }
+            byte[] body = objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(responseStatus, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+    
+    @AfterEach
+    void stopStubServer() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+        server.stop(0);
+    }
+    
+    @Test
+    void concurrentCallsAreCoalescedAndSplitBackInOrder() {
+        batcher = newBatcher(4, Duration.ofMillis(200));
+        
+        List<String> labels = Flux.range(0, 8)
+            .flatMap(i -> batcher.submit("text-" + i).map(scores -> i + "=" + scores.get(0).get("label")), 8)
+            .collectList()
+            .block(Duration.ofSeconds(10));
+        
+        assertThat(labels).hasSize(8).allSatisfy(label -> {
+            String[] parts = label.split("=");
+            assertThat(parts[1]).isEqualTo("text-" + parts[0]);
+        });
+        assertThat(receivedBatchSizes).containsExactly(4, 4);
+        assertThat(meterRegistry.get("analytics.inference.batch.size").summary().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("analytics.inference.batch.latency").timer().count()).isEqualTo(2);
+    }
+    
+    @Test
+    void partialBatchIsSentWhenTheWaitExpires() {
+        batcher = newBatcher(16, Duration.ofMillis(20));
+        
+        List<Map<String, Object>> scores = batcher.submit("lonely").block(Duration.ofSeconds(10));
+        
+        assertThat(scores).singleElement().satisfies(score -> assertThat(score.get("label")).isEqualTo("lonely"));
+        assertThat(receivedBatchSizes).containsExactly(1);
+    }
+    
+    @Test
+    void requestFailureIsDeliveredToEveryCallerInTheBatch() {
+        responseStatus = 503;
+        batcher = newBatcher(2, Duration.ofMillis(200));
+        
+        Mono<List<Map<String, Object>>> first = batcher.submit("a");
+        Mono<List<Map<String, Object>>> second = batcher.submit("b");
+        
+        var outcomes = Mono.zip(first.materialize(), second.materialize()).block(Duration.ofSeconds(10));
+        
+        assertThat(outcomes.getT1().isOnError()).isTrue();
+        assertThat(outcomes.getT2().isOnError()).isTrue();
+        assertThat(receivedBatchSizes).containsExactly(2);
+    }
+    
+    private InferenceBatcher<List<Map<String, Object>>> newBatcher(int maxBatchSize, Duration maxWait) {
+        String endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/model";
+        return InferenceBatcher.forEndpoint(WebClient.create(), endpoint, "test-key", maxBatchSize, maxWait, 2,
+            meterRegistry);
+    }
+}
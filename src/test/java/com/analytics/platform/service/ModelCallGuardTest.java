@@ -0,0 +1,92 @@
+package com.analytics.platform.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ModelCallGuardTest {
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
+    @Test
+    void cancelledCallsDoNotCountAsFailures() {
+        ModelCallGuard guard = newGuard(60_000);
+        
+        // What an early exit does to the chunks still in flight
+        for (int i = 0; i < 10; i++) {
+            Disposable call = guard.execute(Mono::never, false).subscribe();
+            call.dispose();
+        }
+        assertThat(guard.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        
+        for (int i = 0; i < 2; i++) {
+            Mono<Object> failing = guard.execute(() -> Mono.error(new IllegalStateException("model down")), false);
+            assertThatThrownBy(failing::block).isInstanceOf(IllegalStateException.class);
+        }
+        assertThat(guard.getBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+    
+    @Test
+    void deadlineTimeoutsCountAsFailures() {
+        ModelCallGuard guard = newGuard(20);
+        
+        for (int i = 0; i < 2; i++) {
+            Mono<Object> slow = guard.execute(Mono::never, false);
+            assertThatThrownBy(slow::block).hasCauseInstanceOf(TimeoutException.class);
+        }
+        
+        assertThat(guard.getBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(meterRegistry.get("analytics.inference.deadline.exceeded").counter().count()).isEqualTo(2);
+    }
+    
+    @Test
+    void callsOfOneEventShareItsDeadline() {
+        ModelCallGuard guard = newGuard(200);
+        
+        // Waiting for a token and scoring an earlier chunk use up the budget of the later calls
+        Mono<String> event = Mono.delay(Duration.ofMillis(150))
+            .then(guard.withinDeadline(guard.execute(() -> Mono.delay(Duration.ofMillis(100)).thenReturn("late"),
+                false)))
+            .contextWrite(guard.startDeadline());
+        assertThatThrownBy(event::block).hasCauseInstanceOf(TimeoutException.class);
+        
+        Mono<String> tooLate = Mono.delay(Duration.ofMillis(250))
+            .then(guard.withinDeadline(guard.execute(() -> Mono.just("never sent"), false)))
+            .contextWrite(guard.startDeadline());
+        assertThatThrownBy(tooLate::block).hasCauseInstanceOf(TimeoutException.class);
+        
+        // One call ran into the deadline, the other was never made
+        assertThat(meterRegistry.get("analytics.inference.deadline.exceeded").counter().count()).isEqualTo(2);
+        assertThat(guard.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+    
+    @Test
+    void releasedProbeLetsAnotherCallProbe() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 4, 2, 0.5, 1.0, Duration.ofMinutes(1), Duration.ZERO, 1);
+        breaker.onError(0);
+        breaker.onError(0);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        
+        breaker.release();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onSuccess(0);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+    
+    private ModelCallGuard newGuard(long deadlineMs) {
+        // Two failures of the last four calls open the breaker; hedging is off, so no scheduler
+        return new ModelCallGuard(meterRegistry, null, deadlineMs, 4, 2, 0.5, 1.0, 60_000, 60_000, 1, false, 100);
+    }
+}
@@ -0,0 +1,302 @@
+package com.analytics.platform.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResultJournalTest {
+    
+    // The smallest segment the journal allows; with 100-byte payloads and a 16-byte header, 8 records fit
+    private static final int SEGMENT_BYTES = 1024;
+    private static final int PAYLOAD_BYTES = 100;
+    private static final int RECORD_BYTES = 16 + PAYLOAD_BYTES;
+    private static final int RECORDS_PER_SEGMENT = SEGMENT_BYTES / RECORD_BYTES;
+    
+    @TempDir
+    Path directory;
+    
+    // One per journal, so gauges read the journal opened last
+    private SimpleMeterRegistry meterRegistry;
+    private final List<ResultJournal> opened = new ArrayList<>();
+    
+    @AfterEach
+    void closeJournals() {
+        opened.forEach(journal -> journal.close(Duration.ZERO));
+    }
+    
+    @Test
+    void recordsRollIntoNewSegmentsAndDrainInOrder() throws Exception {
+        ResultJournal journal = open(1 << 20, 1000);
+        for (int i = 0; i < 20; i++) {
+            journal.append(List.of(payload(i)));
+        }
+        
+        assertThat(segmentFiles()).hasSize(3);
+        // The space left at the end of a full segment starts with a roll marker
+        assertThat(intAt(segmentFiles().get(0), RECORDS_PER_SEGMENT * RECORD_BYTES)).isEqualTo(-1);
+        
+        List<String> drained = start(journal, Integer.MAX_VALUE);
+        awaitUntil(() -> drained.size() == 20);
+        
+        assertThat(drained).containsExactlyElementsOf(ids(0, 20));
+        // Segments wholly drained are deleted, the head is kept
+        awaitUntil(() -> segmentFiles().size() == 1);
+        assertThat(gauge("analytics.journal.drain.lag.records")).isZero();
+    }
+    
+    @Test
+    void recordsAfterTheCheckpointComeBackOnceAndATornRecordIsDropped() throws Exception {
+        ResultJournal crashed = open(1 << 20, 1000);
+        List<String> drainedBeforeCrash = start(crashed, 5);
+        for (int i = 0; i < 12; i++) {
+            crashed.append(List.of(payload(i)));
+        }
+        awaitUntil(() -> drainedBeforeCrash.size() == 5);
+        // Stops the drainer where it is, as if the process had died
+        crashed.close(Duration.ZERO);
+        
+        // Record 9 was being written when the process died: its checksum no longer matches
+        corrupt(9);
+        
+        ResultJournal recovered = open(1 << 20, 1000);
+        assertThat(gauge("analytics.journal.drain.lag.records")).isEqualTo(4);
+        List<String> drained = start(recovered, Integer.MAX_VALUE);
+        awaitUntil(() -> drained.size() == 4);
+        
+        // Records after the torn one were cleared with it; new records go where it was
+        recovered.append(List.of(payload(12)));
+        awaitUntil(() -> drained.size() == 5);
+        assertThat(drainedBeforeCrash).containsExactlyElementsOf(ids(0, 5));
+        assertThat(drained).containsExactlyElementsOf(ids(5, 9, 12));
+        recovered.close(Duration.ofSeconds(5));
+        
+        // Restarted cleanly: everything was drained, so only the new record comes through
+        ResultJournal restarted = open(1 << 20, 1000);
+        List<String> drainedAfterRestart = start(restarted, Integer.MAX_VALUE);
+        restarted.append(List.of(payload(13)));
+        awaitUntil(() -> !drainedAfterRestart.isEmpty());
+        assertThat(drainedAfterRestart).containsExactly(id(13));
+    }
+    
+    @Test
+    void aRecordCutShortByTruncationEndsTheJournal() throws Exception {
+        ResultJournal crashed = open(1 << 20, 1000);
+        for (int i = 0; i < 3; i++) {
+            crashed.append(List.of(payload(i)));
+        }
+        try (FileChannel channel = FileChannel.open(segmentFiles().get(0), StandardOpenOption.WRITE)) {
+            channel.truncate(2 * RECORD_BYTES + 50);
+        }
+        
+        ResultJournal recovered = open(1 << 20, 1000);
+        List<String> drained = start(recovered, Integer.MAX_VALUE);
+        // The shortened segment has no room for this one, so it rolls into a new segment
+        recovered.append(List.of(payload(3)));
+        awaitUntil(() -> drained.size() == 3);
+        
+        assertThat(drained).containsExactlyElementsOf(ids(0, 2, 3));
+    }
+    
+    @Test
+    void anUnreadableCheckpointReplaysFromTheOldestSegment() throws Exception {
+        ResultJournal crashed = open(1 << 20, 1000);
+        List<String> drainedBeforeCrash = start(crashed, 3);
+        for (int i = 0; i < 6; i++) {
+            crashed.append(List.of(payload(i)));
+        }
+        awaitUntil(() -> drainedBeforeCrash.size() == 3);
+        crashed.close(Duration.ZERO);
+        byte[] garbage = new byte[16];
+        Arrays.fill(garbage, (byte) 1);
+        Files.write(directory.resolve("drained.checkpoint"), garbage);
+        
+        List<String> drained = start(open(1 << 20, 1000), Integer.MAX_VALUE);
+        awaitUntil(() -> drained.size() == 6);
+        
+        // At least once: the three drained before the crash come back rather than any being lost
+        assertThat(drained).containsExactlyElementsOf(ids(0, 6));
+    }
+    
+    @Test
+    void appendWaitsOutMaxPendingWaitThenFails() throws Exception {
+        ResultJournal journal = open(SEGMENT_BYTES, 200);
+        for (int i = 0; i < RECORDS_PER_SEGMENT; i++) {
+            journal.append(List.of(payload(i)));
+        }
+        
+        // Nothing drains: the next record waits out max-pending-wait-ms and fails
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> journal.append(List.of(payload(8))))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("journal is full");
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(meterRegistry.get("analytics.journal.append.rejected").counter().count()).isEqualTo(1);
+    }
+    
+    @Test
+    void appendProceedsOnceTheDrainMakesRoom() throws Exception {
+        ResultJournal journal = open(SEGMENT_BYTES, 30_000);
+        CountDownLatch databaseBack = new CountDownLatch(1);
+        List<String> drained = Collections.synchronizedList(new ArrayList<>());
+        journal.start(records -> {
+            try {
+                databaseBack.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            records.forEach(record -> drained.add(id(record)));
+        }, (record, failure) -> false);
+        for (int i = 0; i < RECORDS_PER_SEGMENT; i++) {
+            journal.append(List.of(payload(i)));
+        }
+        
+        ExecutorService appenders = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> waiting = appenders.submit(() -> journal.append(List.of(payload(8))));
+            assertThat(waiting).isNotDone();
+            
+            databaseBack.countDown();
+            
+            waiting.get(10, TimeUnit.SECONDS);
+            awaitUntil(() -> drained.size() == RECORDS_PER_SEGMENT + 1);
+            assertThat(drained).containsExactlyElementsOf(ids(0, RECORDS_PER_SEGMENT + 1));
+        } finally {
+            appenders.shutdownNow();
+        }
+    }
+    
+    @Test
+    void appendFailsAtOnceWhileTheDrainIsFailing() throws Exception {
+        ResultJournal journal = open(SEGMENT_BYTES, 30_000);
+        start(journal, 0);
+        journal.append(List.of(payload(0)));
+        awaitUntil(() -> meterRegistry.get("analytics.journal.drain.failures").counter().count() > 0);
+        for (int i = 1; i < RECORDS_PER_SEGMENT; i++) {
+            journal.append(List.of(payload(i)));
+        }
+        
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> journal.append(List.of(payload(8))))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("drain is failing");
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+    }
+    
+    private ResultJournal open(long maxPendingBytes, long maxPendingWaitMs) throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        ResultJournal journal = new ResultJournal(meterRegistry, true, directory, SEGMENT_BYTES,
+            ResultJournal.FsyncPolicy.NEVER, 100, 4, maxPendingBytes, maxPendingWaitMs, 100);
+        opened.add(journal);
+        return journal;
+    }
+    
+    /**
+     * Start draining into a sink that takes the first {@code accepted} records and
+     * then fails like a database that went down; returns the ids it took, in order.
+     */
+    private static List<String> start(ResultJournal journal, int accepted) {
+        List<String> drained = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger budget = new AtomicInteger(accepted);
+        journal.start(records -> {
+            if (budget.get() < records.size()) {
+                throw new IllegalStateException("database down");
+            }
+            budget.addAndGet(-records.size());
+            records.forEach(record -> drained.add(id(record)));
+        }, (record, failure) -> false);
+        return drained;
+    }
+    
+    private void corrupt(int record) throws IOException {
+        Path segment = segmentFiles().get(record / RECORDS_PER_SEGMENT);
+        int payloadOffset = (record % RECORDS_PER_SEGMENT) * RECORD_BYTES + 16;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.allocate(1);
+            channel.read(bytes, payloadOffset);
+            bytes.put(0, (byte) (bytes.get(0) ^ 0xFF));
+            channel.write(bytes.rewind(), payloadOffset);
+        }
+    }
+    
+    private List<Path> segmentFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".journal")).sorted().toList();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static int intAt(Path file, int offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(bytes, offset);
+            return bytes.getInt(0);
+        }
+    }
+    
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+    
+    private static byte[] payload(int i) {
+        byte[] payload = new byte[PAYLOAD_BYTES];
+        Arrays.fill(payload, (byte) '.');
+        byte[] id = id(i).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(id, 0, payload, 0, id.length);
+        return payload;
+    }
+    
+    private static String id(int i) {
+        return String.format("record-%03d", i);
+    }
+    
+    private static String id(byte[] payload) {
+        return new String(payload, 0, id(0).length(), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Ids of the records in [from, to), then any further single records.
+     */
+    private static List<String> ids(int from, int to, int... more) {
+        List<String> ids = new ArrayList<>(IntStream.range(from, to).mapToObj(ResultJournalTest::id).toList());
+        for (int i : more) {
+            ids.add(id(i));
+        }
+        return ids;
+    }
+    
+    private static void awaitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition still false after 10s").isLessThan(deadline);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
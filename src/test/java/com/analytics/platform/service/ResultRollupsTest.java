@@ -0,0 +1,206 @@
+package com.analytics.platform.service;
+
+import com.analytics.platform.dto.AnalyticsStats;
+import com.analytics.platform.entity.RollupCheckpointEntity;
+import com.analytics.platform.model.AnalyticsResult;
+import com.analytics.platform.repository.RollupCheckpointRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ResultRollupsTest {
+    
+    private static final LocalDateTime NOON = LocalDateTime.of(2026, 10, 16, 12, 0);
+    
+    private final RollupCheckpointRepository checkpointRepository = mock(RollupCheckpointRepository.class);
+    private final MutableClock clock = new MutableClock(NOON.plusSeconds(30));
+    
+    @Test
+    void minuteBucketsRotateAcrossMinuteBoundaries() {
+        ResultRollups rollups = newRollups(3);
+        rollups.record(result("e1", "SAFE_CONTENT", NOON.plusSeconds(10)));
+        rollups.record(result("e2", "HATE_SPEECH", NOON.plusSeconds(20)));
+        
+        clock.advance(Duration.ofSeconds(35));
+        rollups.record(result("e3", "SAFE_CONTENT", NOON.plusSeconds(65)));
+        
+        assertThat(perMinute(rollups.stats(3))).containsExactly(
+            Map.entry(NOON.minusMinutes(1), 0L), Map.entry(NOON, 2L), Map.entry(NOON.plusMinutes(1), 1L));
+        assertThat(rollups.stats(3).getPerMinute().get(1).getByPrediction())
+            .containsExactly(Map.entry("HATE_SPEECH", 1L), Map.entry("SAFE_CONTENT", 1L));
+        
+        // 12:03 takes over the ring slot of 12:00, which has fallen out of the three retained minutes
+        clock.advance(Duration.ofMinutes(2));
+        rollups.record(result("e4", "SPAM", NOON.plusMinutes(3)));
+        rollups.record(result("e5", "SPAM", NOON.plusSeconds(50)));
+        
+        AnalyticsStats stats = rollups.stats(10);
+        assertThat(perMinute(stats)).containsExactly(
+            Map.entry(NOON.plusMinutes(1), 1L), Map.entry(NOON.plusMinutes(2), 0L), Map.entry(NOON.plusMinutes(3), 1L));
+        assertThat(stats.getTotal()).isEqualTo(5);
+        assertThat(stats.getByPrediction()).containsEntry("SPAM", 2L);
+    }
+    
+    @Test
+    void concurrentRecordsAreAllCounted() throws Exception {
+        ResultRollups rollups = newRollups(60);
+        int threads = 16;
+        int perThread = 2_000;
+        List<String> predictions = List.of("SAFE_CONTENT", "HATE_SPEECH", "SPAM", "TOXIC");
+        
+        ExecutorService writers = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> writes = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int id = thread;
+                writes.add(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        // Spread over two minutes so threads race to claim a fresh bucket as well
+                        rollups.record(result(id + "-" + i, predictions.get(i % predictions.size()),
+                            NOON.plusSeconds(i % 2 == 0 ? 10 : 70)));
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> write : writers.invokeAll(writes, 30, TimeUnit.SECONDS)) {
+                write.get();
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+        
+        clock.advance(Duration.ofMinutes(1));
+        AnalyticsStats stats = rollups.stats(2);
+        long expected = (long) threads * perThread;
+        assertThat(stats.getTotal()).isEqualTo(expected);
+        assertThat(stats.getByPrediction()).hasSize(predictions.size())
+            .allSatisfy((prediction, count) -> assertThat(count).isEqualTo(expected / predictions.size()));
+        assertThat(perMinute(stats)).containsExactly(
+            Map.entry(NOON, expected / 2), Map.entry(NOON.plusMinutes(1), expected / 2));
+        assertThat(stats.getConfidence().stream().mapToLong(AnalyticsStats.ConfidenceDistribution::getCount).sum())
+            .isEqualTo(expected);
+    }
+    
+    @Test
+    void checkpointRestoresTheStatsOfTheStoredResults() throws Exception {
+        List<AnalyticsResult> stored = new ArrayList<>();
+        String[] predictions = {"SAFE_CONTENT", "HATE_SPEECH", "SPAM"};
+        String[] eventTypes = {"comment", "post", "message", "review"};
+        for (int i = 0; i < 300; i++) {
+            stored.add(new AnalyticsResult("event-" + i, predictions[i % predictions.length], (i % 100) / 100.0,
+                Map.of(), NOON.plusSeconds(i % 180), "v" + (i % 2), "user-" + (i % 7),
+                eventTypes[i % eventTypes.length]));
+        }
+        ResultRollups before = newRollups(60);
+        stored.forEach(before::record);
+        clock.advance(Duration.ofMinutes(2));
+        
+        before.checkpoint();
+        ArgumentCaptor<RollupCheckpointEntity> saved = ArgumentCaptor.forClass(RollupCheckpointEntity.class);
+        verify(checkpointRepository).save(saved.capture());
+        
+        // The state column is JSON, so restore from what the database would hand back
+        ObjectMapper json = new ObjectMapper();
+        Map<String, Object> state = json.readValue(json.writeValueAsBytes(saved.getValue().getState()),
+            new TypeReference<>() { });
+        ResultRollups after = newRollups(60);
+        after.restore(new RollupCheckpointEntity("test", state, saved.getValue().getCheckpointedAt()));
+        AnalyticsStats stats = after.stats(3);
+        
+        // The same numbers grouped straight from the stored rows
+        assertThat(stats.getTotal()).isEqualTo(stored.size());
+        assertThat(stats.getByPrediction()).isEqualTo(countBy(stored, AnalyticsResult::getPrediction));
+        assertThat(stats.getByEventType()).isEqualTo(countBy(stored, AnalyticsResult::getEventType));
+        assertThat(perMinute(stats)).isEqualTo(countBy(stored,
+            result -> result.getProcessedAt().withSecond(0)));
+        for (AnalyticsStats.ConfidenceDistribution distribution : stats.getConfidence()) {
+            List<Double> confidences = stored.stream()
+                .filter(result -> result.getPrediction().equals(distribution.getPrediction())
+                    && result.getModelVersion().equals(distribution.getModelVersion()))
+                .map(AnalyticsResult::getConfidence)
+                .toList();
+            assertThat(distribution.getCount()).isEqualTo(confidences.size());
+            assertThat(distribution.getMin()).isCloseTo(confidences.stream().mapToDouble(d -> d).min().orElseThrow(),
+                within(0.01));
+            assertThat(distribution.getMax()).isCloseTo(confidences.stream().mapToDouble(d -> d).max().orElseThrow(),
+                within(0.01));
+            assertThat(distribution.getMean()).isCloseTo(confidences.stream().mapToDouble(d -> d).average()
+                .orElseThrow(), within(0.01));
+        }
+        assertThat(stats.getConfidence()).hasSize(predictions.length * 2);
+        assertThat(stats).isEqualTo(before.stats(3));
+    }
+    
+    private ResultRollups newRollups(int retainedMinutes) {
+        return new ResultRollups(checkpointRepository, new SimpleMeterRegistry(), retainedMinutes, 100, "test", clock);
+    }
+    
+    private static AnalyticsResult result(String eventId, String prediction, LocalDateTime processedAt) {
+        return new AnalyticsResult(eventId, prediction, 0.9, Map.of(), processedAt, "v1.0.0", "user-1", "comment");
+    }
+    
+    private static Map<LocalDateTime, Long> perMinute(AnalyticsStats stats) {
+        Map<LocalDateTime, Long> counts = new TreeMap<>();
+        stats.getPerMinute().forEach(minute -> counts.put(minute.getMinute(), minute.getCount()));
+        return counts;
+    }
+    
+    private static <K> Map<K, Long> countBy(List<AnalyticsResult> results, Function<AnalyticsResult, K> key) {
+        return results.stream().collect(Collectors.groupingBy(key, TreeMap::new, Collectors.counting()));
+    }
+    
+    /**
+     * A clock the test moves by hand, in UTC so local times and epoch minutes line up.
+     */
+    private static final class MutableClock extends Clock {
+        private volatile Instant now;
+        
+        MutableClock(LocalDateTime start) {
+            this.now = start.toInstant(ZoneOffset.UTC);
+        }
+        
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+        
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+        
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.analytics.platform.service;
+
+import com.analytics.platform.entity.AnalyticsResultEntity;
+import com.analytics.platform.model.AnalyticsResult;
+import com.analytics.platform.repository.AnalyticsResultRepository;
+import com.analytics.platform.repository.RollupCheckpointRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResultStorageServiceTest {
+    
+    private static final int CLIENTS = 16;
+    private static final int POLLS_PER_CLIENT = 200;
+    
+    private final AnalyticsResultRepository repository = mock(AnalyticsResultRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FakeTicker ticker = new FakeTicker();
+    
+    @Test
+    void pollingForAPendingResultReachesTheDatabaseOnce() throws Exception {
+        ResultStorageService service = newService(true, Duration.ofMinutes(1));
+        
+        poll(service, "pending-event");
+        
+        verify(repository, times(1)).findByEventId("pending-event");
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "results").tag("result", "hit")
+            .functionCounter().count()).isGreaterThanOrEqualTo(CLIENTS * (POLLS_PER_CLIENT - 1));
+        assertThat(meterRegistry.get("analytics.results.cache.hit.ratio").gauge().value()).isGreaterThan(0.99);
+    }
+    
+    @Test
+    void withoutTheCacheEveryPollIsAQuery() throws Exception {
+        ResultStorageService service = newService(false, Duration.ofMinutes(1));
+        
+        poll(service, "pending-event");
+        
+        verify(repository, times(CLIENTS * POLLS_PER_CLIENT)).findByEventId("pending-event");
+    }
+    
+    @Test
+    void savedResultReplacesTheNegativeEntry() {
+        ResultStorageService service = newService(true, Duration.ofMinutes(1));
+        assertThat(service.getResult("event-1")).isEmpty();
+        
+        service.saveResult(new AnalyticsResult("event-1", "SAFE_CONTENT", 0.97, Map.of("model", "test"),
+            LocalDateTime.now(), "v1.0.0", "user-1", "comment"));
+        
+        assertThat(service.getResult("event-1")).get()
+            .satisfies(result -> {
+                assertThat(result.getPrediction()).isEqualTo("SAFE_CONTENT");
+                assertThat(result.getInsights()).containsEntry("model", "test");
+            });
+        verify(repository, times(1)).findByEventId("event-1");
+    }
+    
+    @Test
+    void negativeEntriesExpireAfterTheNegativeTtl() {
+        ResultStorageService service = newService(true, Duration.ofMillis(50));
+        assertThat(service.getResult("event-2")).isEmpty();
+        
+        AnalyticsResultEntity stored = new AnalyticsResultEntity();
+        stored.setEventId("event-2");
+        stored.setPrediction("HATE_SPEECH");
+        stored.setConfidence(0.91);
+        stored.setProcessedAt(LocalDateTime.now());
+        stored.setModelVersion("v1.0.0");
+        when(repository.findByEventId("event-2")).thenReturn(Optional.of(stored));
+        
+        ticker.advance(Duration.ofMillis(49));
+        assertThat(service.getResult("event-2")).isEmpty();
+        
+        ticker.advance(Duration.ofMillis(2));
+        
+        assertThat(service.getResult("event-2")).get()
+            .extracting(AnalyticsResult::getPrediction).isEqualTo("HATE_SPEECH");
+        verify(repository, times(2)).findByEventId("event-2");
+    }
+    
+    @Test
+    void journaledResultIsSkippedOnlyOnceTheDatabaseHoldsIt(@TempDir Path directory) throws Exception {
+        ResultJournal journal = new ResultJournal(meterRegistry, true, directory, 1 << 16,
+            ResultJournal.FsyncPolicy.NEVER, 100, 500, 1 << 20, 1000, 100);
+        // A constraint failure other than the duplicate eventId, such as a value too long for its column
+        when(repository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("value too long"));
+        AtomicBoolean stored = new AtomicBoolean();
+        when(repository.existsByEventId("event-3")).thenAnswer(invocation -> stored.get());
+        ResultStorageService service = new ResultStorageService(repository, mock(UserService.class),
+            mock(PlatformTransactionManager.class), JsonMapper.builder().addModule(new JavaTimeModule()).build(),
+            new ResultCompletionRegistry(meterRegistry),
+            new ResultRollups(mock(RollupCheckpointRepository.class), meterRegistry, 60, 100, "test"), journal,
+            meterRegistry, false, 200, 20, 10000, false, 1000, Duration.ofMinutes(10), Duration.ofSeconds(2), ticker);
+        try {
+            service.saveResult(new AnalyticsResult("event-3", "SAFE_CONTENT", 0.97, Map.of(), LocalDateTime.now(),
+                "v1.0.0", "user-1", "comment"));
+            
+            // Kept and retried while the row is not there
+            verify(repository, timeout(5000).atLeast(3)).existsByEventId("event-3");
+            assertThat(skipped()).isZero();
+            
+            // Stored before a crash after all: the replay is skipped
+            stored.set(true);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (skipped() == 0 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            assertThat(skipped()).isEqualTo(1);
+        } finally {
+            service.shutdown();
+        }
+    }
+    
+    private double skipped() {
+        return meterRegistry.get("analytics.journal.skipped").counter().count();
+    }
+    
+    private void poll(ResultStorageService service, String eventId) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Callable<Void>> polls = new ArrayList<>();
+            for (int client = 0; client < CLIENTS; client++) {
+                polls.add(() -> {
+                    for (int i = 0; i < POLLS_PER_CLIENT; i++) {
+                        assertThat(service.getResult(eventId)).isEmpty();
+                    }
+                    return null;
+                });
+            }
+            // get() rethrows an assertion that failed on a client thread
+            for (Future<Void> poll : clients.invokeAll(polls, 10, TimeUnit.SECONDS)) {
+                poll.get();
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+    
+    private ResultStorageService newService(boolean cacheEnabled, Duration negativeTtl) {
+        when(repository.findByEventId(anyString())).thenReturn(Optional.empty());
+        return new ResultStorageService(repository, mock(UserService.class), mock(PlatformTransactionManager.class),
+            new ObjectMapper(), new ResultCompletionRegistry(meterRegistry),
+            new ResultRollups(mock(RollupCheckpointRepository.class), meterRegistry, 60, 100, "test"), null,
+            meterRegistry, false, 200, 20, 10000, cacheEnabled, 1000, Duration.ofMinutes(10), negativeTtl, ticker);
+    }
+    
+    /**
+     * Cache time source moved forward by hand, so expiry does not depend on sleeping.
+     */
+    private static class FakeTicker implements Ticker {
+        private final AtomicLong nanos = new AtomicLong();
+        
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+        
+        void advance(Duration duration) {
+            nanos.addAndGet(duration.toNanos());
+        }
+    }
+}